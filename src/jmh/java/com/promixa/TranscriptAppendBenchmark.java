@@ -0,0 +1,103 @@
+package com.promixa;
+
+import com.promixa.engine.Fixtures;
+import com.promixa.engine.Segment;
+import com.promixa.ui.SegmentList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How the text area is fed while segments stream in. A {@code TextArea}
+ * cannot be created without a running FX toolkit, so the document is stood in
+ * for by a {@link StringBuilder}; what is measured is the copying each
+ * strategy implies:
+ * <ul>
+ *   <li>{@code replaceText}: {@code setText(getText() + more)}, copying the
+ *       whole transcript on every update</li>
+ *   <li>{@code appendPerSegment}: one {@code appendText} per segment</li>
+ *   <li>{@code appendBatched}: segments arriving between two FX pulses joined
+ *       and appended once</li>
+ *   <li>{@code segmentList}: the same batches appended to the
+ *       {@link SegmentList} behind the transcript view, as the controller
+ *       does now</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranscriptAppendBenchmark {
+
+    @Param({"600", "6000"})
+    public int segmentCount;
+
+    /** Segments that arrive between two UI updates. */
+    @Param({"8"})
+    public int batchSize;
+
+    private List<Segment> segments;
+
+    @Setup
+    public void setUp() {
+        segments = Fixtures.segments(segmentCount);
+    }
+
+    @Benchmark
+    public String replaceText() {
+        String document = "";
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            StringBuilder more = new StringBuilder();
+            for (Segment segment : segments.subList(from, Math.min(segments.size(), from + batchSize))) {
+                more.append(segment.getText());
+            }
+            document = document + more;
+        }
+        return document;
+    }
+
+    @Benchmark
+    public StringBuilder appendPerSegment() {
+        StringBuilder document = new StringBuilder();
+        for (Segment segment : segments) {
+            document.append(segment.getText());
+        }
+        return document;
+    }
+
+    @Benchmark
+    public StringBuilder appendBatched() {
+        StringBuilder document = new StringBuilder();
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            StringBuilder more = new StringBuilder();
+            for (Segment segment : segments.subList(from, Math.min(segments.size(), from + batchSize))) {
+                more.append(segment.getText());
+            }
+            document.append(more);
+        }
+        return document;
+    }
+
+    @Benchmark
+    public SegmentList segmentList() {
+        SegmentList list = new SegmentList();
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            list.appendAll(segments.subList(from, Math.min(segments.size(), from + batchSize)));
+        }
+        return list;
+    }
+}
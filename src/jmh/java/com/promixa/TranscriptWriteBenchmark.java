@@ -0,0 +1,107 @@
+package com.promixa;
+
+import com.promixa.engine.Fixtures;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+import com.promixa.export.ExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving a transcript: the whole text as one string, as the Save button used
+ * to do with the text area's contents, against streaming the segments through
+ * a buffered writer without building the full text first, and the streaming
+ * exporters for each format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranscriptWriteBenchmark {
+
+    /** 600 segments is about an hour of speech. */
+    @Param({"600", "12000"})
+    public int segmentCount;
+
+    private static final File AUDIO = new File("talk.mp3");
+
+    private List<Segment> segments;
+    private String text;
+    private TranscriptionResult result;
+    private Path target;
+
+    @Setup
+    public void setUp() throws IOException {
+        segments = Fixtures.segments(segmentCount);
+        StringBuilder builder = new StringBuilder();
+        for (Segment segment : segments) {
+            builder.append(segment.getText());
+        }
+        text = builder.toString().strip();
+        result = new TranscriptionResult(text, segments, "base", segments.get(segments.size() - 1).getEnd(), 1.0);
+        target = Files.createTempFile("promixa-bench", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public void wholeString() throws IOException {
+        Files.writeString(target, text);
+    }
+
+    @Benchmark
+    public void streamedSegments() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            boolean first = true;
+            for (Segment segment : segments) {
+                writer.write(first ? segment.getText().stripLeading() : segment.getText());
+                first = false;
+            }
+        }
+    }
+
+    @Benchmark
+    public void exportTxt() throws IOException {
+        ExportFormat.TXT.writeTo(target, AUDIO, result);
+    }
+
+    @Benchmark
+    public void exportSrt() throws IOException {
+        ExportFormat.SRT.writeTo(target, AUDIO, result);
+    }
+
+    @Benchmark
+    public void exportVtt() throws IOException {
+        ExportFormat.VTT.writeTo(target, AUDIO, result);
+    }
+
+    @Benchmark
+    public void exportJson() throws IOException {
+        ExportFormat.JSON.writeTo(target, AUDIO, result);
+    }
+}
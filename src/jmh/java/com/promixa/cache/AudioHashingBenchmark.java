@@ -0,0 +1,78 @@
+package com.promixa.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hashing audio for the transcript cache key: {@link AudioHasher}'s
+ * memory-mapped windows against a plain buffered stream. The file stays in
+ * the page cache, so this measures hashing and copy cost, not the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AudioHashingBenchmark {
+
+    @Param({"8", "128"})
+    public int megabytes;
+
+    private Path audio;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        audio = Files.createTempFile("promixa-bench", ".wav");
+        try (OutputStream out = Files.newOutputStream(audio)) {
+            for (int i = 0; i < megabytes; i++) {
+                out.write(block);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(audio);
+    }
+
+    @Benchmark
+    public String mappedWindows() throws IOException {
+        return AudioHasher.sha256(audio);
+    }
+
+    @Benchmark
+    public byte[] bufferedStream() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(audio)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
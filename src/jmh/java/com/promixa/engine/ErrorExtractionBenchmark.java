@@ -0,0 +1,44 @@
+package com.promixa.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link WhisperWorker#extractErrorMessage} on worker logs of increasing
+ * size. The worker keeps only a short tail, but the one-shot path and older
+ * builds hand it everything the process printed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorExtractionBenchmark {
+
+    @Param({"50", "5000", "100000"})
+    public int logLines;
+
+    private String log;
+
+    @Setup
+    public void setUp() {
+        log = Fixtures.workerLog(logLines);
+    }
+
+    @Benchmark
+    public String extractErrorMessage() {
+        return WhisperWorker.extractErrorMessage(log);
+    }
+}
@@ -0,0 +1,142 @@
+package com.promixa.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * Recorded worker output used by the benchmarks, so they run without Python
+ * or a model. {@code worker-session.jsonl} holds one transcription as the
+ * worker emitted it: each line is either {@code {"event": {...}}} or
+ * {@code {"segment": [job, start, end, text]}}.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /** The recorded session encoded as protocol frames, exactly as read from the worker's stdout. */
+    public static byte[] sessionFrames() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (JsonObject line : sessionLines()) {
+            if (line.containsKey("event")) {
+                writeFrame(out, FrameDecoder.FRAME_EVENT, line.getJsonObject("event").toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                JsonArray segment = line.getJsonArray("segment");
+                byte[] text = segment.getString(3).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer payload = ByteBuffer.allocate(24 + text.length);
+                payload.putLong(segment.getJsonNumber(0).longValue())
+                        .putDouble(segment.getJsonNumber(1).doubleValue())
+                        .putDouble(segment.getJsonNumber(2).doubleValue())
+                        .put(text);
+                writeFrame(out, FrameDecoder.FRAME_SEGMENT, payload.array());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The same session in the original one-JSON-object-per-line format, with
+     * segments as {@code "segment"} events, for comparing the two parsers.
+     */
+    public static byte[] sessionJsonLines() {
+        StringBuilder out = new StringBuilder();
+        for (JsonObject line : sessionLines()) {
+            if (line.containsKey("event")) {
+                out.append(line.getJsonObject("event")).append('\n');
+            } else {
+                JsonArray segment = line.getJsonArray("segment");
+                out.append(Json.createObjectBuilder()
+                        .add("status", "segment")
+                        .add("job", segment.getJsonNumber(0).longValue())
+                        .add("start", segment.getJsonNumber(1).doubleValue())
+                        .add("end", segment.getJsonNumber(2).doubleValue())
+                        .add("text", segment.getString(3))
+                        .build()).append('\n');
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Segments of the recorded session, repeated with shifted times until there are {@code count}. */
+    public static List<Segment> segments(int count) {
+        List<Segment> recorded = new ArrayList<>();
+        for (JsonObject line : sessionLines()) {
+            if (line.containsKey("segment")) {
+                JsonArray segment = line.getJsonArray("segment");
+                recorded.add(new Segment(segment.getJsonNumber(1).doubleValue(), segment.getJsonNumber(2).doubleValue(),
+                        segment.getString(3)));
+            }
+        }
+        List<Segment> segments = new ArrayList<>(count);
+        double shift = 0;
+        while (segments.size() < count) {
+            for (int i = 0; i < recorded.size() && segments.size() < count; i++) {
+                Segment segment = recorded.get(i);
+                segments.add(new Segment(segment.getStart() + shift, segment.getEnd() + shift, segment.getText()));
+            }
+            shift += recorded.get(recorded.size() - 1).getEnd();
+        }
+        return segments;
+    }
+
+    /**
+     * A worker log of roughly {@code lines} lines: recorded progress output
+     * repeated, ending with a recorded crash.
+     */
+    public static String workerLog(int lines) {
+        String[] progress = resource("worker-stderr.log").split("\n");
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            log.append(progress[i % progress.length]).append(System.lineSeparator());
+        }
+        for (String line : resource("worker-crash-tail.log").split("\n")) {
+            log.append(line).append(System.lineSeparator());
+        }
+        return log.toString();
+    }
+
+    private static List<JsonObject> sessionLines() {
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : resource("worker-session.jsonl").split("\n")) {
+            if (!line.isBlank()) {
+                try (JsonReader reader = Json.createReader(new StringReader(line))) {
+                    lines.add(reader.readObject());
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int type, byte[] payload) {
+        out.write(FrameDecoder.PROTOCOL_VERSION);
+        out.write(type);
+        out.write(payload.length >>> 24);
+        out.write(payload.length >>> 16);
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
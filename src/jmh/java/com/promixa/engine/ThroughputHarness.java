@@ -0,0 +1,355 @@
+package com.promixa.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * End-to-end throughput of the transcription engine: worker spawn, the frame
+ * protocol, parsing and delivery of results through {@link TranscriptionService},
+ * the same path the Transcribe button takes. Whisper is replaced by
+ * {@code src/test/python/stub_worker.py}, whose model-load and per-segment
+ * delays are known, so whatever time remains is orchestration overhead.
+ * <p>
+ * For every parallelism setting the harness transcribes a batch of files and
+ * reports files/hour, real-time factor, time to first segment and per-job
+ * overhead percentiles. With {@code --baseline} it fails (exit 1) when
+ * throughput drops or overhead grows by more than the tolerance.
+ * <p>
+ * Run with {@code mvn -P benchmark test-compile exec:exec@throughput}, or
+ * directly with {@code --help} for the options. The stub's delays come from
+ * the {@code STUB_LOAD_SECONDS} and {@code STUB_SEGMENT_DELAY} environment
+ * variables.
+ */
+public final class ThroughputHarness {
+
+    private static final double STUB_SEGMENT_SECONDS = 5.0;
+    private static final int SAMPLE_RATE = 16000;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Options:",
+            "  --parallel 1,2,4        parallelism settings to measure (default: 1,2,4)",
+            "  --files N               files per setting (default: 24)",
+            "  --seconds N             audio length of each file (default: 60)",
+            "  --python PATH           interpreter for the stub (default: python3)",
+            "  --script PATH           worker script (default: src/test/python/stub_worker.py)",
+            "  --output FILE           where to write the JSON report",
+            "  --baseline FILE         compare against an earlier report; exit 1 on regression",
+            "  --tolerance F           allowed relative regression (default: 0.20)",
+            "  --save-baseline FILE    also write the report as the new baseline");
+
+    private ThroughputHarness() {
+    }
+
+    /** What one job went through, in nanoseconds from the batch start. */
+    private static final class JobTiming {
+        volatile long startedNanos;
+        volatile long firstSegmentNanos;
+        volatile long finishedNanos;
+        volatile boolean loadedModel;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] parallelism = {1, 2, 4};
+        int files = 24;
+        int seconds = 60;
+        String python = "python3";
+        String script = "src/test/python/stub_worker.py";
+        Path output = null;
+        Path baseline = null;
+        Path saveBaseline = null;
+        double tolerance = 0.20;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallel":
+                    parallelism = Arrays.stream(args[++i].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                    break;
+                case "--files":
+                    files = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--python":
+                    python = args[++i];
+                    break;
+                case "--script":
+                    script = args[++i];
+                    break;
+                case "--output":
+                    output = Paths.get(args[++i]);
+                    break;
+                case "--baseline":
+                    baseline = Paths.get(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--save-baseline":
+                    saveBaseline = Paths.get(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println(USAGE);
+                    System.exit(2);
+            }
+        }
+
+        double loadSeconds = envSeconds("STUB_LOAD_SECONDS", 0.2);
+        double segmentDelay = envSeconds("STUB_SEGMENT_DELAY", 0.02);
+        Path scriptPath = Paths.get(script).toAbsolutePath();
+        Path audio = Files.createTempFile("promixa-throughput", ".wav");
+        try {
+            writeSilence(audio, seconds);
+            System.out.printf(Locale.ROOT, "Stub worker: model load %.2fs, %.3fs per %.0fs segment; %d files of %ds%n",
+                    loadSeconds, segmentDelay, STUB_SEGMENT_SECONDS, files, seconds);
+
+            JsonArrayBuilder scenarios = Json.createArrayBuilder();
+            List<JsonObject> results = new ArrayList<>();
+            for (int workers : parallelism) {
+                JsonObject result = runScenario(python, scriptPath, audio.toFile(), workers, files, seconds,
+                        loadSeconds, segmentDelay);
+                results.add(result);
+                scenarios.add(result);
+            }
+            JsonObject report = Json.createObjectBuilder()
+                    .add("files", files)
+                    .add("audioSecondsPerFile", seconds)
+                    .add("stubLoadSeconds", loadSeconds)
+                    .add("stubSegmentDelaySeconds", segmentDelay)
+                    .add("scenarios", scenarios)
+                    .build();
+
+            if (output != null) {
+                write(output, report);
+                System.out.println("Report written to " + output);
+            }
+            if (saveBaseline != null) {
+                write(saveBaseline, report);
+                System.out.println("Baseline written to " + saveBaseline);
+            }
+            if (baseline != null) {
+                JsonObject previous = read(baseline);
+                if (previous.getInt("audioSecondsPerFile") != seconds
+                        || previous.getJsonNumber("stubSegmentDelaySeconds").doubleValue() != segmentDelay
+                        || previous.getJsonNumber("stubLoadSeconds").doubleValue() != loadSeconds) {
+                    System.out.println("Warning: the baseline was recorded with different file or stub settings.");
+                }
+                if (!compare(previous, results, tolerance)) {
+                    System.exit(1);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(audio);
+        }
+    }
+
+    private static JsonObject runScenario(String python, Path script, File audio, int workers, int files,
+                                          int seconds, double loadSeconds, double segmentDelay)
+            throws InterruptedException {
+        Map<Long, JobTiming> timings = new ConcurrentHashMap<>();
+        long origin = System.nanoTime();
+        List<TranscriptionJob> jobs = new ArrayList<>();
+
+        try (TranscriptionService service = new TranscriptionService(python, () -> script, "cpu")) {
+            service.setParallelism(workers);
+            service.getQueue().addListener(new TranscriptionQueue.Listener() {
+                @Override
+                public void jobUpdated(TranscriptionJob job) {
+                    JobTiming timing = timings.computeIfAbsent(job.getId(), id -> new JobTiming());
+                    long now = System.nanoTime() - origin;
+                    if (job.getState() == TranscriptionJob.State.RUNNING) {
+                        if (timing.startedNanos == 0) {
+                            timing.startedNanos = now;
+                        }
+                        if (job.getMessage().startsWith("Loading")) {
+                            timing.loadedModel = true;
+                        }
+                    } else if (job.getState().isFinished() && timing.finishedNanos == 0) {
+                        timing.finishedNanos = now;
+                    }
+                }
+
+                @Override
+                public void segmentAdded(TranscriptionJob job, Segment segment) {
+                    JobTiming timing = timings.computeIfAbsent(job.getId(), id -> new JobTiming());
+                    if (timing.firstSegmentNanos == 0) {
+                        timing.firstSegmentNanos = System.nanoTime() - origin;
+                    }
+                }
+            });
+
+            for (int i = 0; i < files; i++) {
+                jobs.add(service.submit(audio, "base", TranscriptionOptions.DEFAULT));
+            }
+            service.awaitIdle();
+        }
+        double wallSeconds = (System.nanoTime() - origin) / 1e9;
+
+        int failed = 0;
+        double audioSeconds = 0;
+        List<Double> latency = new ArrayList<>();
+        List<Double> firstSegment = new ArrayList<>();
+        List<Double> overhead = new ArrayList<>();
+        for (TranscriptionJob job : jobs) {
+            JobTiming timing = timings.get(job.getId());
+            if (job.getState() != TranscriptionJob.State.COMPLETED || timing == null) {
+                failed++;
+                continue;
+            }
+            audioSeconds += job.getResult().getAudioSeconds();
+            latency.add((timing.finishedNanos) / 1e9);
+            firstSegment.add((timing.firstSegmentNanos - timing.startedNanos) / 1e9);
+
+            // What the stub spent "in the model"; the rest of the job's run time is ours
+            double modelSeconds = job.getResult().getSegments().size() * segmentDelay
+                    + (timing.loadedModel ? loadSeconds : 0);
+            overhead.add((timing.finishedNanos - timing.startedNanos) / 1e9 - modelSeconds);
+        }
+
+        int completed = files - failed;
+        double filesPerHour = completed * 3600.0 / wallSeconds;
+        double realtimeFactor = audioSeconds / wallSeconds;
+        // Best case for this parallelism if orchestration were free
+        double idealWall = Math.ceil((double) files / workers)
+                * (Math.ceil(seconds / STUB_SEGMENT_SECONDS) * segmentDelay) + loadSeconds;
+
+        System.out.printf(Locale.ROOT, "parallel=%d  %.0f files/h  %.1fx realtime  wall %.2fs (ideal %.2fs)%n",
+                workers, filesPerHour, realtimeFactor, wallSeconds, idealWall);
+        System.out.printf(Locale.ROOT, "    first segment ms  p50 %.1f  p90 %.1f  p99 %.1f%n",
+                percentile(firstSegment, 50) * 1000, percentile(firstSegment, 90) * 1000, percentile(firstSegment, 99) * 1000);
+        System.out.printf(Locale.ROOT, "    overhead/job ms   p50 %.1f  p90 %.1f  p99 %.1f%n",
+                percentile(overhead, 50) * 1000, percentile(overhead, 90) * 1000, percentile(overhead, 99) * 1000);
+        if (failed > 0) {
+            System.out.println("    " + failed + " job(s) failed");
+        }
+
+        return Json.createObjectBuilder()
+                .add("parallelism", workers)
+                .add("completed", completed)
+                .add("failed", failed)
+                .add("wallSeconds", wallSeconds)
+                .add("idealWallSeconds", idealWall)
+                .add("filesPerHour", filesPerHour)
+                .add("realtimeFactor", realtimeFactor)
+                .add("firstSegmentSeconds", percentiles(firstSegment))
+                .add("overheadSeconds", percentiles(overhead))
+                .add("completionSeconds", percentiles(latency))
+                .build();
+    }
+
+    /**
+     * Checks every scenario that is also in the baseline.
+     *
+     * @return {@code false} on a regression beyond the tolerance
+     */
+    private static boolean compare(JsonObject baseline, List<JsonObject> results, double tolerance) {
+        Map<Integer, JsonObject> previous = new HashMap<>();
+        for (JsonObject scenario : baseline.getJsonArray("scenarios").getValuesAs(JsonObject.class)) {
+            previous.put(scenario.getInt("parallelism"), scenario);
+        }
+        boolean ok = true;
+        for (JsonObject result : results) {
+            JsonObject before = previous.get(result.getInt("parallelism"));
+            if (before == null) {
+                continue;
+            }
+            double was = before.getJsonNumber("filesPerHour").doubleValue();
+            double now = result.getJsonNumber("filesPerHour").doubleValue();
+            if (now < was * (1 - tolerance)) {
+                System.out.printf(Locale.ROOT, "REGRESSION parallel=%d: %.0f files/h, baseline %.0f%n",
+                        result.getInt("parallelism"), now, was);
+                ok = false;
+            }
+            double wasOverhead = before.getJsonObject("overheadSeconds").getJsonNumber("p90").doubleValue();
+            double nowOverhead = result.getJsonObject("overheadSeconds").getJsonNumber("p90").doubleValue();
+            // Sub-10 ms overheads are scheduler noise; don't flag them
+            if (nowOverhead > Math.max(0.010, wasOverhead * (1 + tolerance))) {
+                System.out.printf(Locale.ROOT, "REGRESSION parallel=%d: p90 overhead %.1f ms, baseline %.1f ms%n",
+                        result.getInt("parallelism"), nowOverhead * 1000, wasOverhead * 1000);
+                ok = false;
+            }
+        }
+        System.out.println(ok ? "No regression against the baseline." : "Regression against the baseline.");
+        return ok;
+    }
+
+    private static JsonObjectBuilder percentiles(List<Double> values) {
+        return Json.createObjectBuilder()
+                .add("p50", percentile(values, 50))
+                .add("p90", percentile(values, 90))
+                .add("p99", percentile(values, 99))
+                .add("max", percentile(values, 100));
+    }
+
+    /** Nearest-rank percentile; 0 for an empty list. */
+    private static double percentile(List<Double> values, int percent) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double envSeconds(String name, double defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : Double.parseDouble(value);
+    }
+
+    /** Writes a 16 kHz mono 16-bit WAV of silence; the stub only reads its header. */
+    private static void writeSilence(Path target, int seconds) throws IOException {
+        int dataBytes = seconds * SAMPLE_RATE * 2;
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + dataBytes)
+                .put("WAVEfmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) 1).putShort((short) 1).putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2)
+                .putShort((short) 2).putShort((short) 16)
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(dataBytes);
+        try (OutputStream out = Files.newOutputStream(target)) {
+            out.write(header.array());
+            out.write(new byte[dataBytes]);
+        }
+    }
+
+    private static void write(Path target, JsonObject report) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter writer = Json.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true)).createWriter(buffer)) {
+            writer.writeObject(report);
+        }
+        Files.writeString(target, buffer.toString().strip() + System.lineSeparator());
+    }
+
+    private static JsonObject read(Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source); JsonReader reader = Json.createReader(in)) {
+            return reader.readObject();
+        }
+    }
+}
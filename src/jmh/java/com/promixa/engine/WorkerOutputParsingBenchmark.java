@@ -0,0 +1,84 @@
+package com.promixa.engine;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of reading one recorded transcription (600 segments) from the worker's
+ * stdout: the framed protocol read by {@link WhisperWorker}, against the
+ * earlier loop that parsed every line as JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkerOutputParsingBenchmark {
+
+    private byte[] frames;
+    private byte[] jsonLines;
+
+    @Setup
+    public void setUp() {
+        frames = Fixtures.sessionFrames();
+        jsonLines = Fixtures.sessionJsonLines();
+    }
+
+    @Benchmark
+    public void framed(Blackhole blackhole) throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new ByteArrayInputStream(frames));
+        while (decoder.next()) {
+            if (decoder.type() == FrameDecoder.FRAME_SEGMENT) {
+                if (decoder.segmentJob() == 1) {
+                    blackhole.consume(decoder.segment());
+                }
+            } else {
+                blackhole.consume(decoder.event());
+            }
+        }
+    }
+
+    @Benchmark
+    public void jsonLines(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(jsonLines), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("{")) {
+                    continue;
+                }
+                try (JsonReader json = Json.createReader(new StringReader(line))) {
+                    JsonObject event = json.readObject();
+                    if ("segment".equals(event.getString("status", ""))) {
+                        blackhole.consume(new Segment(event.getJsonNumber("start").doubleValue(),
+                                event.getJsonNumber("end").doubleValue(), event.getString("text")));
+                    } else {
+                        blackhole.consume(event);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.promixa.search;
+
+import com.promixa.engine.Fixtures;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searching the transcript history: the inverted index for a common word, two
+ * words in one segment, a phrase and a word only one transcript contains,
+ * against scanning every segment's text as a search without an index would.
+ * Each transcript is an hour of recorded speech (600 segments).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TranscriptSearchBenchmark {
+
+    @Param({"100", "2000"})
+    public int transcriptCount;
+
+    private static final int LIMIT = 100;
+
+    private Path directory;
+    private TranscriptStore store;
+    private List<String> lowerCaseTexts;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("promixa-search-bench");
+        store = new TranscriptStore(directory);
+        List<Segment> recorded = Fixtures.segments(600);
+        lowerCaseTexts = new ArrayList<>();
+        for (int i = 0; i < transcriptCount; i++) {
+            List<Segment> segments = new ArrayList<>(recorded);
+            // One word per transcript that no other transcript has
+            Segment last = segments.get(segments.size() - 1);
+            segments.set(segments.size() - 1, new Segment(last.getStart(), last.getEnd(),
+                    last.getText() + " unique" + i));
+            store.add(new File("talk-" + i + ".mp3"),
+                    new TranscriptionResult("", segments, "base", last.getEnd(), 1.0));
+            for (Segment segment : segments) {
+                lowerCaseTexts.add(segment.getText().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<SearchHit> commonWord() throws IOException {
+        return store.search("meeting", LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchHit> twoWords() throws IOException {
+        return store.search("budget roadmap", LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchHit> phrase() throws IOException {
+        return store.search("\"audio meeting\"", LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchHit> rareWord() throws IOException {
+        return store.search("unique7", LIMIT);
+    }
+
+    @Benchmark
+    public int linearScanRareWord() {
+        int hits = 0;
+        for (String text : lowerCaseTexts) {
+            if (text.contains("unique7")) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,57 @@
+package com.promixa;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locations of PROMIXA's per-user data. Everything lives under
+ * {@code ~/.promixa} unless the {@code promixa.home} system property points
+ * somewhere else.
+ */
+public final class AppDirectories {
+
+    private AppDirectories() {
+    }
+
+    public static Path dataDir() {
+        String override = System.getProperty("promixa.home");
+        if (override != null && !override.isEmpty()) {
+            return Paths.get(override);
+        }
+        return Paths.get(System.getProperty("user.home"), ".promixa");
+    }
+
+    public static Path cacheDir() {
+        return dataDir().resolve("cache");
+    }
+
+    /** Every finished transcript and its search index. */
+    public static Path transcriptsDir() {
+        return dataDir().resolve("transcripts");
+    }
+
+    /** Progress of unfinished jobs, so they continue after a crash or failure. */
+    public static Path checkpointsDir() {
+        return dataDir().resolve("checkpoints");
+    }
+
+    /** Result of the last environment probe, reused while nothing changed. */
+    public static Path environmentCacheFile() {
+        return dataDir().resolve("environment.json");
+    }
+
+    /** Transcription speeds measured on this machine. */
+    public static Path calibrationFile() {
+        return dataDir().resolve("calibration.json");
+    }
+
+    /** Content hashes of the recordings watched folders have already transcribed. */
+    public static Path watchLedgerFile() {
+        return dataDir().resolve("watched.tsv");
+    }
+
+    /** Audio received by the HTTP server while its jobs are pending. */
+    public static Path uploadDir() {
+        return dataDir().resolve("uploads");
+    }
+}
@@ -0,0 +1,42 @@
+package com.promixa;
+
+/**
+ * Option value parsing shared by the command line and the server. Bad values
+ * are reported as {@link IllegalArgumentException}s whose message is shown to
+ * the user next to the usage text.
+ */
+public final class CommandLineArgs {
+
+    private CommandLineArgs() {
+    }
+
+    /** The value following {@code option}, at {@code index}. */
+    public static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value.");
+        }
+        return args[index];
+    }
+
+    public static int positiveInt(String[] args, int index, String option) {
+        return intAtLeast(args, index, option, 1, "a positive number");
+    }
+
+    /** For limits where 0 means off. */
+    public static int nonNegativeInt(String[] args, int index, String option) {
+        return intAtLeast(args, index, option, 0, "0 or a positive number");
+    }
+
+    private static int intAtLeast(String[] args, int index, String option, int min, String expected) {
+        String value = value(args, index, option);
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " needs " + expected + ", got: " + value);
+    }
+}
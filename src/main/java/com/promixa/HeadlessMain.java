@@ -0,0 +1,452 @@
+package com.promixa;
+
+import com.promixa.cache.TranscriptCache;
+import com.promixa.engine.AudioFiles;
+import com.promixa.engine.Calibration;
+import com.promixa.engine.Calibrator;
+import com.promixa.engine.PoolSizing;
+import com.promixa.engine.QueuePlanner;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionOptions;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.engine.TranscriptionService;
+import com.promixa.engine.WhisperEnvironment;
+import com.promixa.export.AutoExporter;
+import com.promixa.export.ExportFormat;
+import com.promixa.search.SearchHit;
+import com.promixa.search.TranscriptStore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line front end for batch runs on machines without a display. Uses
+ * the same {@link TranscriptionService} as the desktop app, so the worker pool,
+ * long-file mode and transcript cache behave identically.
+ * <p>
+ * Transcripts go to standard output, or to one file per input with
+ * {@code --output}; progress and diagnostics go to standard error.
+ */
+public final class HeadlessMain {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final int MAX_SEARCH_HITS = 100;
+
+    private static final Set<String> MODELS = Set.of("tiny", "base", "small", "medium", "large");
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: promixa --headless [options] <file|folder|glob>...",
+            "       promixa --headless --watch DIR [options]",
+            "       promixa --headless --search QUERY",
+            "       promixa --headless --calibrate [--model NAME] [clip]",
+            "",
+            "Options:",
+            "  --model NAME          tiny, base, small, medium or large (default: base)",
+            "  --language CODE       spoken language, e.g. en; detected when omitted",
+            "  --parallel N          files transcribed at once (default: the fastest split",
+            "                        measured by --calibrate, else what fits free memory)",
+            "  --chunk-minutes N     split long files into chunks of about N minutes",
+            "  --chunk-workers N     workers used for the chunks of one file (default: 2)",
+            "  --format LIST         txt, srt, vtt or json (default: txt); with --output a",
+            "                        comma-separated list such as txt,srt writes each format",
+            "  --output DIR          write <name>.<format> into DIR as each file finishes",
+            "  --watch DIR           keep running and transcribe every recording that appears in",
+            "                        DIR or below it once fully written, skipping recordings",
+            "                        transcribed before; writes next to each recording unless",
+            "                        --output is given",
+            "  --timeout MIN         fail a file still running after MIN minutes (default: 0, off)",
+            "  --stall-timeout MIN   fail a file when its worker is silent for MIN minutes",
+            "                        (default: 10, 0 turns it off)",
+            "  --no-cache            do not read or write the transcript cache",
+            "  --no-resume           start every file from the beginning and keep no checkpoints;",
+            "                        by default a file cut off earlier continues where it stopped",
+            "  --no-history          do not add the transcripts to the searchable history",
+            "  --search QUERY        print where earlier transcripts say QUERY (all words in one",
+            "                        segment, or an exact phrase in double quotes) and exit",
+            "  --calibrate           time each model (or just --model) for every split of the",
+            "                        cores into workers and threads on a short clip, save the",
+            "                        results for later runs and exit; clip: built-in sample",
+            "  --stats               print per-phase timings and counters to stderr at the end",
+            "  --python PATH         Python interpreter that has Whisper installed",
+            "  --script PATH         worker script to run instead of the bundled whisper_script.py",
+            "  --help                show this message",
+            "",
+            "Exit status: 0 if every file was transcribed, 1 if any failed, 2 on a usage error.",
+            "With --search: 0 if anything was found, 1 if not.");
+
+    private HeadlessMain() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs a batch and returns the process exit status.
+     */
+    static int run(String[] args) {
+        // Stdout carries transcripts; anything the engine logs belongs on stderr
+        PrintStream out = System.out;
+        System.setOut(System.err);
+
+        String model = "base";
+        boolean modelGiven = false;
+        boolean calibrate = false;
+        String language = null;
+        List<ExportFormat> formats = List.of(ExportFormat.TXT);
+        Path outputDir = null;
+        Path watchDir = null;
+        boolean useCache = true;
+        boolean useHistory = true;
+        boolean useCheckpoints = true;
+        String searchQuery = null;
+        long jobTimeoutMinutes = 0;
+        long stallTimeoutMinutes = TimeUnit.MILLISECONDS.toMinutes(TranscriptionQueue.DEFAULT_STALL_TIMEOUT_MS);
+        boolean stats = false;
+        Integer parallelism = null;
+        int chunkMinutes = 0;
+        int chunkWorkers = 2;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--model":
+                        model = CommandLineArgs.value(args, ++i, arg);
+                        if (!MODELS.contains(model)) {
+                            throw new IllegalArgumentException("Unknown model: " + model);
+                        }
+                        modelGiven = true;
+                        break;
+                    case "--language":
+                        language = CommandLineArgs.value(args, ++i, arg);
+                        break;
+                    case "--parallel":
+                        parallelism = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--chunk-minutes":
+                        chunkMinutes = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--chunk-workers":
+                        chunkWorkers = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--format":
+                        formats = ExportFormat.parseList(CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--output":
+                        outputDir = Paths.get(CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--watch":
+                        watchDir = Paths.get(CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--timeout":
+                        jobTimeoutMinutes = CommandLineArgs.nonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--stall-timeout":
+                        stallTimeoutMinutes = CommandLineArgs.nonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--no-cache":
+                        useCache = false;
+                        break;
+                    case "--no-resume":
+                        useCheckpoints = false;
+                        break;
+                    case "--no-history":
+                        useHistory = false;
+                        break;
+                    case "--search":
+                        searchQuery = CommandLineArgs.value(args, ++i, arg);
+                        break;
+                    case "--calibrate":
+                        calibrate = true;
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    case "--python":
+                        System.setProperty("promixa.python", CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--script":
+                        System.setProperty("promixa.script", CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--help":
+                    case "-h":
+                        out.println(USAGE);
+                        return EXIT_OK;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        inputs.add(arg);
+                }
+            }
+            if (searchQuery != null) {
+                if (!inputs.isEmpty()) {
+                    throw new IllegalArgumentException("--search takes no input files.");
+                }
+            } else if (calibrate) {
+                if (inputs.size() > 1) {
+                    throw new IllegalArgumentException("--calibrate takes at most one clip.");
+                }
+            } else if (watchDir != null) {
+                if (!inputs.isEmpty()) {
+                    throw new IllegalArgumentException("--watch takes no input files.");
+                }
+            } else if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No input files given.");
+            }
+            // A watched folder's transcripts go next to the recordings without --output
+            if (outputDir == null && watchDir == null && formats.size() > 1) {
+                throw new IllegalArgumentException("Several formats need --output.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (searchQuery != null) {
+            return search(searchQuery, out);
+        }
+        if (calibrate) {
+            return calibrate(modelGiven ? List.of(model) : Calibrator.DEFAULT_MODELS,
+                    inputs.isEmpty() ? null : new File(inputs.get(0)), out);
+        }
+
+        // Duplicates from overlapping globs would only be transcribed twice
+        Set<File> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            try {
+                for (File file : AudioFiles.expand(input)) {
+                    files.add(file.getAbsoluteFile());
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return EXIT_USAGE;
+            }
+        }
+        if (files.isEmpty() && watchDir == null) {
+            System.err.println("No audio files matched.");
+            return EXIT_USAGE;
+        }
+        TranscriptionOptions options = chunkMinutes > 0
+                ? new TranscriptionOptions(language, chunkMinutes * 60, chunkWorkers)
+                : new TranscriptionOptions(language, 0, 1);
+
+        try (TranscriptionService service = TranscriptionService.createDefault()) {
+            service.setParallelism(parallelism != null ? parallelism : PoolSizing.recommendedWorkers(model));
+            service.setChunkWorkers(options.getChunkParallelism());
+            // Chunked files spread over several workers each, which the calibration does not model
+            if (!options.isChunked() && watchDir == null
+                    && service.loadCalibration(AppDirectories.calibrationFile()) != null) {
+                List<File> batch = new ArrayList<>(files);
+                QueuePlanner.Plan plan = parallelism == null ? service.plan(model, batch) : null;
+                if (plan != null) {
+                    service.apply(plan);
+                    System.err.println("Running " + plan);
+                } else {
+                    double estimate = service.estimate(model, batch);
+                    if (estimate >= 0) {
+                        System.err.println("Estimated time: " + QueuePlanner.formatDuration(estimate));
+                    }
+                }
+            }
+            service.setTimeouts(TimeUnit.MINUTES.toMillis(jobTimeoutMinutes), TimeUnit.MINUTES.toMillis(stallTimeoutMinutes));
+            if (useCache) {
+                try {
+                    service.enableCache(AppDirectories.cacheDir(), TranscriptCache.DEFAULT_MAX_BYTES);
+                } catch (IOException e) {
+                    System.err.println("Transcript cache disabled: " + e.getMessage());
+                }
+            }
+            if (useCheckpoints) {
+                try {
+                    service.enableCheckpoints(AppDirectories.checkpointsDir());
+                } catch (IOException e) {
+                    System.err.println("Checkpoints disabled: " + e.getMessage());
+                }
+            }
+            if (useHistory) {
+                try {
+                    service.enableTranscriptStore(AppDirectories.transcriptsDir());
+                } catch (IOException e) {
+                    System.err.println("Transcript history disabled: " + e.getMessage());
+                }
+            }
+            if (watchDir != null) {
+                return watch(service, watchDir, model, options, outputDir, formats, parallelism == null);
+            }
+            // Files are written as each job completes rather than after the whole batch
+            AutoExporter exporter = null;
+            if (outputDir != null) {
+                try {
+                    exporter = service.enableAutoExport(outputDir, formats);
+                } catch (IOException e) {
+                    System.err.println("Cannot create output folder " + outputDir + ": " + e.getMessage());
+                    return EXIT_USAGE;
+                }
+            }
+            service.getQueue().addListener(job -> {
+                if (job.getState() != TranscriptionJob.State.QUEUED) {
+                    System.err.println("[" + job.getAudioFile().getName() + "] " + job.getMessage());
+                }
+            });
+
+            List<TranscriptionJob> jobs = new ArrayList<>();
+            for (File file : files) {
+                jobs.add(service.submit(file, model, options));
+            }
+            service.awaitIdle();
+
+            int failed = 0;
+            ExportFormat format = formats.get(0);
+            Writer stdout = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (TranscriptionJob job : jobs) {
+                if (job.getState() != TranscriptionJob.State.COMPLETED) {
+                    System.err.println("Failed: " + job.getAudioFile() + ": " + job.getError());
+                    failed++;
+                } else if (exporter != null) {
+                    if (exporter.getError(job) != null) {
+                        System.err.println(exporter.getError(job));
+                        failed++;
+                    }
+                } else {
+                    try {
+                        if (format == ExportFormat.TXT && jobs.size() > 1) {
+                            stdout.write("==> " + job.getAudioFile() + " <==" + System.lineSeparator());
+                        }
+                        format.write(job.getAudioFile(), job.getResult(), stdout);
+                    } catch (IOException e) {
+                        System.err.println("Cannot write to standard output: " + e.getMessage());
+                        return EXIT_FAILED;
+                    }
+                }
+            }
+
+            System.err.println(files.size() - failed + " of " + files.size() + " file(s) transcribed; "
+                    + service.getQueue().getStats());
+            if (service.getQueue().getCache() != null) {
+                System.err.println(service.getQueue().getCache().statsSummary());
+            }
+            if (stats) {
+                System.err.print(service.getMetrics().format());
+            }
+            return failed == 0 ? EXIT_OK : EXIT_FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted.");
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Watches {@code directory} until the process is stopped, printing each
+     * job's progress. Without {@code --parallel}, runs the split with the
+     * highest measured throughput, since recordings keep arriving.
+     */
+    private static int watch(TranscriptionService service, Path directory, String model,
+                             TranscriptionOptions options, Path outputDir, List<ExportFormat> formats,
+                             boolean useCalibration) throws InterruptedException {
+        if (useCalibration && !options.isChunked()) {
+            Calibration calibration = service.loadCalibration(AppDirectories.calibrationFile());
+            Calibration.Measurement best = calibration != null ? calibration.best(model) : null;
+            if (best != null) {
+                service.getWorkerManager().setThreadsPerWorker(best.getThreads());
+                service.setParallelism(best.getWorkers());
+                System.err.println("Running " + best);
+            }
+        }
+        service.getQueue().addListener(job -> {
+            if (job.getState() != TranscriptionJob.State.QUEUED) {
+                System.err.println("[" + job.getAudioFile().getName() + "] " + job.getMessage());
+            }
+        });
+        try {
+            service.watchFolder(directory, AppDirectories.watchLedgerFile(), model, options, outputDir, formats);
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + directory + ": " + e.getMessage());
+            return EXIT_USAGE;
+        }
+        System.err.println("Watching " + directory.toAbsolutePath() + "; press Ctrl+C to stop.");
+        // Ctrl+C runs the shutdown hooks; recordings not finished by then are picked up at the next start
+        Runtime.getRuntime().addShutdownHook(new Thread(service::close, "watch-shutdown"));
+        new CountDownLatch(1).await();
+        return EXIT_OK;
+    }
+
+    /**
+     * Measures {@code models} and saves the result, printing each measurement
+     * and the best split per model.
+     */
+    private static int calibrate(List<String> models, File clip, PrintStream out) {
+        if (clip != null && !clip.isFile()) {
+            System.err.println("No such file: " + clip);
+            return EXIT_USAGE;
+        }
+        try {
+            Calibration calibration = Calibrator.createDefault().run(models, clip, line -> {
+                out.println(line);
+                out.flush();
+            });
+            for (String model : models) {
+                out.println("Best for " + model + ": " + calibration.best(model));
+            }
+            // Keep what was measured earlier for the other models
+            Calibration earlier = Calibration.load(AppDirectories.calibrationFile(), WhisperEnvironment.device());
+            if (earlier != null) {
+                calibration = earlier.updatedWith(calibration);
+            }
+            calibration.save(AppDirectories.calibrationFile());
+            System.err.println("Saved to " + AppDirectories.calibrationFile());
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("Calibration failed: " + e.getMessage());
+            return EXIT_FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted.");
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Prints one line per hit: the audio file, the time of the match and the
+     * segment text, separated by tabs.
+     */
+    private static int search(String query, PrintStream out) {
+        try (TranscriptStore store = new TranscriptStore(AppDirectories.transcriptsDir())) {
+            long started = System.nanoTime();
+            List<SearchHit> hits = store.search(query, MAX_SEARCH_HITS);
+            long micros = (System.nanoTime() - started) / 1000;
+            for (SearchHit hit : hits) {
+                out.println(hit.getTranscript().getAudioFile() + "\t" + Segment.formatTime(hit.getTime()) + "\t" + hit.getText());
+            }
+            out.flush();
+            System.err.printf(Locale.ROOT, "%d hit(s) in %d transcript(s), %.1f ms%n", hits.size(), store.size(),
+                    micros / 1000.0);
+            return hits.isEmpty() ? EXIT_FAILED : EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("Cannot search the transcript history: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.promixa;
+
+import com.promixa.server.ServerMain;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of the packaged application. Starts the desktop UI, the
+ * command line when the first argument is {@code --headless} or {@code --cli},
+ * or the local HTTP server with {@code --serve}.
+ * <p>
+ * This class must not touch JavaFX so that the headless path runs on servers
+ * without a display, and so that a plain (non-modular) JAR can start the UI.
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        if (args.length > 0 && (args[0].equals("--headless") || args[0].equals("--cli"))) {
+            System.exit(HeadlessMain.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            ServerMain.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        MainApp.main(args);
+    }
+}
@@ -1,57 +1,155 @@
 package com.promixa;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.scene.image.Image;
 
+import com.promixa.engine.EnvironmentProbe;
+import com.promixa.engine.EnvironmentReport;
+import com.promixa.engine.TranscriptionService;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MainApp extends Application {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MainApp.class);
+
+    private MainController controller;
+    private TranscriptionService service;
+    private boolean stopped;
+
     @Override
-    public void start(Stage primaryStage) throws IOException {
-        URL fxmlUrl = getClass().getResource("main-view.fxml");
-        if (fxmlUrl == null) {
-            System.err.println("Cannot load FXML file: main-view.fxml");
-            return;
-        }
-        Parent root = FXMLLoader.load(fxmlUrl);
+    public void start(Stage primaryStage) {
+        // Checking Python, torch and FFmpeg can take seconds; it runs while the UI loads
+        CompletableFuture<EnvironmentReport> environment =
+                EnvironmentProbe.createDefault(AppDirectories.environmentCacheFile()).probe();
 
-        URL cssUrl = getClass().getResource("styles.css");
-        if (cssUrl == null) {
-            System.err.println("Cannot load CSS file: styles.css");
-        } else {
-            root.getStylesheets().add(cssUrl.toExternalForm());
-        }
+        // Show the window right away and build the real UI once the icon has been read
+        Label startingLabel = new Label("Starting PROMIXA...");
+        VBox placeholder = new VBox(10.0, new ProgressIndicator(), startingLabel);
+        placeholder.setAlignment(Pos.CENTER);
 
         // Set minimum window size to ensure all controls are visible
-        Scene scene = new Scene(root); 
+        Scene scene = new Scene(placeholder, 900, 700);
         primaryStage.setMinWidth(900);
         primaryStage.setMinHeight(700);
-        
+
         // Pass the HostServices to the scene properties for browser access
         scene.getProperties().put("hostServices", getHostServices());
 
-        // Set app icon
+        primaryStage.setTitle("PROMIXA Transcription");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        Thread uiLoader = new Thread(() -> loadUi(primaryStage, scene, startingLabel, environment), "ui-loader");
+        uiLoader.setDaemon(true);
+        uiLoader.start();
+    }
+
+    /**
+     * Reads the icon and sets up the transcription service on a background
+     * thread, then builds the UI on the FX thread: the controller creates and
+     * wires up controls while loading, which must not happen off it, and
+     * building the nodes is quick.
+     */
+    private void loadUi(Stage stage, Scene scene, Label startingLabel, CompletableFuture<EnvironmentReport> environment) {
+        Image icon = null;
         try {
             InputStream iconStream = getClass().getResourceAsStream("icons/app-icon.png");
             if (iconStream != null) {
-                primaryStage.getIcons().add(new Image(iconStream));
+                icon = new Image(iconStream);
             } else {
-                System.err.println("Cannot load application icon");
+                LOG.warn("Cannot load application icon");
             }
         } catch (Exception e) {
-            System.err.println("Error loading application icon: " + e.getMessage());
+            LOG.warn("Error loading application icon: {}", e.getMessage());
         }
 
-        primaryStage.setTitle("PROMIXA Transcription");
-        primaryStage.setScene(scene);
-        primaryStage.show();
+        TranscriptionService transcriptionService = TranscriptionService.createDefault();
+
+        Image appIcon = icon;
+        Platform.runLater(() -> {
+            if (stopped) {
+                // Window was closed before the UI started loading
+                transcriptionService.close();
+                return;
+            }
+            service = transcriptionService;
+            Parent root = buildUi(startingLabel);
+            if (root == null) {
+                return;
+            }
+            scene.setRoot(root);
+            if (appIcon != null) {
+                stage.getIcons().add(appIcon);
+            }
+            MainController loadedController = controller;
+            environment.whenComplete((report, error) -> {
+                if (report != null) {
+                    Platform.runLater(() -> loadedController.showEnvironment(report));
+                } else {
+                    LOG.warn("Environment check failed", error);
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads the FXML and stylesheet on the FX thread.
+     *
+     * @return the root node, or {@code null} if the FXML cannot be loaded
+     */
+    private Parent buildUi(Label startingLabel) {
+        URL fxmlUrl = getClass().getResource("main-view.fxml");
+        if (fxmlUrl == null) {
+            LOG.error("Cannot load FXML file: main-view.fxml");
+            startingLabel.setText("Cannot load the user interface.");
+            return null;
+        }
+        Parent root;
+        try {
+            FXMLLoader loader = new FXMLLoader(fxmlUrl);
+            loader.setControllerFactory(type -> new MainController(service));
+            root = loader.load();
+            controller = loader.getController();
+        } catch (IOException e) {
+            LOG.error("Cannot load FXML file: main-view.fxml", e);
+            startingLabel.setText("Cannot load the user interface: " + e.getMessage());
+            return null;
+        }
+
+        URL cssUrl = getClass().getResource("styles.css");
+        if (cssUrl == null) {
+            LOG.warn("Cannot load CSS file: styles.css");
+        } else {
+            root.getStylesheets().add(cssUrl.toExternalForm());
+        }
+        return root;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        // Don't leave a warm Whisper worker holding the model in memory
+        if (controller != null) {
+            controller.shutdown();
+        } else if (service != null) {
+            service.close();
+        }
     }
 
     public static void main(String[] args) {
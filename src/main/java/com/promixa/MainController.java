@@ -8,30 +8,53 @@ import javafx.scene.input.TransferMode;
 import javafx.scene.layout.VBox;
 import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
-import javafx.concurrent.Task;
 import javafx.application.Platform;
 import javafx.application.HostServices;
 import javafx.scene.paint.Color;
 
-import java.io.BufferedReader;
+import javafx.stage.DirectoryChooser;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
+
+import com.promixa.cache.TranscriptCache;
+import com.promixa.engine.AudioFiles;
+import com.promixa.engine.Calibration;
+import com.promixa.engine.Calibrator;
+import com.promixa.engine.EnvironmentReport;
+import com.promixa.engine.PoolSizing;
+import com.promixa.engine.QueuePlanner;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionOptions;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.engine.TranscriptionService;
+import com.promixa.engine.WhisperEnvironment;
+import com.promixa.export.AutoExporter;
+import com.promixa.export.ExportFormat;
+import com.promixa.search.SearchHit;
+import com.promixa.search.TranscriptStore;
+import com.promixa.ui.FxUpdateBatcher;
+import com.promixa.ui.TranscriptView;
+
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.StringReader;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-// JSON parsing
-import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MainController {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MainController.class);
+
     @FXML
     private VBox dropArea;
 
@@ -48,7 +71,10 @@ public class MainController {
     private Button saveButton;
 
     @FXML
-    private TextArea resultTextArea;
+    private TranscriptView transcriptView;
+
+    @FXML
+    private TextField jumpField;
 
     @FXML
     private ProgressIndicator progressIndicator;
@@ -62,12 +88,96 @@ public class MainController {
     @FXML
     private Hyperlink devPageLink;
 
-    private File selectedAudioFile;
+    @FXML
+    private Spinner<Integer> parallelismSpinner;
+
+    @FXML
+    private CheckBox longFileCheckBox;
+
+    @FXML
+    private Button calibrateButton;
+
+    @FXML
+    private Spinner<Integer> chunkMinutesSpinner;
+
+    @FXML
+    private Spinner<Integer> chunkParallelismSpinner;
+
+    @FXML
+    private CheckBox autoExportCheckBox;
+
+    @FXML
+    private ComboBox<ExportFormat> exportFormatComboBox;
+
+    @FXML
+    private Label exportFolderLabel;
+
+    @FXML
+    private CheckBox watchFolderCheckBox;
+
+    @FXML
+    private Label watchFolderLabel;
+
+    @FXML
+    private ListView<TranscriptionJob> queueListView;
+
+    @FXML
+    private Button moveUpButton;
+
+    @FXML
+    private Button moveDownButton;
+
+    @FXML
+    private Button cancelJobButton;
+
+    @FXML
+    private Label throughputLabel;
+
+    @FXML
+    private TitledPane statsPane;
+
+    @FXML
+    private TextArea statsTextArea;
+
+    @FXML
+    private TitledPane searchPane;
+
+    @FXML
+    private TextField searchField;
+
+    @FXML
+    private ListView<SearchHit> searchResultsList;
+
+    private List<File> selectedAudioFiles = Collections.emptyList();
+    private volatile TranscriptionJob displayedJob;
+    private TranscriptionJob.State displayedState;
+    private int displayedSegmentCount;
+    private final AtomicBoolean segmentAppendPending = new AtomicBoolean();
+    // Workers report progress every second per job; the FX thread applies them in batches
+    private final FxUpdateBatcher<TranscriptionJob> jobUpdates = new FxUpdateBatcher<>(this::onJobsUpdated);
     private String selectedModel = "base";
+    // Fastest worker split for the selected files, once their lengths are read
+    private QueuePlanner.Plan selectedPlan;
+    private boolean applyingPlan;
 
-    private static final String PYTHON_EXECUTABLE = System.getProperty("os.name").toLowerCase().contains("win") ? "python.exe" : "python";
-    private static final String SCRIPT_NAME = "whisper_script.py";
     private static final String DEV_PAGE_URL = "https://mcavus.promixa.me";
+    private static final int DEFAULT_CHUNK_MINUTES = 5;
+    private static final String RESULT_PLACEHOLDER = "Transcription results will appear here...";
+    private static final int MAX_SEARCH_HITS = 200;
+    private static final String SEARCH_PLACEHOLDER = "Finished transcripts are kept here and can be searched";
+
+    private final TranscriptionService transcriptionService;
+    private final TranscriptionQueue transcriptionQueue;
+    private final Timeline statsRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> refreshStats()));
+    // Search as the user types, once they pause
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(200));
+    private final Label searchPlaceholder = new Label();
+    // Searches and transcript reads hit the disk; one at a time, in the order asked
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "transcript-search");
+        t.setDaemon(true);
+        return t;
+    });
     
     private static final class ModelOption {
         private final String displayName;
@@ -93,12 +203,20 @@ public class MainController {
         new ModelOption("large", "Large (Best)", "Best quality, very slow processing")
     };
 
+    /**
+     * @param transcriptionService created off the FX thread by {@link MainApp}
+     */
+    public MainController(TranscriptionService transcriptionService) {
+        this.transcriptionService = transcriptionService;
+        this.transcriptionQueue = transcriptionService.getQueue();
+    }
+
     @FXML
     public void initialize() {
         transcribeButton.setDisable(true);
         saveButton.setDisable(true);
         progressIndicator.setVisible(false);
-        resultTextArea.setEditable(false);
+        transcriptView.setPlaceholderText(RESULT_PLACEHOLDER);
         statusLabel.setText("");
         
         // Populate model combo box
@@ -114,14 +232,278 @@ public class MainController {
         modelComboBox.getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal != null && newVal.intValue() >= 0 && newVal.intValue() < MODEL_OPTIONS.length) {
                 selectedModel = MODEL_OPTIONS[newVal.intValue()].modelName;
-                System.out.println("Selected model: " + selectedModel);
+                LOG.debug("Selected model: {}", selectedModel);
+                // Likely to be used next; load it while the user picks files
+                transcriptionService.preloadModels(selectedModel);
+                // Larger models fit fewer workers into memory
+                parallelismSpinner.getValueFactory().setValue(PoolSizing.recommendedWorkers(selectedModel));
+                chunkParallelismSpinner.getValueFactory().setValue(PoolSizing.recommendedWorkers(selectedModel));
+                updateEstimate();
             }
         });
+
+        setupQueueView();
+        setupCache();
+        setupHistory();
+        setupCalibration();
+        setupCheckpoints();
+        // Have the default model warm by the time the first file is dropped
+        transcriptionService.preloadModels(selectedModel);
         
         // Set up responsive layout behavior
         setupResponsiveLayout();
     }
     
+    /**
+     * Sets up the job list, its controls and the parallelism spinner
+     */
+    private void setupQueueView() {
+        parallelismSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                1, PoolSizing.availableCores(), PoolSizing.recommendedWorkers(selectedModel)));
+        parallelismSpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                if (!applyingPlan) {
+                    // A split chosen by hand shares the cores evenly again
+                    transcriptionService.getWorkerManager().setThreadsPerWorker(0);
+                }
+                transcriptionService.setParallelism(newVal);
+            }
+        });
+
+        // Long-file mode: split at silences and spread the chunks over several workers
+        chunkMinutesSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 30, DEFAULT_CHUNK_MINUTES));
+        chunkParallelismSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                1, PoolSizing.availableCores(), PoolSizing.recommendedWorkers(selectedModel)));
+        chunkMinutesSpinner.disableProperty().bind(longFileCheckBox.selectedProperty().not());
+        chunkParallelismSpinner.disableProperty().bind(longFileCheckBox.selectedProperty().not());
+        longFileCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+            updateWorkerLimit();
+            updateEstimate();
+        });
+        chunkParallelismSpinner.valueProperty().addListener((obs, oldVal, newVal) -> updateWorkerLimit());
+        updateWorkerLimit();
+
+        exportFormatComboBox.getItems().setAll(ExportFormat.values());
+        exportFormatComboBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(ExportFormat format) {
+                return format == null ? "" : format.getDescription() + " (." + format.getExtension() + ")";
+            }
+
+            @Override
+            public ExportFormat fromString(String text) {
+                return null;
+            }
+        });
+        exportFormatComboBox.getSelectionModel().select(ExportFormat.TXT);
+        exportFormatComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
+            AutoExporter exporter = transcriptionService.getAutoExporter();
+            if (exporter != null && exporter.getDirectory() != null && newVal != null) {
+                enableAutoExport(exporter.getDirectory().toFile());
+            }
+        });
+
+        queueListView.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(TranscriptionJob job, boolean empty) {
+                super.updateItem(job, empty);
+                if (empty || job == null) {
+                    setText(null);
+                } else {
+                    String message = job.getState() == TranscriptionJob.State.QUEUED ? "" : " - " + job.getMessage();
+                    setText(job.getAudioFile().getName() + " [" + job.getModel() + "] " + job.getState() + message);
+                }
+            }
+        });
+        queueListView.setPlaceholder(new Label("No transcription jobs yet"));
+        queueListView.getSelectionModel().selectedItemProperty().addListener((obs, oldJob, newJob) -> {
+            if (newJob != null) {
+                showJob(newJob);
+            }
+            updateQueueControls();
+        });
+
+        transcriptionQueue.addListener(new TranscriptionQueue.Listener() {
+            @Override
+            public void jobUpdated(TranscriptionJob job) {
+                jobUpdates.add(job);
+            }
+
+            @Override
+            public void segmentAdded(TranscriptionJob job, Segment segment) {
+                // Coalesce bursts of segments into a single pending FX update
+                if (job == displayedJob && segmentAppendPending.compareAndSet(false, true)) {
+                    Platform.runLater(() -> appendNewSegments());
+                }
+            }
+        });
+        updateQueueControls();
+
+        // Only poll the metrics while someone is looking at them
+        statsRefresh.setCycleCount(Timeline.INDEFINITE);
+        statsPane.expandedProperty().addListener((obs, wasExpanded, expanded) -> {
+            if (expanded) {
+                refreshStats();
+                statsRefresh.play();
+            } else {
+                statsRefresh.stop();
+            }
+        });
+    }
+
+    /**
+     * Shows the result of the startup environment check. Problems stay in the
+     * status line until a job replaces them, so a missing Python or FFmpeg is
+     * known before the first file is dropped.
+     */
+    public void showEnvironment(EnvironmentReport report) {
+        if (report.isReady()) {
+            LOG.info("Environment: {}", report);
+            return;
+        }
+        LOG.warn("Environment problems: {}", report);
+        statusLabel.setText("Setup problem: " + report);
+        statusLabel.setTextFill(Color.RED);
+    }
+
+    private void refreshStats() {
+        String text = transcriptionService.getMetrics().format();
+        statsTextArea.setText(text.isEmpty() ? "No jobs have run yet." : text);
+    }
+
+    /**
+     * Opens the on-disk transcript cache in the background, since its index
+     * is read from disk; transcription works without it
+     */
+    private void setupCache() {
+        Thread opener = new Thread(() -> {
+            try {
+                transcriptionService.enableCache(AppDirectories.cacheDir(), TranscriptCache.DEFAULT_MAX_BYTES);
+            } catch (IOException e) {
+                LOG.warn("Transcript cache disabled: {}", e.getMessage());
+            }
+        }, "cache-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Opens the transcript history in the background, since a long history
+     * takes a moment to index, and wires up the search pane
+     */
+    private void setupHistory() {
+        searchPane.setDisable(true);
+        searchResultsList.setPlaceholder(searchPlaceholder);
+        searchPlaceholder.setText(SEARCH_PLACEHOLDER);
+        searchResultsList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(SearchHit hit, boolean empty) {
+                super.updateItem(hit, empty);
+                setText(empty || hit == null ? null : hit.getTranscript().getAudioFile().getName() + "   "
+                        + Segment.formatTime(hit.getTime()) + "   " + hit.getText());
+            }
+        });
+        searchResultsList.getSelectionModel().selectedItemProperty().addListener((obs, oldHit, newHit) -> {
+            if (newHit != null) {
+                showSearchHit(newHit);
+            }
+        });
+        searchDelay.setOnFinished(e -> handleSearch());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+
+        Thread loader = new Thread(() -> {
+            try {
+                TranscriptStore store = transcriptionService.enableTranscriptStore(AppDirectories.transcriptsDir());
+                Platform.runLater(() -> {
+                    searchPane.setDisable(false);
+                    searchPane.setText("Search Past Transcripts (" + store.size() + ")");
+                });
+            } catch (IOException e) {
+                LOG.warn("Transcript history disabled: {}", e.getMessage());
+            }
+        }, "transcript-store-open");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @FXML
+    private void handleSearch() {
+        searchDelay.stop();
+        TranscriptStore store = transcriptionService.getTranscriptStore();
+        String query = searchField.getText();
+        if (store == null || query == null || query.isBlank()) {
+            searchResultsList.getItems().clear();
+            searchPlaceholder.setText(SEARCH_PLACEHOLDER);
+            return;
+        }
+        searchExecutor.execute(() -> {
+            try {
+                List<SearchHit> hits = store.search(query, MAX_SEARCH_HITS);
+                int size = store.size();
+                Platform.runLater(() -> {
+                    // Typing went on while this ran; the newer search shows its own hits
+                    if (!query.equals(searchField.getText())) {
+                        return;
+                    }
+                    searchResultsList.getItems().setAll(hits);
+                    searchPane.setText("Search Past Transcripts (" + size + ")");
+                    searchPlaceholder.setText("No transcript contains \"" + query.strip() + "\"");
+                });
+            } catch (IOException e) {
+                LOG.warn("Search failed: {}", e.getMessage());
+                Platform.runLater(() -> showErrorAlert("Search Error",
+                        "Could not search past transcripts: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Reads the stored transcript a search hit belongs to in the background,
+     * then shows it scrolled to the match unless another hit was picked meanwhile
+     */
+    private void showSearchHit(SearchHit hit) {
+        TranscriptStore store = transcriptionService.getTranscriptStore();
+        searchExecutor.execute(() -> {
+            try {
+                List<Segment> segments = store.getSegments(hit.getTranscript());
+                Platform.runLater(() -> {
+                    if (hit == searchResultsList.getSelectionModel().getSelectedItem()) {
+                        showStoredTranscript(hit, segments);
+                    }
+                });
+            } catch (IOException e) {
+                Platform.runLater(() -> showErrorAlert("Search Error",
+                        "Could not read the transcript: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void showStoredTranscript(SearchHit hit, List<Segment> segments) {
+        displayedJob = null;
+        queueListView.getSelectionModel().clearSelection();
+        transcriptView.clear();
+        transcriptView.append(segments);
+        transcriptView.jumpTo(hit.getTime());
+        saveButton.setDisable(true);
+        statusLabel.setText(hit.getTranscript().getAudioFile() + " at " + Segment.formatTime(hit.getTime()));
+        statusLabel.setTextFill(Color.BLACK);
+    }
+
+    /**
+     * Lets the pool grow to the workers-per-file setting while long-file mode is on
+     */
+    private void updateWorkerLimit() {
+        transcriptionService.setParallelism(parallelismSpinner.getValue());
+        transcriptionService.setChunkWorkers(longFileCheckBox.isSelected() ? chunkParallelismSpinner.getValue() : 1);
+    }
+
+    private TranscriptionOptions currentOptions() {
+        if (!longFileCheckBox.isSelected()) {
+            return TranscriptionOptions.DEFAULT;
+        }
+        return new TranscriptionOptions(null, chunkMinutesSpinner.getValue() * 60, chunkParallelismSpinner.getValue());
+    }
+
     /**
      * Sets up responsive behavior for the application layout
      */
@@ -133,7 +515,8 @@ public class MainController {
                 dropArea.prefWidthProperty().bind(newScene.widthProperty().multiply(0.8));
                 
                 // Make result text area responsive
-                resultTextArea.prefWidthProperty().bind(newScene.widthProperty().multiply(0.8));
+                transcriptView.prefWidthProperty().bind(newScene.widthProperty().multiply(0.8));
+                queueListView.prefWidthProperty().bind(newScene.widthProperty().multiply(0.8));
                 
                 // Dynamic height adjustment based on window width
                 newScene.widthProperty().addListener((obs, oldWidth, newWidth) -> {
@@ -174,7 +557,7 @@ public class MainController {
         if (db.hasFiles()) {
             List<File> files = db.getFiles();
             if (!files.isEmpty()) {
-                processSelectedFile(files.get(0));
+                processSelectedFiles(AudioFiles.collect(files));
                 success = true;
             }
         }
@@ -185,250 +568,352 @@ public class MainController {
     @FXML
     private void handleBrowseFiles() {
         FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Select Audio File");
+        fileChooser.setTitle("Select Audio Files");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Audio Files", "*.wav", "*.mp3", "*.m4a", "*.flac")
         );
-        File file = fileChooser.showOpenDialog(dropArea.getScene().getWindow());
-        if (file != null) {
-            processSelectedFile(file);
+        List<File> files = fileChooser.showOpenMultipleDialog(dropArea.getScene().getWindow());
+        if (files != null && !files.isEmpty()) {
+            processSelectedFiles(files);
         }
     }
 
-    private void processSelectedFile(File file) {
-        selectedAudioFile = file;
-        dropLabel.setText("Selected File: " + file.getName());
-        transcribeButton.setDisable(false);
-        resultTextArea.clear();
-        saveButton.setDisable(true);
+    @FXML
+    private void handleBrowseFolder() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select Folder with Audio Files");
+        File directory = directoryChooser.showDialog(dropArea.getScene().getWindow());
+        if (directory != null) {
+            processSelectedFiles(AudioFiles.collect(List.of(directory)));
+        }
     }
 
-    @FXML
-    private void handleTranscribe() {
-        if (selectedAudioFile == null) {
-            showErrorAlert("No file selected", "Please select an audio file first.");
+    private void processSelectedFiles(List<File> files) {
+        if (files.isEmpty()) {
+            showErrorAlert("No audio files", "No supported audio files were found in the selection.");
             return;
         }
-    
-        progressIndicator.setVisible(true);
-        transcribeButton.setDisable(true);
-        clearButton.setDisable(true);
-        saveButton.setDisable(true);
-        resultTextArea.setPromptText("Transcription in progress...");
-        resultTextArea.clear();
-    
-        Task<String> transcriptionTask = new Task<>() {
-            @Override
-            protected String call() throws Exception {
-                Path scriptPath = getScriptPath();
-                if (scriptPath == null) {
-                    throw new IOException("Could not find the transcription script: " + SCRIPT_NAME);
-                }
-    
-                String device = "cpu";
-                ProcessBuilder pb = new ProcessBuilder(
-                        PYTHON_EXECUTABLE,
-                        scriptPath.toString(),
-                        selectedAudioFile.getAbsolutePath(),
-                        "--model", selectedModel,
-                        "--device", device
-                );
-                pb.redirectErrorStream(true);
-    
-                System.out.println("Executing command: " + String.join(" ", pb.command()));
-    
-                Process process = pb.start();
-    
-                StringBuilder output = new StringBuilder();
-                StringBuilder progressMessages = new StringBuilder();
-                StringBuilder lastProgressUpdate = new StringBuilder();
-    
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (!line.trim().isEmpty()) {
-                            System.out.println("Script output: " + line);
-    
-                            try {
-                                if (line.startsWith("{") && line.endsWith("}")) {
-                                    try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
-                                        JsonObject json = jsonReader.readObject();
-                                        String message = json.getString("message", "");
-                                        String status = json.getString("status", "info");
-    
-                                        if (!message.isEmpty()) {
-                                            lastProgressUpdate.setLength(0);
-                                            lastProgressUpdate.append(message);
-    
-                                            updateMessage(message);
-                                            Platform.runLater(() -> {
-                                                switch (status) {
-                                                    case "error":
-                                                        statusLabel.setTextFill(Color.RED);
-                                                        break;
-                                                    case "complete":
-                                                        statusLabel.setTextFill(Color.GREEN);
-                                                        break;
-                                                    case "working":
-                                                    case "loading":
-                                                        statusLabel.setTextFill(Color.BLUE);
-                                                        break;
-                                                    default:
-                                                        statusLabel.setTextFill(Color.BLACK);
-                                                }
-                                            });
-                                        }
-                                        // Sadece error ise hata fırlat
-                                        if ("error".equals(status)) {
-                                            throw new IOException(message);
-                                        }
-                                        // complete ise transcript bir sonraki satırda
-                                        if ("complete".equals(status)) {
-                                            String transcriptLine = reader.readLine();
-                                            if (transcriptLine != null && !transcriptLine.trim().isEmpty()) {
-                                                output.setLength(0);
-                                                output.append(transcriptLine.trim());
-                                            }
-                                            continue;
-                                        }
-                                    }
-                                } else if (!line.startsWith("Error")) {
-                                    output.setLength(0);
-                                    output.append(line.trim());
-                                }
-                            } catch (JsonException e) {
-                                System.out.println("Cannot parse JSON: " + e.getMessage());
-                                if (!line.startsWith("Error")) {
-                                    output.setLength(0);
-                                    output.append(line.trim());
-                                }
-                            } catch (Exception e) {
-                                System.out.println("Error handling output: " + e.getMessage());
-                            }
-    
-                            progressMessages.append(line).append(System.lineSeparator());
-                        }
-                    }
-                }
-    
-                int exitCode = process.waitFor();
-                System.out.println("Script finished with exit code: " + exitCode);
-                System.out.println("Full script output:\n" + progressMessages.toString());
-    
-                if (exitCode != 0) {
-                    String errorMsg = extractErrorMessage(progressMessages.toString());
-                    if (errorMsg.isEmpty()){
-                        errorMsg = "Transcription script failed with exit code " + exitCode + ". Check logs for details.";
-                    }
-                    throw new IOException(errorMsg);
-                }
-    
-                if (output.length() == 0) {
-                    String fullOutput = progressMessages.toString();
-                    throw new IOException("Transcription script finished but produced no usable result. Check logs.");
-                }
-    
-                return output.toString();
+        selectedAudioFiles = new ArrayList<>(files);
+        dropLabel.setText(files.size() == 1
+                ? "Selected File: " + files.get(0).getName()
+                : "Selected " + files.size() + " Files");
+        transcribeButton.setDisable(false);
+        updateEstimate();
+    }
+
+    /**
+     * Turns on checkpoints and queues again, in the background, the jobs
+     * that were still running when the app last closed or crashed
+     */
+    private void setupCheckpoints() {
+        Thread recovery = new Thread(() -> {
+            try {
+                transcriptionService.enableCheckpoints(AppDirectories.checkpointsDir());
+            } catch (IOException e) {
+                LOG.warn("Checkpoints disabled: {}", e.getMessage());
+                return;
             }
-        };
+            List<TranscriptionJob> resumed = transcriptionService.resumeInterrupted();
+            if (resumed.isEmpty()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                progressIndicator.setVisible(true);
+                refreshQueueList();
+                statusLabel.setText("Resuming " + resumed.size() + " interrupted transcription(s) where they stopped");
+                statusLabel.setTextFill(Color.BLUE);
+                if (queueListView.getSelectionModel().getSelectedItem() == null) {
+                    queueListView.getSelectionModel().select(resumed.get(0));
+                }
+            });
+        }, "checkpoint-recovery");
+        recovery.setDaemon(true);
+        recovery.start();
+    }
+
+    /**
+     * Loads, in the background, the speeds measured by an earlier
+     * calibration, which pick the worker split for each batch and tell how
+     * long it will take
+     */
+    private void setupCalibration() {
+        // Calibrating before the earlier results are read would merge into nothing
+        calibrateButton.setDisable(true);
+        Thread loader = new Thread(() -> {
+            Calibration calibration = transcriptionService.loadCalibration(AppDirectories.calibrationFile());
+            Platform.runLater(() -> {
+                calibrateButton.setText(calibration != null ? "Recalibrate" : "Calibrate");
+                calibrateButton.setDisable(false);
+                // Files picked meanwhile can be estimated now
+                updateEstimate();
+            });
+        }, "calibration-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
-        // Add listener for progress messages
-        transcriptionTask.messageProperty().addListener((obs, oldMsg, newMsg) -> {
-            if (newMsg != null && !newMsg.isEmpty()) {
+    @FXML
+    private void handleCalibrate() {
+        String model = selectedModel;
+        calibrateButton.setDisable(true);
+        statusLabel.setText("Calibrating " + model + "; this takes a few minutes...");
+        statusLabel.setTextFill(Color.BLUE);
+        Thread calibrator = new Thread(() -> {
+            try {
+                Calibration measured = Calibrator.createDefault().run(List.of(model), null, line -> Platform.runLater(() ->
+                        statusLabel.setText("Calibrating " + line)));
+                Calibration earlier = transcriptionService.getCalibration();
+                Calibration calibration = earlier != null ? earlier.updatedWith(measured) : measured;
+                calibration.save(AppDirectories.calibrationFile());
+                transcriptionService.setCalibration(calibration);
+                Platform.runLater(() -> {
+                    statusLabel.setText("Calibrated " + model + ". Best: " + calibration.best(model));
+                    statusLabel.setTextFill(Color.GREEN);
+                    updateEstimate();
+                });
+            } catch (IOException e) {
+                LOG.warn("Calibration failed", e);
                 Platform.runLater(() -> {
-                    statusLabel.setText(newMsg);
-                    resultTextArea.setPromptText("Processing...");
+                    statusLabel.setText("Calibration failed: " + e.getMessage());
+                    statusLabel.setTextFill(Color.RED);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                Platform.runLater(() -> {
+                    calibrateButton.setDisable(false);
+                    calibrateButton.setText(transcriptionService.getCalibration() != null ? "Recalibrate" : "Calibrate");
                 });
             }
-        });
+        }, "calibration");
+        calibrator.setDaemon(true);
+        calibrator.start();
+    }
 
-        transcriptionTask.setOnSucceeded(event -> {
-            String transcriptionResult = transcriptionTask.getValue();
-            resultTextArea.setText(transcriptionResult);
-            resultTextArea.setPromptText("Transcription results will appear here...");
-            statusLabel.setText("Transcription complete!");
-            resetUIState(false);
-            System.out.println("Transcription successful.");
-        });
+    /**
+     * Reads the lengths of the selected files in the background and shows
+     * how long they will take with the fastest calibrated split
+     */
+    private void updateEstimate() {
+        selectedPlan = null;
+        List<File> files = selectedAudioFiles;
+        String model = selectedModel;
+        // Chunks of one file spread over several workers, which the calibration does not model
+        if (files.isEmpty() || longFileCheckBox.isSelected() || transcriptionService.getCalibration() == null) {
+            return;
+        }
+        Thread estimator = new Thread(() -> {
+            QueuePlanner.Plan plan = transcriptionService.plan(model, files);
+            Platform.runLater(() -> {
+                if (plan == null || files != selectedAudioFiles || !model.equals(selectedModel)) {
+                    return;
+                }
+                selectedPlan = plan;
+                statusLabel.setText("Estimated time: " + QueuePlanner.formatDuration(plan.getEstimatedSeconds())
+                        + " with " + plan.getWorkers() + " parallel job(s)");
+                statusLabel.setTextFill(Color.BLACK);
+            });
+        }, "batch-estimate");
+        estimator.setDaemon(true);
+        estimator.start();
+    }
+
+    @FXML
+    private void handleTranscribe() {
+        if (selectedAudioFiles.isEmpty()) {
+            showErrorAlert("No file selected", "Please select an audio file first.");
+            return;
+        }
 
-        transcriptionTask.setOnFailed(event -> {
-            Throwable exception = transcriptionTask.getException();
-            String errorMessage = "Transcription failed: " + (exception != null ? exception.getMessage() : "Unknown error");
-            showErrorAlert("Transcription Error", errorMessage);
-            resultTextArea.setPromptText("Transcription failed. Please try again.");
-            statusLabel.setText("Error: Transcription failed");
-            statusLabel.setTextFill(Color.RED);
-            resetUIState(true);
-            System.err.println(errorMessage);
-            if (exception != null) {
-                exception.printStackTrace();
+        if (selectedPlan != null) {
+            applyingPlan = true;
+            transcriptionService.apply(selectedPlan);
+            parallelismSpinner.getValueFactory().setValue(selectedPlan.getWorkers());
+            applyingPlan = false;
+            LOG.info("Running {}", selectedPlan);
+            selectedPlan = null;
+        }
+        TranscriptionOptions options = currentOptions();
+        TranscriptionJob firstJob = null;
+        for (File file : selectedAudioFiles) {
+            TranscriptionJob job = transcriptionService.submit(file, selectedModel, options);
+            if (firstJob == null) {
+                firstJob = job;
             }
-        });
+        }
+        LOG.info("Queued {} file(s) with model {}", selectedAudioFiles.size(), selectedModel);
 
-        new Thread(transcriptionTask).start();
+        selectedAudioFiles = Collections.emptyList();
+        dropLabel.setText("Drag & Drop More Audio Files Here");
+        transcribeButton.setDisable(true);
+        progressIndicator.setVisible(true);
+
+        refreshQueueList();
+        if (queueListView.getSelectionModel().getSelectedItem() == null
+                || queueListView.getSelectionModel().getSelectedItem().getState().isFinished()) {
+            queueListView.getSelectionModel().select(firstJob);
+        }
     }
 
-    private Path getScriptPath() {
-        try {
-            File jarDir = new File(MainApp.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParentFile();
-            Path directPath = Paths.get(jarDir.getAbsolutePath(), SCRIPT_NAME);
+    @FXML
+    private void handleMoveUp() {
+        moveSelectedJob(-1);
+    }
 
-            File scriptInPythonSubfolder = new File(jarDir, "python" + File.separator + SCRIPT_NAME);
-            if(scriptInPythonSubfolder.exists()){
-                System.out.println("Found script in python subfolder: " + scriptInPythonSubfolder.getAbsolutePath());
-                return scriptInPythonSubfolder.toPath();
-            }
+    @FXML
+    private void handleMoveDown() {
+        moveSelectedJob(1);
+    }
 
-            if (directPath.toFile().exists()) {
-                System.out.println("Found script next to JAR: " + directPath.toString());
-                return directPath;
-            }
-            System.out.println("Script not found next to JAR or in python subfolder. Checking resources...");
+    private void moveSelectedJob(int delta) {
+        TranscriptionJob job = queueListView.getSelectionModel().getSelectedItem();
+        if (job != null && transcriptionQueue.move(job, delta)) {
+            refreshQueueList();
+        }
+    }
 
-            URL resourceUrl = getClass().getResource("/" + SCRIPT_NAME);
-            if (resourceUrl == null) {
-                resourceUrl = getClass().getResource("/python/" + SCRIPT_NAME);
-            }
+    @FXML
+    private void handleCancelJob() {
+        TranscriptionJob job = queueListView.getSelectionModel().getSelectedItem();
+        if (job != null) {
+            transcriptionQueue.cancel(job);
+        }
+    }
+
+    /**
+     * Applies the job updates reported by the queue since the last batch.
+     * Runs on the FX thread.
+     */
+    private void onJobsUpdated(List<TranscriptionJob> jobs) {
+        if (queueListView.getItems().containsAll(jobs)) {
+            queueListView.refresh();
+        } else {
+            refreshQueueList();
+        }
+        TranscriptCache cache = transcriptionQueue.getCache();
+        throughputLabel.setText(transcriptionQueue.getStats() + (cache != null ? " | " + cache.statsSummary() : ""));
+        progressIndicator.setVisible(transcriptionQueue.isBusy());
 
-            if (resourceUrl != null) {
-                System.out.println("Found script in resources: " + resourceUrl.toURI().toString());
-                return Paths.get(resourceUrl.toURI());
+        List<String> failures = new ArrayList<>();
+        for (TranscriptionJob job : jobs) {
+            if (job == displayedJob) {
+                if (job.getState() != displayedState) {
+                    showJob(job);
+                } else {
+                    updateJobStatus(job);
+                }
+            }
+            if (job.getState() == TranscriptionJob.State.FAILED && transcriptionQueue.getJobs().size() == 1) {
+                failures.add(job.getError());
             }
+        }
+        updateQueueControls();
+        // A modal dialog here would hold up the batch, and further updates behind it, until dismissed
+        for (String error : failures) {
+            Platform.runLater(() -> showErrorAlert("Transcription Error", "Transcription failed: " + error));
+        }
+    }
 
-            System.err.println("Script not found using JAR location or classpath resources.");
-            return null;
+    /**
+     * Shows a job's transcript: the final text once finished, or the segments
+     * decoded so far while it is running
+     */
+    private void showJob(TranscriptionJob job) {
+        displayedJob = job;
+        displayedState = job.getState();
+        displayedSegmentCount = 0;
+        transcriptView.clear();
+        switch (job.getState()) {
+            case COMPLETED:
+                transcriptView.append(job.getResult().getSegments());
+                transcriptView.setPlaceholderText(RESULT_PLACEHOLDER);
+                break;
+            case FAILED:
+                transcriptView.setPlaceholderText("Transcription failed. Please try again.");
+                break;
+            case RUNNING:
+                transcriptView.setPlaceholderText("Processing...");
+                appendNewSegments();
+                break;
+            default:
+                transcriptView.setPlaceholderText("Transcription in progress...");
+        }
+        updateJobStatus(job);
+    }
 
-        } catch (URISyntaxException | NullPointerException e) {
-            System.err.println("Error finding script path: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    /**
+     * Appends the segments the displayed job has decoded since the last call
+     */
+    private void appendNewSegments() {
+        segmentAppendPending.set(false);
+        TranscriptionJob job = displayedJob;
+        if (job == null || job.getState() != TranscriptionJob.State.RUNNING) {
+            return;
         }
+        List<Segment> segments = job.getSegments(displayedSegmentCount);
+        if (segments.isEmpty()) {
+            return;
+        }
+        transcriptView.append(segments);
+        displayedSegmentCount += segments.size();
     }
 
-    private String extractErrorMessage(String processOutput) {
-        String[] lines = processOutput.split(System.lineSeparator());
-        String lastErrorLine = "";
-        for (int i = lines.length - 1; i >= 0; i--) {
-            String line = lines[i].trim();
-            if (line.toLowerCase().startsWith("error:")) {
-                return line.substring("error:".length()).trim();
-            }
-            if (!line.isEmpty() && !line.toLowerCase().contains("model loaded") && !line.toLowerCase().contains("starting transcription") && !line.toLowerCase().contains("transcription complete")) {
-                lastErrorLine = line;
-            }
+    private void updateJobStatus(TranscriptionJob job) {
+        statusLabel.setText(job.getAudioFile().getName() + ": " + job.getMessage());
+        switch (job.getState()) {
+            case COMPLETED:
+                statusLabel.setTextFill(Color.GREEN);
+                break;
+            case FAILED:
+                statusLabel.setTextFill(Color.RED);
+                break;
+            case RUNNING:
+                statusLabel.setTextFill(Color.BLUE);
+                break;
+            default:
+                statusLabel.setTextFill(Color.BLACK);
         }
-        return lastErrorLine;
+        saveButton.setDisable(job.getState() != TranscriptionJob.State.COMPLETED);
+    }
+
+    private void refreshQueueList() {
+        TranscriptionJob selected = queueListView.getSelectionModel().getSelectedItem();
+        queueListView.getItems().setAll(transcriptionQueue.getJobs());
+        if (selected != null && queueListView.getItems().contains(selected)) {
+            queueListView.getSelectionModel().select(selected);
+        }
+    }
+
+    private void updateQueueControls() {
+        TranscriptionJob job = queueListView.getSelectionModel().getSelectedItem();
+        boolean queued = job != null && job.getState() == TranscriptionJob.State.QUEUED;
+        moveUpButton.setDisable(!queued);
+        moveDownButton.setDisable(!queued);
+        cancelJobButton.setDisable(job == null || job.getState().isFinished());
+    }
+
+    /**
+     * Stops the Whisper workers. Called by {@link MainApp#stop()}.
+     */
+    public void shutdown() {
+        statsRefresh.stop();
+        searchExecutor.shutdownNow();
+        transcriptionService.close();
     }
 
     @FXML
     private void handleClear() {
-        selectedAudioFile = null;
-        dropLabel.setText("Drag & Drop Audio File Here or Click Browse");
-        resultTextArea.clear();
-        resultTextArea.setPromptText("Transcription results will appear here...");
+        selectedAudioFiles = Collections.emptyList();
+        selectedPlan = null;
+        displayedJob = null;
+        transcriptionQueue.clearFinished();
+        refreshQueueList();
+        dropLabel.setText("Drag & Drop Audio Files Here or Click Browse");
+        transcriptView.clear();
+        transcriptView.setPlaceholderText(RESULT_PLACEHOLDER);
         transcribeButton.setDisable(true);
         saveButton.setDisable(true);
-        progressIndicator.setVisible(false);
+        progressIndicator.setVisible(transcriptionQueue.isBusy());
         statusLabel.setText("");
         statusLabel.setTextFill(Color.BLACK);
     }
@@ -455,38 +940,137 @@ public class MainController {
 
     @FXML
     private void handleSave() {
-        if (resultTextArea.getText().isEmpty()) {
-            showErrorAlert("Nothing to Save", "The transcription result is empty.");
+        TranscriptionJob job = displayedJob;
+        if (job == null || job.getState() != TranscriptionJob.State.COMPLETED) {
+            showErrorAlert("Nothing to Save", "Select a finished transcription first.");
             return;
         }
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Transcription");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
-
-        if (selectedAudioFile != null) {
-            String originalName = selectedAudioFile.getName();
-            int dotIndex = originalName.lastIndexOf('.');
-            String baseName = (dotIndex == -1) ? originalName : originalName.substring(0, dotIndex);
-            fileChooser.setInitialFileName(baseName + "_transcription.txt");
+        for (ExportFormat format : ExportFormat.values()) {
+            fileChooser.getExtensionFilters().add(
+                    new FileChooser.ExtensionFilter(format.getDescription(), "*." + format.getExtension()));
         }
 
+        String originalName = job.getAudioFile().getName();
+        int dotIndex = originalName.lastIndexOf('.');
+        String baseName = (dotIndex == -1) ? originalName : originalName.substring(0, dotIndex);
+        fileChooser.setInitialFileName(baseName + "_transcription");
+
         File file = fileChooser.showSaveDialog(dropArea.getScene().getWindow());
         if (file != null) {
+            // The typed extension wins; otherwise the chosen filter decides
+            ExportFormat format = ExportFormat.forFile(file);
+            if (format == null) {
+                int filter = fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter());
+                format = ExportFormat.values()[Math.max(0, filter)];
+                file = new File(file.getPath() + "." + format.getExtension());
+            }
             try {
-                java.nio.file.Files.writeString(file.toPath(), resultTextArea.getText());
+                long saveStarted = System.nanoTime();
+                // Streamed segment by segment; the transcript is never copied into one string
+                format.writeTo(file.toPath(), job.getAudioFile(), job.getResult());
+                transcriptionService.recordSave(job, System.nanoTime() - saveStarted);
             } catch (IOException e) {
                 showErrorAlert("Save Failed", "Could not save the transcription to the file: " + e.getMessage());
             }
         }
     }
 
-    private void resetUIState(boolean enableTranscribe) {
-        progressIndicator.setVisible(false);
-        transcribeButton.setDisable(enableTranscribe ? (selectedAudioFile == null) : true);
-        clearButton.setDisable(false);
-        saveButton.setDisable(resultTextArea.getText().isEmpty());
-        modelComboBox.setDisable(false); // Enable model selection
+    @FXML
+    private void handleAutoExport() {
+        if (!autoExportCheckBox.isSelected()) {
+            transcriptionService.disableAutoExport();
+            exportFolderLabel.setText("");
+            return;
+        }
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Save Finished Transcripts To");
+        File directory = directoryChooser.showDialog(dropArea.getScene().getWindow());
+        if (directory == null) {
+            autoExportCheckBox.setSelected(false);
+            return;
+        }
+        enableAutoExport(directory);
+    }
+
+    private void enableAutoExport(File directory) {
+        try {
+            transcriptionService.enableAutoExport(directory.toPath(),
+                    List.of(exportFormatComboBox.getValue()));
+            exportFolderLabel.setText(directory.getPath());
+        } catch (IOException e) {
+            transcriptionService.disableAutoExport();
+            autoExportCheckBox.setSelected(false);
+            exportFolderLabel.setText("");
+            showErrorAlert("Auto-save Failed", "Cannot use the folder " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts or stops watching a folder. The watcher keeps the model, options
+     * and format selected when it started, and writes each transcript next to
+     * its recording.
+     */
+    @FXML
+    private void handleWatchFolder() {
+        if (!watchFolderCheckBox.isSelected()) {
+            transcriptionService.stopWatching();
+            watchFolderLabel.setText("");
+            return;
+        }
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Watch Folder for New Recordings");
+        File directory = directoryChooser.showDialog(dropArea.getScene().getWindow());
+        if (directory == null) {
+            watchFolderCheckBox.setSelected(false);
+            return;
+        }
+        String model = selectedModel;
+        TranscriptionOptions options = currentOptions();
+        List<ExportFormat> formats = List.of(exportFormatComboBox.getValue());
+        watchFolderLabel.setText("Listing " + directory.getPath() + "...");
+        // Listing a large shared folder takes a while
+        Thread starter = new Thread(() -> {
+            try {
+                transcriptionService.watchFolder(directory.toPath(), AppDirectories.watchLedgerFile(), model, options,
+                        null, formats);
+                Platform.runLater(() -> {
+                    // Unticked while the folder was being listed
+                    if (!watchFolderCheckBox.isSelected()) {
+                        transcriptionService.stopWatching();
+                        return;
+                    }
+                    watchFolderLabel.setText(directory.getPath() + " [" + model + "]");
+                });
+            } catch (IOException e) {
+                LOG.warn("Cannot watch {}", directory, e);
+                Platform.runLater(() -> {
+                    watchFolderCheckBox.setSelected(false);
+                    watchFolderLabel.setText("");
+                    showErrorAlert("Watch Folder Failed", "Cannot watch the folder " + directory + ": "
+                            + e.getMessage());
+                });
+            }
+        }, "folder-watch-start");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    @FXML
+    private void handleJump() {
+        String text = jumpField.getText();
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        try {
+            if (!transcriptView.jumpTo(TranscriptView.parseTime(text))) {
+                statusLabel.setText("Nothing to jump to yet.");
+            }
+        } catch (NumberFormatException e) {
+            showErrorAlert("Invalid time", "Enter a time such as 12:30, 1:02:45 or 90.");
+        }
     }
 
     private void showErrorAlert(String title, String message) {
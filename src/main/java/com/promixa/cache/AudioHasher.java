@@ -0,0 +1,57 @@
+package com.promixa.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of a file's bytes, read through memory-mapped windows so that
+ * hashing a multi-gigabyte recording does not touch the Java heap.
+ */
+public final class AudioHasher {
+
+    /** Size of each mapped window; small enough to map on 32-bit address spaces. */
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private AudioHasher() {
+    }
+
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_BYTES) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_BYTES, size - position));
+                digest.update(window);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /** SHA-256 of a string, used to turn composite cache keys into file names. */
+    public static String sha256(String value) {
+        return toHex(newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,351 @@
+package com.promixa.cache;
+
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionOptions;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of finished transcripts, keyed by the SHA-256 of the audio
+ * bytes together with the model and the decode options that change the
+ * output. Re-transcribing the same recording, a renamed copy of it, or the
+ * same file after a restart returns the stored result instead of running
+ * Whisper again.
+ * <p>
+ * Each entry is one JSON file. An index file records entry sizes in
+ * least-recently-used order, plus the hashes of recently seen audio files by
+ * path, size and modification time so that unchanged files are not re-hashed.
+ * Once the entries exceed the size limit the least recently used ones are
+ * deleted. Hits only reorder the index in memory; it is written when an
+ * entry is added or removed and on {@link #close()}.
+ */
+public class TranscriptCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String INDEX_FILE = "index.json";
+    private static final int INDEX_VERSION = 1;
+    private static final int MAX_REMEMBERED_FILES = 10_000;
+
+    private static final class Entry {
+        final long size;
+
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+
+    private static final class Fingerprint {
+        final long size;
+        final long modified;
+        final String hash;
+
+        Fingerprint(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Fingerprint> fingerprints = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+            return size() > MAX_REMEMBERED_FILES;
+        }
+    };
+    private long totalBytes;
+    /** Whether the index in memory differs from the file, e.g. in recency order. */
+    private boolean indexDirty;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TranscriptCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    /**
+     * Builds the cache key for a file, hashing its bytes unless an unchanged
+     * copy was hashed before.
+     */
+    public String keyFor(Path audioFile, String model, TranscriptionOptions options) throws IOException {
+        String audioHash = audioHash(audioFile);
+        String language = options.getLanguage() == null ? "auto" : options.getLanguage();
+        // Chunk length shifts segment boundaries; chunk parallelism does not change the output
+        return AudioHasher.sha256(audioHash + "|" + model + "|" + language + "|" + options.getChunkSeconds());
+    }
+
+    /**
+     * Returns the cached result for a key, or {@code null} on a miss.
+     */
+    public TranscriptionResult get(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            indexDirty = true;
+        }
+        // Read outside the lock so lookups of other files are not held up
+        try (InputStream in = Files.newInputStream(entryPath(key));
+             JsonReader reader = Json.createReader(in)) {
+            TranscriptionResult result = fromJson(reader.readObject());
+            hits.incrementAndGet();
+            return result;
+        } catch (IOException | JsonException | ClassCastException | NullPointerException e) {
+            LOG.warn("Dropping unreadable cache entry {}: {}", key, e.getMessage());
+            synchronized (this) {
+                remove(key);
+                saveIndex();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result and evicts least recently used entries beyond the size limit.
+     */
+    public synchronized void put(String key, TranscriptionResult result) {
+        Path target = entryPath(key);
+        Path temp = directory.resolve(key + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonWriter writer = Json.createWriter(out)) {
+                writer.writeObject(toJson(result));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Entry previous = entries.put(key, new Entry(Files.size(target)));
+            totalBytes += entries.get(key).size - (previous != null ? previous.size : 0);
+            evictOverflow();
+            saveIndex();
+        } catch (IOException e) {
+            LOG.warn("Could not write cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /** Deletes every entry; statistics are kept. */
+    public synchronized void clear() {
+        for (String key : new ArrayList<>(entries.keySet())) {
+            remove(key);
+        }
+        saveIndex();
+    }
+
+    /**
+     * Writes the index if hits changed the recency order since it was last
+     * written.
+     */
+    @Override
+    public synchronized void close() {
+        if (indexDirty) {
+            saveIndex();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public String statsSummary() {
+        long lookups = getHits() + getMisses();
+        return String.format("cache %d hits / %d lookups (%d entries, %.1f MB)",
+                getHits(), lookups, getEntryCount(), getTotalBytes() / (1024.0 * 1024.0));
+    }
+
+    private String audioHash(Path audioFile) throws IOException {
+        Path path = audioFile.toAbsolutePath().normalize();
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        String pathKey = path.toString();
+        synchronized (this) {
+            Fingerprint known = fingerprints.get(pathKey);
+            if (known != null && known.size == size && known.modified == modified) {
+                return known.hash;
+            }
+        }
+        // Hash outside the lock so lookups of other files are not held up
+        String hash = AudioHasher.sha256(path);
+        synchronized (this) {
+            fingerprints.put(pathKey, new Fingerprint(size, modified, hash));
+            indexDirty = true;
+        }
+        return hash;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue().size;
+            deleteQuietly(entryPath(eldest.getKey()));
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+        deleteQuietly(entryPath(key));
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ".json");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void loadIndex() {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(indexPath);
+             JsonReader reader = Json.createReader(in)) {
+            JsonObject index = reader.readObject();
+            if (index.getInt("version", 0) != INDEX_VERSION) {
+                return;
+            }
+            for (JsonObject entry : index.getJsonArray("entries").getValuesAs(JsonObject.class)) {
+                String key = entry.getString("key");
+                if (Files.exists(entryPath(key))) {
+                    long size = entry.getJsonNumber("size").longValue();
+                    entries.put(key, new Entry(size));
+                    totalBytes += size;
+                }
+            }
+            for (JsonObject file : index.getJsonArray("files").getValuesAs(JsonObject.class)) {
+                fingerprints.put(file.getString("path"), new Fingerprint(file.getJsonNumber("size").longValue(),
+                        file.getJsonNumber("modified").longValue(), file.getString("hash")));
+            }
+        } catch (IOException | JsonException | ClassCastException | NullPointerException e) {
+            LOG.warn("Ignoring unreadable cache index: {}", e.getMessage());
+            entries.clear();
+            fingerprints.clear();
+            totalBytes = 0;
+        }
+    }
+
+    private void saveIndex() {
+        indexDirty = false;
+        JsonArrayBuilder entryArray = Json.createArrayBuilder();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            entryArray.add(Json.createObjectBuilder()
+                    .add("key", entry.getKey())
+                    .add("size", entry.getValue().size));
+        }
+        JsonArrayBuilder fileArray = Json.createArrayBuilder();
+        for (Map.Entry<String, Fingerprint> file : fingerprints.entrySet()) {
+            fileArray.add(Json.createObjectBuilder()
+                    .add("path", file.getKey())
+                    .add("size", file.getValue().size)
+                    .add("modified", file.getValue().modified)
+                    .add("hash", file.getValue().hash));
+        }
+        JsonObject index = Json.createObjectBuilder()
+                .add("version", INDEX_VERSION)
+                .add("entries", entryArray)
+                .add("files", fileArray)
+                .build();
+
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonWriter writer = Json.createWriter(out)) {
+                writer.writeObject(index);
+            }
+            Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write cache index: {}", e.getMessage());
+        }
+    }
+
+    private static JsonObject toJson(TranscriptionResult result) {
+        JsonArrayBuilder segments = Json.createArrayBuilder();
+        for (Segment segment : result.getSegments()) {
+            segments.add(Json.createArrayBuilder()
+                    .add(segment.getStart())
+                    .add(segment.getEnd())
+                    .add(segment.getText()));
+        }
+        return Json.createObjectBuilder()
+                .add("text", result.getText())
+                .add("model", result.getModel())
+                .add("audioSeconds", result.getAudioSeconds())
+                .add("processingSeconds", result.getProcessingSeconds())
+                .add("segments", segments)
+                .build();
+    }
+
+    private static TranscriptionResult fromJson(JsonObject json) {
+        List<Segment> segments = new ArrayList<>();
+        for (JsonArray segment : json.getJsonArray("segments").getValuesAs(JsonArray.class)) {
+            segments.add(new Segment(segment.getJsonNumber(0).doubleValue(), segment.getJsonNumber(1).doubleValue(),
+                    segment.getString(2)));
+        }
+        return new TranscriptionResult(json.getString("text"), segments, json.getString("model"),
+                json.getJsonNumber("audioSeconds").doubleValue(), json.getJsonNumber("processingSeconds").doubleValue());
+    }
+}
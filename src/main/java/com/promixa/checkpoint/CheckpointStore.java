@@ -0,0 +1,164 @@
+package com.promixa.checkpoint;
+
+import com.promixa.cache.AudioHasher;
+import com.promixa.engine.TranscriptionOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Folder of {@link JobJournal}s, one per job that has started and not yet
+ * finished. A job finds its journal again by audio file, model, language and
+ * chunk length, so transcribing the same file the same way after a crash or
+ * a failure continues from the journal. Journals of files that changed since
+ * are started over.
+ */
+public class CheckpointStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointStore.class);
+
+    private static final String EXTENSION = ".journal";
+
+    /** Journals untouched for this long are deleted rather than resumed. */
+    static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(30);
+
+    private final Path directory;
+    /** Journals in use by a running job; a second job on the same file runs without one. */
+    private final Set<Path> open = new HashSet<>();
+
+    /**
+     * @throws IOException if the folder cannot be created
+     */
+    public CheckpointStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Opens the journal of a job, continuing an earlier one when the file is
+     * unchanged.
+     *
+     * @return the journal, or {@code null} if another job already has it open
+     * @throws IOException if no journal can be written
+     */
+    public JobJournal open(File audioFile, String model, TranscriptionOptions options) throws IOException {
+        Path file = journalFile(audioFile, model, options);
+        synchronized (open) {
+            if (!open.add(file)) {
+                return null;
+            }
+        }
+        try {
+            if (Files.isRegularFile(file)) {
+                try {
+                    JobJournal journal = JobJournal.open(file);
+                    if (journal.matchesAudio()) {
+                        journal.markResumed();
+                        return journal;
+                    }
+                    LOG.info("{} changed since it was checkpointed; starting over", audioFile);
+                    journal.close();
+                } catch (IOException e) {
+                    LOG.warn("Starting over: {}", e.getMessage());
+                }
+            }
+            return JobJournal.create(file, audioFile, model, options);
+        } catch (IOException | RuntimeException e) {
+            synchronized (open) {
+                open.remove(file);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a journal and keeps it for a later run of the same job.
+     */
+    public void release(JobJournal journal) {
+        journal.close();
+        synchronized (open) {
+            open.remove(journal.getFile());
+        }
+    }
+
+    /**
+     * Closes and deletes a journal once its job is done or was cancelled.
+     */
+    public void discard(JobJournal journal) {
+        journal.close();
+        delete(journal.getFile());
+        synchronized (open) {
+            open.remove(journal.getFile());
+        }
+    }
+
+    /**
+     * Journals of jobs that were cut off by the app closing or crashing, for
+     * resubmitting their jobs. Journals that are unreadable, too old, or
+     * whose file has changed or gone are deleted; those of failed jobs are
+     * kept but not returned. The journals come back closed.
+     */
+    public List<JobJournal> interrupted() {
+        List<JobJournal> result = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - MAX_AGE_MS;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                synchronized (open) {
+                    if (open.contains(file)) {
+                        continue;
+                    }
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        delete(file);
+                        continue;
+                    }
+                    JobJournal journal = JobJournal.open(file);
+                    journal.close();
+                    if (!journal.matchesAudio()) {
+                        delete(file);
+                    } else if (!journal.isFailed()) {
+                        result.add(journal);
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Deleting unreadable journal {}: {}", file, e.getMessage());
+                    delete(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot list checkpoints in {}: {}", directory, e.getMessage());
+        }
+        return result;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Cannot delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path journalFile(File audioFile, String model, TranscriptionOptions options) {
+        String language = options.getLanguage() == null ? "auto" : options.getLanguage();
+        // Chunk length decides the split; chunk parallelism does not change the output
+        String key = AudioHasher.sha256(audioFile.getAbsolutePath() + "|" + model + "|" + language + "|"
+                + options.getChunkSeconds());
+        return directory.resolve(key + EXTENSION);
+    }
+}
@@ -0,0 +1,386 @@
+package com.promixa.checkpoint;
+
+import com.promixa.engine.AudioSplit;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionOptions;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of one job on disk, so a job that is interrupted continues where
+ * it stopped instead of starting over. A job transcribed in one pass records
+ * every segment as the worker decodes it; a chunked job records how the file
+ * was split and then each chunk once it is done.
+ * <p>
+ * Like the transcript store, the journal is a log of length-prefixed,
+ * checksummed records: a record cut short by a crash is dropped when the
+ * journal is read back. Failing to write never fails the job; the journal
+ * just stops recording.
+ */
+public class JobJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final int MAGIC = 0x504d584a;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    /** Length and CRC-32 of the payload. */
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte TYPE_JOB = 1;
+    private static final byte TYPE_SEGMENT = 2;
+    private static final byte TYPE_SPLIT = 3;
+    private static final byte TYPE_CHUNK = 4;
+    private static final byte TYPE_FAILED = 5;
+    private static final byte TYPE_RESUMED = 6;
+
+    private final Path file;
+    private final FileChannel channel;
+    private File audioFile;
+    private long audioSize;
+    private long audioModified;
+    private String model;
+    private TranscriptionOptions options;
+    private final List<Segment> segments = new ArrayList<>();
+    private AudioSplit split;
+    private final Map<Integer, List<Segment>> chunks = new HashMap<>();
+    private boolean failed;
+    private boolean broken;
+
+    private JobJournal(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Starts a new journal in {@code file}, replacing any there.
+     */
+    static JobJournal create(Path file, File audioFile, String model, TranscriptionOptions options)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        JobJournal journal = new JobJournal(file, channel);
+        try {
+            journal.audioFile = audioFile;
+            journal.audioSize = audioFile.length();
+            journal.audioModified = audioFile.lastModified();
+            journal.model = model;
+            journal.options = options;
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(), 0);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(TYPE_JOB);
+            writeString(out, audioFile.getAbsolutePath());
+            out.writeLong(journal.audioSize);
+            out.writeLong(journal.audioModified);
+            writeString(out, model);
+            writeString(out, options.getLanguage() != null ? options.getLanguage() : "");
+            out.writeInt(options.getChunkSeconds());
+            out.writeInt(options.getChunkParallelism());
+            journal.append(bytes.toByteArray(), true);
+            return journal;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the journal in {@code file} and leaves it open for more records.
+     *
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    static JobJournal open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JobJournal journal = new JobJournal(file, channel);
+        try {
+            journal.load();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt journal " + file, e);
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    public File getAudioFile() {
+        return audioFile;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public TranscriptionOptions getOptions() {
+        return options;
+    }
+
+    /** Whether the audio file still has the size and modification time it had when the job started. */
+    public boolean matchesAudio() {
+        return audioFile.isFile() && audioFile.length() == audioSize && audioFile.lastModified() == audioModified;
+    }
+
+    /** Whether the last run of the job failed, rather than being cut off by the app closing. */
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /** Segments recorded by a job transcribed in one pass, in audio order. */
+    public synchronized List<Segment> getSegments() {
+        return new ArrayList<>(segments);
+    }
+
+    /** How the file was split into chunks, or {@code null} if it was not yet. */
+    public synchronized AudioSplit getSplit() {
+        return split;
+    }
+
+    /** Segments of the finished chunk {@code index}, or {@code null} if it is not done. */
+    public synchronized List<Segment> getChunk(int index) {
+        List<Segment> chunk = chunks.get(index);
+        return chunk != null ? Collections.unmodifiableList(chunk) : null;
+    }
+
+    /** Number of finished chunks. */
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    /** Whether there is any progress to continue from. */
+    public synchronized boolean hasProgress() {
+        return !segments.isEmpty() || !chunks.isEmpty();
+    }
+
+    /**
+     * Records a segment of a job transcribed in one pass. Written through to
+     * the operating system but not synced, which survives the app dying.
+     */
+    public synchronized void addSegment(Segment segment) {
+        segments.add(segment);
+        record(out -> {
+            out.writeByte(TYPE_SEGMENT);
+            writeSegment(out, segment);
+        }, false);
+    }
+
+    public synchronized void recordSplit(AudioSplit split) {
+        this.split = split;
+        record(out -> {
+            out.writeByte(TYPE_SPLIT);
+            out.writeDouble(split.getDurationSeconds());
+            out.writeInt(split.getChunks().size());
+            for (double[] chunk : split.getChunks()) {
+                out.writeDouble(chunk[0]);
+                out.writeDouble(chunk[1]);
+            }
+        }, true);
+    }
+
+    /** Records that chunk {@code index} is done, with every segment its worker decoded. */
+    public synchronized void recordChunk(int index, List<Segment> chunkSegments) {
+        chunks.put(index, new ArrayList<>(chunkSegments));
+        record(out -> {
+            out.writeByte(TYPE_CHUNK);
+            out.writeInt(index);
+            out.writeInt(chunkSegments.size());
+            for (Segment segment : chunkSegments) {
+                writeSegment(out, segment);
+            }
+        }, true);
+    }
+
+    /** Marks the job as failed, so it is not resumed on its own at the next launch. */
+    public synchronized void markFailed() {
+        failed = true;
+        record(out -> out.writeByte(TYPE_FAILED), true);
+    }
+
+    /** Marks the job as running again after a failure. */
+    synchronized void markResumed() {
+        if (failed) {
+            failed = false;
+            record(out -> out.writeByte(TYPE_RESUMED), true);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Cannot close {}: {}", file, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void record(RecordWriter writer, boolean sync) {
+        if (broken) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            writer.write(new DataOutputStream(bytes));
+            append(bytes.toByteArray(), sync);
+        } catch (IOException e) {
+            broken = true;
+            LOG.warn("Checkpointing stopped for {}: {}", audioFile, e.getMessage());
+        }
+    }
+
+    private void append(byte[] payload, boolean sync) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        writeFully(channel, record, channel.size());
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            if (size < HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a job journal.");
+            }
+            position = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            while (size - position >= RECORD_HEADER_BYTES) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > size - position - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                replay(ByteBuffer.wrap(payload));
+                position += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // Handled below like any other incomplete tail
+        }
+        if (audioFile == null) {
+            throw new IOException(file + " has no job record.");
+        }
+        if (position < size) {
+            LOG.warn("Dropping {} bytes of an incomplete record at the end of {}", size - position, file);
+            channel.truncate(position);
+        }
+    }
+
+    private void replay(ByteBuffer record) throws IOException {
+        byte type = record.get();
+        if (type != TYPE_JOB && audioFile == null) {
+            throw new IOException(file + " does not start with a job record.");
+        }
+        switch (type) {
+            case TYPE_JOB:
+                audioFile = new File(readString(record));
+                audioSize = record.getLong();
+                audioModified = record.getLong();
+                model = readString(record);
+                String language = readString(record);
+                options = new TranscriptionOptions(language.isEmpty() ? null : language, record.getInt(),
+                        record.getInt());
+                break;
+            case TYPE_SEGMENT:
+                segments.add(readSegment(record));
+                break;
+            case TYPE_SPLIT:
+                double duration = record.getDouble();
+                List<double[]> bounds = new ArrayList<>();
+                for (int i = record.getInt(); i > 0; i--) {
+                    bounds.add(new double[]{record.getDouble(), record.getDouble()});
+                }
+                split = new AudioSplit(duration, bounds);
+                break;
+            case TYPE_CHUNK:
+                int index = record.getInt();
+                List<Segment> chunkSegments = new ArrayList<>();
+                for (int i = record.getInt(); i > 0; i--) {
+                    chunkSegments.add(readSegment(record));
+                }
+                chunks.put(index, chunkSegments);
+                break;
+            case TYPE_FAILED:
+                failed = true;
+                break;
+            case TYPE_RESUMED:
+                failed = false;
+                break;
+            default:
+                throw new IOException("Unknown record type " + type + " in " + file);
+        }
+    }
+
+    private static void writeSegment(DataOutputStream out, Segment segment) throws IOException {
+        out.writeDouble(segment.getStart());
+        out.writeDouble(segment.getEnd());
+        writeString(out, segment.getText());
+    }
+
+    private static Segment readSegment(ByteBuffer record) {
+        double start = record.getDouble();
+        double end = record.getDouble();
+        return new Segment(start, end, readString(record));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
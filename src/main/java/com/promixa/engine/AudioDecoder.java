@@ -0,0 +1,311 @@
+package com.promixa.engine;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes a recording to the 16 kHz mono float samples Whisper works on and
+ * writes them to a file (see {@link DecodedAudio}). Uncompressed WAV is read
+ * and resampled in Java; anything else is converted by FFmpeg. Memory use
+ * does not depend on the length of the recording.
+ */
+public final class AudioDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AudioDecoder.class);
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final int READ_FRAMES = 16384;
+
+    private AudioDecoder() {
+    }
+
+    /**
+     * Decodes {@code audioFile} into {@code target}, replacing it.
+     *
+     * @throws IOException if the file cannot be read or FFmpeg fails
+     */
+    public static DecodedAudio decode(File audioFile, Path target) throws IOException {
+        long started = System.nanoTime();
+        long samples;
+        WavFormat wav = WavFormat.read(audioFile);
+        if (wav != null) {
+            samples = decodeWav(audioFile, wav, target);
+        } else {
+            samples = decodeWithFfmpeg(audioFile, target);
+        }
+        long nanos = System.nanoTime() - started;
+        LOG.debug("Decoded {} ({} samples{}) in {} ms", audioFile.getName(), samples, wav != null ? ", WAV" : "",
+                nanos / 1_000_000);
+        return new DecodedAudio(target, samples, nanos);
+    }
+
+    /**
+     * Length of {@code audioFile} in seconds, read from the WAV header or
+     * asked of {@code ffprobe}; -1 if neither can tell.
+     */
+    public static double durationSeconds(File audioFile) {
+        try {
+            WavFormat wav = WavFormat.read(audioFile);
+            if (wav != null) {
+                return (double) (wav.dataLength / wav.blockAlign) / wav.sampleRate;
+            }
+            Process process = new ProcessBuilder("ffprobe", "-v", "error", "-show_entries", "format=duration",
+                    "-of", "default=noprint_wrappers=1:nokey=1", audioFile.getAbsolutePath())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.US_ASCII).strip();
+            }
+            if (process.waitFor() != 0 || output.isEmpty()) {
+                return -1;
+            }
+            return Double.parseDouble(output);
+        } catch (IOException | NumberFormatException e) {
+            LOG.debug("Cannot tell the length of {}: {}", audioFile, e.getMessage());
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static long decodeWav(File audioFile, WavFormat wav, Path target) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(audioFile.toPath()), 1 << 16);
+             SampleWriter out = new SampleWriter(target)) {
+            in.skipNBytes(wav.dataOffset);
+            Resampler resampler = new Resampler(wav.sampleRate, DecodedAudio.SAMPLE_RATE, out::write);
+            byte[] bytes = new byte[READ_FRAMES * wav.blockAlign];
+            ByteBuffer frames = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            float[] mono = new float[READ_FRAMES];
+            long remaining = wav.dataLength;
+            while (remaining > 0) {
+                int read = in.readNBytes(bytes, 0, (int) Math.min(bytes.length, remaining));
+                int frameCount = read / wav.blockAlign;
+                if (frameCount == 0) {
+                    break;
+                }
+                for (int frame = 0; frame < frameCount; frame++) {
+                    float sum = 0f;
+                    int offset = frame * wav.blockAlign;
+                    for (int channel = 0; channel < wav.channels; channel++) {
+                        sum += wav.sample(frames, offset + channel * wav.bytesPerSample);
+                    }
+                    mono[frame] = sum / wav.channels;
+                }
+                resampler.write(mono, frameCount);
+                remaining -= read;
+            }
+            resampler.finish();
+            return out.count();
+        }
+    }
+
+    private static long decodeWithFfmpeg(File audioFile, Path target) throws IOException {
+        Process process = new ProcessBuilder("ffmpeg", "-nostdin", "-v", "error", "-i", audioFile.getAbsolutePath(),
+                "-vn", "-f", "f32le", "-ac", "1", "-ar", String.valueOf(DecodedAudio.SAMPLE_RATE), "-")
+                .start();
+        // Only errors are printed; read them aside so a full pipe cannot stall FFmpeg
+        CompletableFuture<String> errors = CompletableFuture.supplyAsync(() -> {
+            try (InputStream err = process.getErrorStream()) {
+                return new String(err.readAllBytes(), StandardCharsets.UTF_8).strip();
+            } catch (IOException e) {
+                return "";
+            }
+        });
+        try (InputStream in = process.getInputStream()) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            if (process.waitFor() != 0) {
+                String message = errors.join();
+                throw new IOException("FFmpeg could not decode " + audioFile.getName()
+                        + (message.isEmpty() ? "" : ": " + message.lines().findFirst().orElse("")));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding " + audioFile.getName());
+        } finally {
+            process.destroyForcibly();
+        }
+        return Files.size(target) / Float.BYTES;
+    }
+
+    /** Buffers samples and writes them to the target file as little-endian floats. */
+    private static final class SampleWriter implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long count;
+
+        SampleWriter(Path target) throws IOException {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(float[] samples, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                buffer.putFloat(samples[i]);
+            }
+            count += length;
+        }
+
+        long count() {
+            return count;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /** Layout of an uncompressed WAV file this class can decode itself. */
+    private static final class WavFormat {
+
+        final int encoding;
+        final int channels;
+        final int sampleRate;
+        final int blockAlign;
+        final int bytesPerSample;
+        final long dataOffset;
+        final long dataLength;
+
+        private WavFormat(int encoding, int channels, int sampleRate, int blockAlign, int bitsPerSample,
+                          long dataOffset, long dataLength) {
+            this.encoding = encoding;
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.blockAlign = blockAlign;
+            this.bytesPerSample = bitsPerSample / 8;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * Parses the RIFF header, or returns {@code null} if the file is not
+         * a WAV file in a supported encoding (8 to 32 bit integer PCM, 32 or
+         * 64 bit float).
+         */
+        static WavFormat read(File file) throws IOException {
+            long fileSize = file.length();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                byte[] header = in.readNBytes(12);
+                if (header.length < 12 || !chunkId(header, 0).equals("RIFF") || !chunkId(header, 8).equals("WAVE")) {
+                    return null;
+                }
+                long position = 12;
+                int encoding = -1;
+                int channels = 0;
+                int sampleRate = 0;
+                int blockAlign = 0;
+                int bits = 0;
+                byte[] chunkHeader = new byte[8];
+                while (true) {
+                    if (in.readNBytes(chunkHeader, 0, 8) < 8) {
+                        return null;
+                    }
+                    position += 8;
+                    String id = chunkId(chunkHeader, 0);
+                    long size = ByteBuffer.wrap(chunkHeader, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0xFFFFFFFFL;
+                    if (id.equals("fmt ")) {
+                        ByteBuffer fmt = ByteBuffer.wrap(in.readNBytes((int) size)).order(ByteOrder.LITTLE_ENDIAN);
+                        if (fmt.capacity() < 16) {
+                            return null;
+                        }
+                        encoding = fmt.getShort(0) & 0xFFFF;
+                        channels = fmt.getShort(2) & 0xFFFF;
+                        sampleRate = fmt.getInt(4);
+                        blockAlign = fmt.getShort(12) & 0xFFFF;
+                        bits = fmt.getShort(14) & 0xFFFF;
+                        if (encoding == FORMAT_EXTENSIBLE && fmt.capacity() >= 26) {
+                            // The real format code starts the sub-format GUID
+                            encoding = fmt.getShort(24) & 0xFFFF;
+                        }
+                        skipPadding(in, size);
+                        position += size + (size & 1);
+                    } else if (id.equals("data")) {
+                        if (encoding < 0 || !supported(encoding, bits, channels, sampleRate, blockAlign)) {
+                            return null;
+                        }
+                        // Streamed files may leave the length open
+                        long length = Math.min(size, fileSize - position);
+                        return new WavFormat(encoding, channels, sampleRate, blockAlign, bits, position, length);
+                    } else {
+                        in.skipNBytes(size + (size & 1));
+                        position += size + (size & 1);
+                    }
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        private static boolean supported(int encoding, int bits, int channels, int sampleRate, int blockAlign) {
+            boolean pcm = encoding == FORMAT_PCM && (bits == 8 || bits == 16 || bits == 24 || bits == 32);
+            boolean floats = encoding == FORMAT_FLOAT && (bits == 32 || bits == 64);
+            return (pcm || floats) && channels > 0 && sampleRate > 0 && blockAlign == channels * bits / 8;
+        }
+
+        private static void skipPadding(InputStream in, long size) throws IOException {
+            if ((size & 1) != 0) {
+                in.skipNBytes(1);
+            }
+        }
+
+        private static String chunkId(byte[] bytes, int offset) {
+            return new String(bytes, offset, 4, StandardCharsets.US_ASCII);
+        }
+
+        /** One sample scaled to [-1, 1]. */
+        float sample(ByteBuffer frames, int offset) {
+            if (encoding == FORMAT_FLOAT) {
+                return bytesPerSample == 4 ? frames.getFloat(offset) : (float) frames.getDouble(offset);
+            }
+            switch (bytesPerSample) {
+                case 1:
+                    // 8-bit WAV is unsigned
+                    return ((frames.get(offset) & 0xFF) - 128) / 128f;
+                case 2:
+                    return frames.getShort(offset) / 32768f;
+                case 3:
+                    int value = (frames.get(offset) & 0xFF) | (frames.get(offset + 1) & 0xFF) << 8
+                            | frames.get(offset + 2) << 16;
+                    return value / 8388608f;
+                default:
+                    return frames.getInt(offset) / 2147483648f;
+            }
+        }
+    }
+}
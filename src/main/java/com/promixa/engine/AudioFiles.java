@@ -0,0 +1,107 @@
+package com.promixa.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns user input (files, folders, glob patterns) into the list of audio
+ * files to transcribe.
+ */
+public final class AudioFiles {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AudioFiles.class);
+
+    public static final String[] EXTENSIONS = {".wav", ".mp3", ".m4a", ".flac"};
+
+    private AudioFiles() {
+    }
+
+    public static boolean isAudioFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expands directories into the audio files they contain, recursively.
+     * Plain files are kept as given, whatever their extension.
+     */
+    public static List<File> collect(List<File> files) {
+        List<File> audioFiles = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                try (Stream<Path> paths = Files.walk(file.toPath())) {
+                    audioFiles.addAll(paths.filter(Files::isRegularFile)
+                            .map(Path::toFile)
+                            .filter(AudioFiles::isAudioFile)
+                            .sorted()
+                            .collect(Collectors.toList()));
+                } catch (IOException e) {
+                    LOG.warn("Could not read folder {}: {}", file, e.getMessage());
+                }
+            } else {
+                audioFiles.add(file);
+            }
+        }
+        return audioFiles;
+    }
+
+    /**
+     * Resolves a command-line argument: an existing file or folder, or a glob
+     * such as {@code recordings/**}{@code /*.wav}. Glob matches are limited to
+     * audio files.
+     */
+    public static List<File> expand(String argument) throws IOException {
+        Path path = Paths.get(argument);
+        if (Files.exists(path)) {
+            return collect(List.of(path.toFile()));
+        }
+
+        // Walk from the deepest directory that has no wildcard in it
+        String normalized = argument.replace('\\', '/');
+        int wildcard = indexOfWildcard(normalized);
+        if (wildcard < 0) {
+            throw new IOException("No such file: " + argument);
+        }
+        int slash = normalized.lastIndexOf('/', wildcard);
+        Path base = slash < 0 ? Paths.get(".") : Paths.get(normalized.substring(0, Math.max(slash, 1)));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+        boolean relativeToCwd = slash < 0;
+
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(relativeToCwd ? base.relativize(p) : p))
+                    .map(Path::toFile)
+                    .filter(AudioFiles::isAudioFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
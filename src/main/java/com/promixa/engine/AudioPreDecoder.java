@@ -0,0 +1,147 @@
+package com.promixa.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes queued jobs' audio on its own threads ahead of time, so decoding the
+ * next file overlaps with inference on the current one and the worker only
+ * maps the finished samples. A job whose audio cannot be decoded here is left
+ * to the worker's own decoder.
+ */
+class AudioPreDecoder implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AudioPreDecoder.class);
+
+    private static final long CANCEL_POLL_MS = 500;
+
+    private final Path directory;
+    private final ExecutorService executor;
+    private final Map<Long, Decode> decodes = new ConcurrentHashMap<>();
+
+    /** One job's decode; released once the job no longer needs the samples. */
+    private static final class Decode {
+        final CompletableFuture<DecodedAudio> future = new CompletableFuture<>();
+        volatile boolean released;
+    }
+
+    AudioPreDecoder(Path directory, int threads) {
+        this.directory = directory;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "audio-decoder");
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /** Starts decoding a job's audio unless that has already begun. */
+    void prefetch(TranscriptionJob job) {
+        start(job);
+    }
+
+    /**
+     * Waits for a job's decoded audio, starting the decode now if it was not
+     * prefetched.
+     *
+     * @return the samples, or {@code null} if they could not be decoded here
+     */
+    DecodedAudio await(TranscriptionJob job, TranscriptionListener listener) throws IOException {
+        Decode decode = start(job);
+        if (!decode.future.isDone()) {
+            listener.onProgress("Decoding audio...", "processing");
+        }
+        try {
+            while (true) {
+                try {
+                    DecodedAudio audio = decode.future.get(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+                    listener.onPhase(JobPhase.AUDIO_DECODE, audio.getDecodeNanos());
+                    return audio;
+                } catch (TimeoutException e) {
+                    if (job.isCancelRequested()) {
+                        throw new IOException("Transcription cancelled.");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding " + job.getAudioFile().getName());
+        } catch (ExecutionException e) {
+            LOG.info("Leaving {} to the worker's decoder: {}", job.getAudioFile().getName(),
+                    e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /** Deletes a job's samples, or drops its decode if it has not run yet. */
+    void release(TranscriptionJob job) {
+        Decode decode = decodes.remove(job.getId());
+        if (decode != null) {
+            decode.released = true;
+            decode.future.whenComplete((audio, error) -> {
+                if (audio != null) {
+                    delete(audio.getFile());
+                }
+            });
+        }
+    }
+
+    private Decode start(TranscriptionJob job) {
+        return decodes.computeIfAbsent(job.getId(), id -> {
+            Decode decode = new Decode();
+            Path target = directory.resolve("job-" + id + ".f32");
+            executor.execute(() -> {
+                if (decode.released) {
+                    decode.future.completeExceptionally(new IOException("Job no longer needs its audio."));
+                    return;
+                }
+                try {
+                    decode.future.complete(AudioDecoder.decode(job.getAudioFile(), target));
+                } catch (IOException | RuntimeException e) {
+                    delete(target);
+                    decode.future.completeExceptionally(e);
+                }
+            });
+            return decode;
+        });
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /** Stops decoding and deletes every decoded file along with the folder. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Decode decode : decodes.values()) {
+            decode.future.completeExceptionally(new IOException("Decoder closed."));
+        }
+        decodes.clear();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(AudioPreDecoder::delete);
+        } catch (IOException e) {
+            LOG.warn("Could not clean up {}: {}", directory, e.getMessage());
+        }
+        delete(directory);
+    }
+}
@@ -0,0 +1,27 @@
+package com.promixa.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chunk boundaries chosen by the worker's silence detection for a long file.
+ */
+public class AudioSplit {
+
+    private final double durationSeconds;
+    private final List<double[]> chunks;
+
+    public AudioSplit(double durationSeconds, List<double[]> chunks) {
+        this.durationSeconds = durationSeconds;
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /** {@code [start, end)} of each chunk in seconds, in audio order and without gaps. */
+    public List<double[]> getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,239 @@
+package com.promixa.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.JsonWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * How fast this machine transcribes with each model for the worker and
+ * thread splits {@link Calibrator} tried. Saved per machine: a file measured
+ * on other hardware, or for another device, is ignored when loaded.
+ */
+public class Calibration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Calibration.class);
+
+    private static final int FILE_VERSION = 1;
+
+    /** One model run by {@code workers} workers side by side with {@code threads} torch threads each. */
+    public static final class Measurement {
+        private final String model;
+        private final int workers;
+        private final int threads;
+        private final double jobSpeed;
+        private final double throughput;
+
+        /**
+         * @param jobSpeed   audio seconds one worker transcribes per wall second
+         * @param throughput audio seconds all workers together transcribe per wall second
+         */
+        public Measurement(String model, int workers, int threads, double jobSpeed, double throughput) {
+            this.model = model;
+            this.workers = workers;
+            this.threads = threads;
+            this.jobSpeed = jobSpeed;
+            this.throughput = throughput;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public double getJobSpeed() {
+            return jobSpeed;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        JsonObject toJson() {
+            return Json.createObjectBuilder()
+                    .add("model", model)
+                    .add("workers", workers)
+                    .add("threads", threads)
+                    .add("jobSpeed", jobSpeed)
+                    .add("throughput", throughput)
+                    .build();
+        }
+
+        static Measurement fromJson(JsonObject json) {
+            return new Measurement(json.getString("model"), json.getInt("workers"), json.getInt("threads"),
+                    json.getJsonNumber("jobSpeed").doubleValue(), json.getJsonNumber("throughput").doubleValue());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d worker(s) x %d thread(s), %.2fx per job, %.2fx total",
+                    model, workers, threads, jobSpeed, throughput);
+        }
+    }
+
+    private final String machine;
+    private final long measuredAt;
+    private final List<Measurement> measurements;
+
+    public Calibration(String machine, long measuredAt, List<Measurement> measurements) {
+        this.machine = machine;
+        this.measuredAt = measuredAt;
+        this.measurements = Collections.unmodifiableList(new ArrayList<>(measurements));
+    }
+
+    /**
+     * Identifies the hardware and device a calibration holds for: cores,
+     * physical memory, operating system and architecture.
+     */
+    public static String machineFingerprint(String device) {
+        long memory = Runtime.getRuntime().maxMemory();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            memory = ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+        }
+        return PoolSizing.availableCores() + " cores, " + (memory >> 20) + " MB, "
+                + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", " + device;
+    }
+
+    public String getMachine() {
+        return machine;
+    }
+
+    /** When the measurements were taken, in epoch milliseconds. */
+    public long getMeasuredAt() {
+        return measuredAt;
+    }
+
+    public List<Measurement> getMeasurements() {
+        return measurements;
+    }
+
+    /** Measurements of {@code model}, in the order they were taken. */
+    public List<Measurement> getMeasurements(String model) {
+        List<Measurement> result = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            if (measurement.getModel().equals(model)) {
+                result.add(measurement);
+            }
+        }
+        return result;
+    }
+
+    /** The split with the highest total throughput for {@code model}, or {@code null}. */
+    public Measurement best(String model) {
+        Measurement best = null;
+        for (Measurement measurement : getMeasurements(model)) {
+            if (best == null || measurement.getThroughput() > best.getThroughput()) {
+                best = measurement;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Speed of one job on {@code model} with workers of {@code threads}
+     * threads, taken from the measurement with the closest thread count;
+     * 0 if the model was not measured.
+     */
+    public double jobSpeed(String model, int threads) {
+        Measurement closest = null;
+        for (Measurement measurement : getMeasurements(model)) {
+            if (closest == null
+                    || Math.abs(measurement.getThreads() - threads) < Math.abs(closest.getThreads() - threads)) {
+                closest = measurement;
+            }
+        }
+        return closest != null ? closest.getJobSpeed() : 0;
+    }
+
+    /**
+     * This calibration with every model measured in {@code newer} replaced
+     * by the newer measurements.
+     */
+    public Calibration updatedWith(Calibration newer) {
+        List<Measurement> merged = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            if (newer.getMeasurements(measurement.getModel()).isEmpty()) {
+                merged.add(measurement);
+            }
+        }
+        merged.addAll(newer.getMeasurements());
+        return new Calibration(newer.getMachine(), newer.getMeasuredAt(), merged);
+    }
+
+    /**
+     * Reads a calibration saved on this machine for {@code device}, or
+     * returns {@code null} if there is none or the hardware changed.
+     */
+    public static Calibration load(Path file, String device) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             JsonReader reader = Json.createReader(in)) {
+            JsonObject json = reader.readObject();
+            String machine = json.getString("machine", "");
+            if (json.getInt("version", 0) != FILE_VERSION || !machine.equals(machineFingerprint(device))) {
+                LOG.info("Ignoring calibration measured on other hardware ({})", machine);
+                return null;
+            }
+            List<Measurement> measurements = new ArrayList<>();
+            for (JsonValue value : json.getJsonArray("measurements")) {
+                measurements.add(Measurement.fromJson(value.asJsonObject()));
+            }
+            return new Calibration(machine, json.getJsonNumber("measuredAt").longValue(), measurements);
+        } catch (IOException | JsonException | ClassCastException | NullPointerException e) {
+            LOG.warn("Ignoring unreadable calibration: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the calibration to {@code file}, replacing it atomically.
+     */
+    public void save(Path file) throws IOException {
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        for (Measurement measurement : measurements) {
+            array.add(measurement.toJson());
+        }
+        JsonObject json = Json.createObjectBuilder()
+                .add("version", FILE_VERSION)
+                .add("machine", machine)
+                .add("measuredAt", measuredAt)
+                .add("measurements", array)
+                .build();
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp);
+             JsonWriter writer = Json.createWriter(out)) {
+            writer.writeObject(json);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
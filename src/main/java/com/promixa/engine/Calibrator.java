@@ -0,0 +1,207 @@
+package com.promixa.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how fast each model runs on this machine for the ways its cores
+ * can be split between workers: for every thread count from one up to all
+ * cores, as many workers as fit side by side transcribe a short clip at once.
+ * A first round warms the workers up; only the second is timed.
+ */
+public class Calibrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Calibrator.class);
+
+    public static final List<String> DEFAULT_MODELS = List.of("tiny", "base", "small");
+
+    static final int CLIP_SECONDS = 20;
+    private static final int SAMPLE_RATE = DecodedAudio.SAMPLE_RATE;
+
+    private final String pythonExecutable;
+    private final Supplier<Path> scriptLocator;
+    private final String device;
+
+    public Calibrator(String pythonExecutable, Supplier<Path> scriptLocator, String device) {
+        this.pythonExecutable = pythonExecutable;
+        this.scriptLocator = scriptLocator;
+        this.device = device;
+    }
+
+    /**
+     * Creates a calibrator using the interpreter, script and device given by
+     * {@link WhisperEnvironment}.
+     */
+    public static Calibrator createDefault() {
+        return new Calibrator(WhisperEnvironment.pythonExecutable(), WhisperEnvironment::locateScript,
+                WhisperEnvironment.device());
+    }
+
+    /**
+     * Measures every model in {@code models}.
+     *
+     * @param clip     recording to transcribe, or {@code null} for a built-in
+     *                 synthetic clip
+     * @param progress receives a line per measurement
+     * @throws IOException if a worker cannot be started or fails
+     */
+    public Calibration run(List<String> models, File clip, Consumer<String> progress)
+            throws IOException, InterruptedException {
+        Path script = scriptLocator.get();
+        if (script == null) {
+            throw new IOException("Cannot find the Whisper worker script.");
+        }
+        Path generated = null;
+        if (clip == null) {
+            generated = Files.createTempFile("promixa-calibration", ".wav");
+            writeSyntheticClip(generated, CLIP_SECONDS);
+            clip = generated.toFile();
+        }
+        try {
+            double clipSeconds = AudioDecoder.durationSeconds(clip);
+            if (clipSeconds <= 0) {
+                throw new IOException("Cannot tell the length of " + clip);
+            }
+            List<Calibration.Measurement> measurements = new ArrayList<>();
+            for (String model : models) {
+                for (int threads : threadCounts(PoolSizing.availableCores())) {
+                    int workers = Math.max(1, Math.min(PoolSizing.availableCores() / threads,
+                            PoolSizing.workersFittingMemory(model)));
+                    Calibration.Measurement measurement = measure(script, model, workers, threads, clip, clipSeconds);
+                    measurements.add(measurement);
+                    progress.accept(measurement.toString());
+                }
+            }
+            return new Calibration(Calibration.machineFingerprint(device), System.currentTimeMillis(), measurements);
+        } finally {
+            if (generated != null) {
+                Files.deleteIfExists(generated);
+            }
+        }
+    }
+
+    /** 1, 2, 4, ... up to {@code cores}, and {@code cores} itself. */
+    static List<Integer> threadCounts(int cores) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(Math.max(1, cores));
+        return counts;
+    }
+
+    private Calibration.Measurement measure(Path script, String model, int workers, int threads, File clip,
+                                            double clipSeconds) throws IOException, InterruptedException {
+        LOG.info("Calibrating {} with {} worker(s) x {} thread(s)", model, workers, threads);
+        List<WhisperWorker> started = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "calibration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < workers; i++) {
+                started.add(WhisperWorker.start(pythonExecutable, script, device, threads));
+            }
+            List<Future<Double>> rounds = new ArrayList<>();
+            for (WhisperWorker worker : started) {
+                rounds.add(executor.submit(() -> {
+                    worker.load(model, TranscriptionListener.NONE);
+                    worker.transcribe(clip, model, null, TranscriptionListener.NONE);
+                    return 0.0;
+                }));
+            }
+            awaitAll(rounds);
+
+            rounds.clear();
+            long roundStarted = System.nanoTime();
+            for (WhisperWorker worker : started) {
+                rounds.add(executor.submit(() -> {
+                    long jobStarted = System.nanoTime();
+                    worker.transcribe(clip, model, null, TranscriptionListener.NONE);
+                    return (System.nanoTime() - jobStarted) / 1e9;
+                }));
+            }
+            double jobSeconds = 0;
+            for (double seconds : awaitAll(rounds)) {
+                jobSeconds += seconds;
+            }
+            double wallSeconds = (System.nanoTime() - roundStarted) / 1e9;
+            return new Calibration.Measurement(model, workers, threads, clipSeconds / (jobSeconds / workers),
+                    clipSeconds * workers / wallSeconds);
+        } finally {
+            executor.shutdownNow();
+            for (WhisperWorker worker : started) {
+                worker.close();
+            }
+        }
+    }
+
+    private static List<Double> awaitAll(List<Future<Double>> futures) throws IOException, InterruptedException {
+        List<Double> results = new ArrayList<>();
+        for (Future<Double> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes a 16 kHz mono WAV that keeps the encoder as busy as speech does:
+     * a voiced tone with a wandering pitch and formant-like overtones, cut
+     * into syllables of a few per second, over low noise.
+     */
+    static void writeSyntheticClip(Path file, int seconds) throws IOException {
+        int samples = seconds * SAMPLE_RATE;
+        Random random = new Random(42);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + samples * 2)
+                    .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                    .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                    .putShort((short) 1).putShort((short) 1).putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2)
+                    .putShort((short) 2).putShort((short) 16)
+                    .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(samples * 2);
+            out.write(header.array());
+
+            DataOutputStream data = new DataOutputStream(out);
+            double phase = 0;
+            for (int i = 0; i < samples; i++) {
+                double t = (double) i / SAMPLE_RATE;
+                double pitch = 120 + 30 * Math.sin(2 * Math.PI * 0.7 * t) + 15 * Math.sin(2 * Math.PI * 3.1 * t);
+                phase += 2 * Math.PI * pitch / SAMPLE_RATE;
+                double voice = Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.35 * Math.sin(5 * phase)
+                        + 0.2 * Math.sin(11 * phase);
+                double syllable = Math.max(0, Math.sin(2 * Math.PI * 4 * t)) * (t % 3 < 2.6 ? 1 : 0);
+                double value = 0.25 * voice * syllable + 0.01 * random.nextGaussian();
+                short sample = (short) (Math.max(-1, Math.min(1, value)) * Short.MAX_VALUE);
+                data.writeShort(Short.reverseBytes(sample));
+            }
+            data.flush();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.promixa.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Makes sure processes started by the engine do not outlive it. A Python
+ * worker holding a model can pin gigabytes of memory, and it may itself have
+ * started FFmpeg, so processes are always destroyed together with their
+ * descendants, and whatever is still running when the JVM exits is killed by
+ * a shutdown hook.
+ */
+public final class ChildProcesses {
+
+    private static final AtomicBoolean HOOK_INSTALLED = new AtomicBoolean();
+
+    private ChildProcesses() {
+    }
+
+    /**
+     * Kills {@code process} and every process it started. The descendants are
+     * listed first: once the parent is gone they are re-parented and can no
+     * longer be found through it.
+     */
+    public static void destroyTree(Process process) {
+        destroyTree(process.toHandle());
+    }
+
+    static void destroyTree(ProcessHandle process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        for (ProcessHandle descendant : descendants) {
+            descendant.destroyForcibly();
+        }
+    }
+
+    /**
+     * Installs, once per JVM, a shutdown hook that kills all child processes
+     * and their descendants, whether the app quits normally, calls
+     * {@code System.exit} or receives SIGTERM or Ctrl+C.
+     */
+    public static void reapOnExit() {
+        if (HOOK_INSTALLED.compareAndSet(false, true)) {
+            // No logging here: the logging framework may already be stopped
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    ProcessHandle.current().children().forEach(ChildProcesses::destroyTree), "child-process-reaper"));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.promixa.engine;
+
+import com.promixa.checkpoint.JobJournal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-file mode: splits a recording at silences and transcribes the chunks
+ * concurrently on several pooled workers, then stitches the segments back
+ * together in audio order.
+ * <p>
+ * Each chunk is decoded with a little audio from its neighbours on both sides
+ * so words at the cut are heard in context. When stitching, a segment is kept
+ * only by the chunk its midpoint falls into, which drops the duplicates the
+ * overlap produces.
+ * <p>
+ * With a journal, the split and every finished chunk are recorded, and a
+ * resumed job only transcribes the chunks that were not done.
+ */
+public class ChunkedTranscriber {
+
+    /** Extra audio decoded on each side of a chunk. */
+    private static final double OVERLAP_SECONDS = 1.0;
+
+    /** How far from each target cut the splitter may look for silence. */
+    private static final double MAX_SEARCH_SECONDS = 30.0;
+
+    private final WorkerManager workerManager;
+    private final SequentialTranscriber sequentialTranscriber;
+
+    public ChunkedTranscriber(WorkerManager workerManager) {
+        this.workerManager = workerManager;
+        this.sequentialTranscriber = new SequentialTranscriber(workerManager);
+    }
+
+    /**
+     * Transcribes a job in chunks as configured by its options. Files short
+     * enough for a single chunk are transcribed in one pass.
+     */
+    public TranscriptionResult transcribe(TranscriptionJob job, TranscriptionListener listener) throws IOException {
+        return transcribe(job, listener, null);
+    }
+
+    /**
+     * Like {@link #transcribe(TranscriptionJob, TranscriptionListener)},
+     * recording progress in {@code journal} and skipping what it says is done.
+     */
+    public TranscriptionResult transcribe(TranscriptionJob job, TranscriptionListener listener, JobJournal journal)
+            throws IOException {
+        long started = System.nanoTime();
+        TranscriptionOptions options = job.getOptions();
+        double chunkSeconds = options.getChunkSeconds();
+
+        // A resumed job keeps its chunks, so the finished ones still line up
+        AudioSplit split = journal != null ? journal.getSplit() : null;
+        if (split == null) {
+            split = workerManager.split(job, chunkSeconds, Math.min(MAX_SEARCH_SECONDS, chunkSeconds * 0.2), listener);
+            if (journal != null) {
+                journal.recordSplit(split);
+            }
+        }
+        List<double[]> chunks = split.getChunks();
+        if (chunks.size() <= 1) {
+            return sequentialTranscriber.transcribe(job, listener, journal);
+        }
+
+        int done = journal != null ? journal.getChunkCount() : 0;
+        int threads = Math.max(1, Math.min(options.getChunkParallelism(), chunks.size() - done));
+        listener.onProgress(done > 0
+                ? "Resuming: " + done + " of " + chunks.size() + " chunks already done, the rest on up to "
+                        + threads + " workers..."
+                : "Transcribing " + chunks.size() + " chunks on up to " + threads + " workers...", "working");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService chunkPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "chunk-" + job.getId() + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            AtomicInteger finished = new AtomicInteger(done);
+            TranscriptionListener chunkListener = new TranscriptionListener() {
+                @Override
+                public void onProgress(String message, String status) {
+                    // Still counts as progress for the no-progress timeout, unless it is a heartbeat
+                    job.markProgress(status);
+                    // Per-chunk ticks from several workers would interleave; only model loads are worth showing
+                    if ("loading".equals(status)) {
+                        listener.onProgress(message, status);
+                    }
+                }
+
+                @Override
+                public void onSegment(Segment segment) {
+                    // Passed on in order once the chunk is stitched
+                    job.markActive();
+                }
+
+                @Override
+                public void onPhase(JobPhase phase, long nanos) {
+                    listener.onPhase(phase, nanos);
+                }
+
+                @Override
+                public void onWorkerMemory(long rssBytes) {
+                    listener.onWorkerMemory(rssBytes);
+                }
+            };
+
+            List<Future<TranscriptionResult>> results = new ArrayList<>();
+            double duration = split.getDurationSeconds();
+            for (int i = 0; i < chunks.size(); i++) {
+                List<Segment> recorded = journal != null ? journal.getChunk(i) : null;
+                if (recorded != null) {
+                    results.add(CompletableFuture.completedFuture(
+                            new TranscriptionResult("", recorded, job.getModel(), 0, 0)));
+                    continue;
+                }
+                int index = i;
+                double start = Math.max(0, chunks.get(i)[0] - OVERLAP_SECONDS);
+                double end = Math.min(duration, chunks.get(i)[1] + OVERLAP_SECONDS);
+                results.add(chunkPool.submit(() -> {
+                    TranscriptionResult result;
+                    try {
+                        result = workerManager.transcribeRange(job, start, end, chunkListener);
+                    } catch (IOException | RuntimeException e) {
+                        // The other chunks block on their workers' pipes, which interrupting does not reach;
+                        // killing their workers hands them back to the pool at once
+                        job.abort("Chunk " + (index + 1) + " of " + chunks.size() + " failed: " + e.getMessage());
+                        throw e;
+                    }
+                    if (journal != null) {
+                        journal.recordChunk(index, result.getSegments());
+                    }
+                    listener.onProgress("Transcribed " + finished.incrementAndGet() + " of " + chunks.size()
+                            + " chunks", "working");
+                    return result;
+                }));
+            }
+
+            // Stitch in audio order; segments reach the listener as soon as all earlier chunks are done
+            List<Segment> segments = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            long stitchNanos = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                double chunkStart = chunks.get(i)[0];
+                double chunkEnd = i == chunks.size() - 1 ? Double.MAX_VALUE : chunks.get(i)[1];
+                List<Segment> chunkSegments = await(results.get(i)).getSegments();
+                long stitchStarted = System.nanoTime();
+                for (Segment segment : chunkSegments) {
+                    double midpoint = (segment.getStart() + segment.getEnd()) / 2;
+                    if (midpoint >= chunkStart && midpoint < chunkEnd) {
+                        segments.add(segment);
+                        text.append(segment.getText());
+                        listener.onSegment(segment);
+                    }
+                }
+                stitchNanos += System.nanoTime() - stitchStarted;
+            }
+            listener.onPhase(JobPhase.POST_PROCESS, stitchNanos);
+
+            return new TranscriptionResult(text.toString().strip(), segments, job.getModel(),
+                    split.getDurationSeconds(), (System.nanoTime() - started) / 1e9);
+        } finally {
+            chunkPool.shutdownNow();
+        }
+    }
+
+    private static TranscriptionResult await(Future<TranscriptionResult> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a chunk.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Chunk transcription failed: " + cause, cause);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.promixa.engine;
+
+import java.nio.file.Path;
+
+/**
+ * A recording decoded ahead of the worker: 16 kHz mono samples stored as
+ * little-endian 32-bit floats in a file the worker maps into memory instead
+ * of decoding the original again.
+ */
+public class DecodedAudio {
+
+    /** Sample rate Whisper expects. */
+    public static final int SAMPLE_RATE = 16000;
+
+    private final Path file;
+    private final long sampleCount;
+    private final long decodeNanos;
+
+    public DecodedAudio(Path file, long sampleCount, long decodeNanos) {
+        this.file = file;
+        this.sampleCount = sampleCount;
+        this.decodeNanos = decodeNanos;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getSeconds() {
+        return sampleCount / (double) SAMPLE_RATE;
+    }
+
+    /** Time spent decoding and resampling. */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+}
@@ -0,0 +1,295 @@
+package com.promixa.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks, in parallel and off the calling thread, that everything a worker
+ * needs is installed: the Python interpreter, the torch and whisper imports,
+ * FFmpeg and the worker script.
+ * <p>
+ * Importing torch alone takes seconds, so a complete result is remembered in
+ * a small file and reused by later launches for as long as the interpreter,
+ * FFmpeg, the script and {@code PATH} look the same (path, size and
+ * modification time). Reports with problems are never reused, so installing
+ * the missing piece is picked up on the next launch.
+ */
+public class EnvironmentProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EnvironmentProbe.class);
+
+    private static final int CACHE_VERSION = 1;
+    private static final long PYTHON_TIMEOUT_SECONDS = 60;
+    private static final long TOOL_TIMEOUT_SECONDS = 10;
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+
+    private final String pythonExecutable;
+    private final Supplier<Path> scriptLocator;
+    private final Path cacheFile;
+
+    /**
+     * @param cacheFile where results are remembered between launches, or
+     *                  {@code null} to always probe
+     */
+    public EnvironmentProbe(String pythonExecutable, Supplier<Path> scriptLocator, Path cacheFile) {
+        this.pythonExecutable = pythonExecutable;
+        this.scriptLocator = scriptLocator;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Probes the interpreter and script found by {@link WhisperEnvironment}.
+     */
+    public static EnvironmentProbe createDefault(Path cacheFile) {
+        return new EnvironmentProbe(WhisperEnvironment.pythonExecutable(), WhisperEnvironment::locateScript, cacheFile);
+    }
+
+    /**
+     * Starts probing and returns at once. The report comes from the cache
+     * when it is still valid, otherwise from running each check on its own
+     * thread.
+     */
+    public CompletableFuture<EnvironmentReport> probe() {
+        ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "environment-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<EnvironmentReport> report = CompletableFuture.supplyAsync(this::fingerprint, executor)
+                .thenCompose(fingerprint -> {
+                    EnvironmentReport cached = readCache(fingerprint);
+                    return cached != null
+                            ? CompletableFuture.completedFuture(cached)
+                            : runChecks(executor).thenApply(fresh -> {
+                                if (fresh.isReady()) {
+                                    writeCache(fingerprint, fresh);
+                                }
+                                return fresh;
+                            });
+                });
+        report.whenComplete((r, e) -> executor.shutdown());
+        return report;
+    }
+
+    /** Forgets the remembered result, e.g. after a worker failed to start. */
+    public void invalidate() {
+        if (cacheFile != null) {
+            try {
+                Files.deleteIfExists(cacheFile);
+            } catch (IOException e) {
+                LOG.warn("Could not delete {}: {}", cacheFile, e.getMessage());
+            }
+        }
+    }
+
+    private CompletableFuture<EnvironmentReport> runChecks(ExecutorService executor) {
+        CompletableFuture<String> python = CompletableFuture.supplyAsync(() ->
+                firstLine(run(TOOL_TIMEOUT_SECONDS, pythonExecutable, "--version")).replaceFirst("^Python ", ""), executor);
+        // Warnings printed while importing come first; the versions are the last two lines
+        CompletableFuture<String[]> packages = CompletableFuture.supplyAsync(() -> run(PYTHON_TIMEOUT_SECONDS,
+                pythonExecutable, "-c",
+                "import torch, whisper; print(torch.__version__); print(getattr(whisper, '__version__', 'unknown'))")
+                .strip().split("\\R"), executor);
+        CompletableFuture<String> ffmpeg = CompletableFuture.supplyAsync(() ->
+                firstLine(run(TOOL_TIMEOUT_SECONDS, "ffmpeg", "-version")).replaceFirst(" Copyright.*$", ""), executor);
+        CompletableFuture<Path> script = CompletableFuture.supplyAsync(() -> {
+            Path located = scriptLocator.get();
+            if (located == null) {
+                throw new IllegalStateException("not found");
+            }
+            return located;
+        }, executor);
+
+        return CompletableFuture.allOf(python.exceptionally(e -> null), packages.exceptionally(e -> null),
+                ffmpeg.exceptionally(e -> null), script.exceptionally(e -> null)).thenApply(done -> {
+            List<String> problems = new ArrayList<>();
+            String pythonVersion = result(python, problems, "Python interpreter '" + pythonExecutable + "' not found");
+            // Without an interpreter the import check has nothing to add
+            String[] versions = pythonVersion != null
+                    ? result(packages, problems, "Whisper or torch is not installed (pip install openai-whisper)")
+                    : null;
+            String ffmpegVersion = result(ffmpeg, problems, "FFmpeg is not installed or not on PATH");
+            Path scriptPath = result(script, problems, "Transcription script " + WhisperEnvironment.SCRIPT_NAME
+                    + " not found");
+            boolean haveVersions = versions != null && versions.length >= 2;
+            return new EnvironmentReport(pythonVersion,
+                    haveVersions ? versions[versions.length - 2].strip() : null,
+                    haveVersions ? versions[versions.length - 1].strip() : null,
+                    ffmpegVersion, scriptPath != null ? scriptPath.toString() : null, problems, false);
+        });
+    }
+
+    /** The future's value, or {@code null} after recording {@code problem}. */
+    private static <T> T result(CompletableFuture<T> future, List<String> problems, String problem) {
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            LOG.debug("{}: {}", problem, cause.getMessage());
+            problems.add(problem);
+            return null;
+        }
+    }
+
+    /**
+     * Runs a command and returns its combined output.
+     *
+     * @throws IllegalStateException if it cannot start, times out or exits non-zero
+     */
+    private static String run(long timeoutSeconds, String... command) {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        try {
+            // Output is small; read it on a helper so a hung process still times out
+            CompletableFuture<String> output = CompletableFuture.supplyAsync(() -> {
+                try (InputStream in = process.getInputStream()) {
+                    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    return "";
+                }
+            });
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IllegalStateException(String.join(" ", command) + " timed out");
+            }
+            String text = output.get(TOOL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (process.exitValue() != 0) {
+                throw new IllegalStateException(String.join(" ", command) + " failed: " + firstLine(text));
+            }
+            return text;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private static String firstLine(String text) {
+        String stripped = text.strip();
+        int newline = stripped.indexOf('\n');
+        return (newline < 0 ? stripped : stripped.substring(0, newline)).strip();
+    }
+
+    /**
+     * Identifies the installation cheaply: where the interpreter, FFmpeg and
+     * the script resolve to, their sizes and modification times, and PATH.
+     */
+    private String fingerprint() {
+        String path = System.getenv("PATH");
+        return "python=" + stamp(resolveExecutable(pythonExecutable))
+                + ";ffmpeg=" + stamp(resolveExecutable("ffmpeg"))
+                + ";script=" + stamp(scriptLocator.get())
+                + ";path=" + (path != null ? path.hashCode() : 0);
+    }
+
+    private static String stamp(Path file) {
+        if (file == null) {
+            return "missing";
+        }
+        try {
+            return file.toRealPath() + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return file + ":missing";
+        }
+    }
+
+    /** Finds an executable the way the shell would, or {@code null}. */
+    static Path resolveExecutable(String name) {
+        if (name.contains("/") || name.contains(File.separator)) {
+            Path direct = Paths.get(name);
+            return Files.isRegularFile(direct) ? direct : null;
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        List<String> names = WINDOWS && !name.toLowerCase(Locale.ROOT).endsWith(".exe")
+                ? Arrays.asList(name + ".exe", name)
+                : List.of(name);
+        for (String dir : path.split(File.pathSeparator)) {
+            if (dir.isEmpty()) {
+                continue;
+            }
+            for (String candidate : names) {
+                Path file = Paths.get(dir, candidate);
+                if (Files.isRegularFile(file) && Files.isExecutable(file)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private EnvironmentReport readCache(String fingerprint) {
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(cacheFile);
+             JsonReader reader = Json.createReader(in)) {
+            JsonObject cached = reader.readObject();
+            if (cached.getInt("version", 0) != CACHE_VERSION || !fingerprint.equals(cached.getString("fingerprint", ""))) {
+                LOG.debug("Environment changed since the last probe");
+                return null;
+            }
+            return EnvironmentReport.fromJson(cached.getJsonObject("report"), true);
+        } catch (IOException | JsonException | ClassCastException | NullPointerException e) {
+            LOG.warn("Ignoring unreadable environment cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String fingerprint, EnvironmentReport report) {
+        if (cacheFile == null) {
+            return;
+        }
+        JsonObject cached = Json.createObjectBuilder()
+                .add("version", CACHE_VERSION)
+                .add("fingerprint", fingerprint)
+                .add("report", report.toJson())
+                .build();
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonWriter writer = Json.createWriter(out)) {
+                writer.writeObject(cached);
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write environment cache: {}", e.getMessage());
+        }
+    }
+}
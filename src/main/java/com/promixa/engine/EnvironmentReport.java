@@ -0,0 +1,112 @@
+package com.promixa.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+
+/**
+ * What {@link EnvironmentProbe} found: the Python interpreter, the Whisper
+ * and torch packages, FFmpeg and the worker script. A missing piece is
+ * reported as a problem instead of surfacing only when the first job fails.
+ */
+public class EnvironmentReport {
+
+    private final String pythonVersion;
+    private final String torchVersion;
+    private final String whisperVersion;
+    private final String ffmpegVersion;
+    private final String scriptPath;
+    private final List<String> problems;
+    private final boolean fromCache;
+
+    public EnvironmentReport(String pythonVersion, String torchVersion, String whisperVersion, String ffmpegVersion,
+                             String scriptPath, List<String> problems, boolean fromCache) {
+        this.pythonVersion = pythonVersion;
+        this.torchVersion = torchVersion;
+        this.whisperVersion = whisperVersion;
+        this.ffmpegVersion = ffmpegVersion;
+        this.scriptPath = scriptPath;
+        this.problems = Collections.unmodifiableList(new ArrayList<>(problems));
+        this.fromCache = fromCache;
+    }
+
+    /** True when nothing is missing, so jobs can be expected to run. */
+    public boolean isReady() {
+        return problems.isEmpty();
+    }
+
+    /** Human readable descriptions of what is missing. */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    public String getPythonVersion() {
+        return pythonVersion;
+    }
+
+    public String getTorchVersion() {
+        return torchVersion;
+    }
+
+    public String getWhisperVersion() {
+        return whisperVersion;
+    }
+
+    public String getFfmpegVersion() {
+        return ffmpegVersion;
+    }
+
+    public String getScriptPath() {
+        return scriptPath;
+    }
+
+    /** True when the result was reused from an earlier launch. */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    @Override
+    public String toString() {
+        if (!isReady()) {
+            return String.join("; ", problems);
+        }
+        return "Python " + pythonVersion + ", torch " + torchVersion + ", whisper " + whisperVersion
+                + ", " + ffmpegVersion + (fromCache ? " (cached)" : "");
+    }
+
+    JsonObject toJson() {
+        JsonArrayBuilder problemArray = Json.createArrayBuilder();
+        problems.forEach(problemArray::add);
+        JsonObjectBuilder json = Json.createObjectBuilder();
+        addIfPresent(json, "python", pythonVersion);
+        addIfPresent(json, "torch", torchVersion);
+        addIfPresent(json, "whisper", whisperVersion);
+        addIfPresent(json, "ffmpeg", ffmpegVersion);
+        addIfPresent(json, "script", scriptPath);
+        return json.add("problems", problemArray).build();
+    }
+
+    static EnvironmentReport fromJson(JsonObject json, boolean fromCache) {
+        List<String> problems = new ArrayList<>();
+        if (json.containsKey("problems")) {
+            for (JsonString problem : json.getJsonArray("problems").getValuesAs(JsonString.class)) {
+                problems.add(problem.getString());
+            }
+        }
+        return new EnvironmentReport(json.getString("python", null), json.getString("torch", null),
+                json.getString("whisper", null), json.getString("ffmpeg", null), json.getString("script", null),
+                problems, fromCache);
+    }
+
+    private static void addIfPresent(JsonObjectBuilder json, String key, String value) {
+        if (value != null) {
+            json.add(key, value);
+        }
+    }
+}
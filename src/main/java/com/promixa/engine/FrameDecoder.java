@@ -0,0 +1,128 @@
+package com.promixa.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * Streaming decoder for the worker protocol spoken by
+ * {@code whisper_script.py --worker}. Every frame is
+ * <pre>
+ *   u8 version | u8 type | u32 payload length (big-endian) | payload
+ * </pre>
+ * EVENT payloads are UTF-8 JSON. SEGMENT payloads are
+ * {@code i64 job | f64 start | f64 end | UTF-8 text}, so the most frequent
+ * message needs no JSON parsing at all.
+ * <p>
+ * The payload buffer is reused from frame to frame and only grows when a
+ * larger frame arrives; one that grew past {@link #RETAINED_BUFFER_BYTES}
+ * is dropped after use so a single huge frame does not pin memory.
+ * Not thread-safe: one decoder per worker stream.
+ */
+public class FrameDecoder {
+
+    public static final int PROTOCOL_VERSION = 3;
+    public static final int FRAME_EVENT = 1;
+    public static final int FRAME_SEGMENT = 2;
+
+    private static final int HEADER_BYTES = 6;
+    private static final int SEGMENT_HEADER_BYTES = 24;
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+    private static final int RETAINED_BUFFER_BYTES = 1024 * 1024;
+    private static final int MAX_FRAME_BYTES = 256 * 1024 * 1024;
+
+    private final InputStream in;
+    private final byte[] header = new byte[HEADER_BYTES];
+    private byte[] payload = new byte[INITIAL_BUFFER_BYTES];
+    private ByteBuffer payloadView = ByteBuffer.wrap(payload);
+    private int type;
+    private int length;
+
+    public FrameDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return {@code false} at a clean end of stream between frames
+     * @throws IOException on a truncated frame or a protocol version mismatch
+     */
+    public boolean next() throws IOException {
+        if (payload.length > RETAINED_BUFFER_BYTES) {
+            setBuffer(new byte[INITIAL_BUFFER_BYTES]);
+        }
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        header[0] = (byte) first;
+        readFully(header, 1, HEADER_BYTES - 1);
+
+        int version = header[0] & 0xFF;
+        if (version != PROTOCOL_VERSION) {
+            throw new IOException("Worker speaks protocol version " + version + " but " + PROTOCOL_VERSION
+                    + " is expected. Is whisper_script.py up to date?");
+        }
+        type = header[1] & 0xFF;
+        length = ((header[2] & 0xFF) << 24) | ((header[3] & 0xFF) << 16) | ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Worker sent a frame of " + Integer.toUnsignedString(length) + " bytes.");
+        }
+        if (length > payload.length) {
+            setBuffer(new byte[Math.max(length, Math.min(MAX_FRAME_BYTES, payload.length * 2))]);
+        }
+        readFully(payload, 0, length);
+        return true;
+    }
+
+    /** Type of the current frame, one of the {@code FRAME_} constants. */
+    public int type() {
+        return type;
+    }
+
+    public int payloadLength() {
+        return length;
+    }
+
+    /** Parses the current EVENT frame. */
+    public JsonObject event() {
+        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(payload, 0, length))) {
+            return reader.readObject();
+        }
+    }
+
+    /** Job id of the current SEGMENT frame, readable without decoding its text. */
+    public long segmentJob() {
+        return payloadView.getLong(0);
+    }
+
+    /** Decodes the current SEGMENT frame. */
+    public Segment segment() {
+        return new Segment(payloadView.getDouble(8), payloadView.getDouble(16),
+                new String(payload, SEGMENT_HEADER_BYTES, length - SEGMENT_HEADER_BYTES, StandardCharsets.UTF_8));
+    }
+
+    private void setBuffer(byte[] buffer) {
+        payload = buffer;
+        payloadView = ByteBuffer.wrap(buffer);
+    }
+
+    private void readFully(byte[] target, int offset, int count) throws IOException {
+        while (count > 0) {
+            int read = in.read(target, offset, count);
+            if (read < 0) {
+                throw new EOFException("Worker output ended in the middle of a frame.");
+            }
+            offset += read;
+            count -= read;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.promixa.engine;
+
+import com.promixa.metrics.TranscriptionJobEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings collected for one job while it runs. Written from the job's thread
+ * and, for chunked jobs, from its chunk threads.
+ */
+public class JobMetrics {
+
+    private final long createdNanos = System.nanoTime();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(JobPhase.values().length);
+    private final AtomicLong workerRssBytes = new AtomicLong();
+    private final TranscriptionJobEvent event = new TranscriptionJobEvent();
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile boolean cacheHit;
+
+    /** Adds time to a phase; repeated phases, such as one per chunk, accumulate. */
+    public void add(JobPhase phase, long nanos) {
+        if (nanos > 0) {
+            phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+    }
+
+    public long get(JobPhase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /** Keeps the largest resident size reported by any worker the job ran on. */
+    public void recordWorkerRss(long bytes) {
+        workerRssBytes.accumulateAndGet(bytes, Math::max);
+    }
+
+    public long getWorkerRssBytes() {
+        return workerRssBytes.get();
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /** Wall time from start to finish, or 0 unless the job ran and finished. */
+    public long getRunNanos() {
+        return finishedNanos > 0 && startedNanos > 0 ? finishedNanos - startedNanos : 0;
+    }
+
+    void markStarted() {
+        startedNanos = System.nanoTime();
+        add(JobPhase.QUEUE_WAIT, startedNanos - createdNanos);
+        event.begin();
+    }
+
+    void markCacheHit() {
+        cacheHit = true;
+    }
+
+    void markFinished() {
+        finishedNanos = System.nanoTime();
+        event.end();
+    }
+
+    TranscriptionJobEvent event() {
+        return event;
+    }
+}
@@ -0,0 +1,99 @@
+package com.promixa.engine;
+
+import com.promixa.metrics.MetricsRegistry;
+import com.promixa.metrics.TranscriptionJobEvent;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes a finished job's timings: into the metrics registry, as a Flight
+ * Recorder event and as one log line on the {@code com.promixa.metrics}
+ * logger.
+ */
+final class JobMetricsRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger("com.promixa.metrics");
+
+    private final MetricsRegistry registry;
+
+    JobMetricsRecorder(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    void jobFinished(TranscriptionJob job) {
+        JobMetrics metrics = job.getMetrics();
+        String outcome = job.getState().name().toLowerCase(Locale.ROOT);
+        registry.increment("jobs." + outcome);
+        long runNanos = metrics.getRunNanos();
+        if (runNanos == 0) {
+            // Cancelled while still queued
+            return;
+        }
+        if (metrics.isCacheHit()) {
+            registry.increment("jobs.cache_hits");
+        }
+
+        StringBuilder line = new StringBuilder()
+                .append("job=").append(job.getId())
+                .append(" file=").append(job.getAudioFile().getName())
+                .append(" model=").append(job.getModel())
+                .append(" outcome=").append(outcome)
+                .append(" run_ms=").append(runNanos / 1_000_000);
+        registry.record("job.run_seconds", "s", runNanos / 1e9);
+        for (JobPhase phase : JobPhase.values()) {
+            long nanos = metrics.get(phase);
+            if (nanos > 0 || phase == JobPhase.QUEUE_WAIT) {
+                registry.record("job." + phase.metricName() + "_seconds", "s", nanos / 1e9);
+                line.append(' ').append(phase.metricName()).append("_ms=").append(nanos / 1_000_000);
+            }
+        }
+
+        double audioSeconds = 0;
+        double realtimeFactor = 0;
+        TranscriptionResult result = job.getResult();
+        if (result != null && result.getAudioSeconds() > 0) {
+            audioSeconds = result.getAudioSeconds();
+            registry.record("job.audio_seconds", "s", audioSeconds);
+            if (!metrics.isCacheHit()) {
+                realtimeFactor = audioSeconds / (runNanos / 1e9);
+                registry.record("job.realtime_factor", "x", realtimeFactor);
+            }
+            line.append(String.format(Locale.ROOT, " audio_s=%.1f rtf=%.2f", audioSeconds, realtimeFactor));
+        }
+        long rss = metrics.getWorkerRssBytes();
+        if (rss > 0) {
+            registry.record("worker.rss_mb", "MB", rss / (1024.0 * 1024.0));
+            line.append(" worker_rss_mb=").append(rss / (1024 * 1024));
+        }
+        LOG.info("{}", line);
+
+        TranscriptionJobEvent event = metrics.event();
+        if (event.shouldCommit()) {
+            event.jobId = job.getId();
+            event.file = job.getAudioFile().getName();
+            event.model = job.getModel();
+            event.outcome = outcome;
+            event.chunked = job.getOptions().isChunked();
+            event.cacheHit = metrics.isCacheHit();
+            event.queueWait = metrics.get(JobPhase.QUEUE_WAIT);
+            event.spawn = metrics.get(JobPhase.SPAWN);
+            event.modelLoad = metrics.get(JobPhase.MODEL_LOAD);
+            event.audioDecode = metrics.get(JobPhase.AUDIO_DECODE);
+            event.inference = metrics.get(JobPhase.INFERENCE);
+            event.postProcess = metrics.get(JobPhase.POST_PROCESS);
+            event.audioSeconds = audioSeconds;
+            event.realtimeFactor = realtimeFactor;
+            event.workerRss = rss;
+            event.commit();
+        }
+    }
+
+    /** Time spent writing a finished job's transcript out. */
+    void saved(TranscriptionJob job, long nanos) {
+        job.getMetrics().add(JobPhase.SAVE, nanos);
+        registry.record("job.save_seconds", "s", nanos / 1e9);
+    }
+}
@@ -0,0 +1,27 @@
+package com.promixa.engine;
+
+/**
+ * Where a job's time goes. Worker-side phases are measured by the worker and
+ * reported with its result; for chunked jobs they are summed over chunks, so
+ * they can add up to more than the job's wall time.
+ */
+public enum JobPhase {
+    QUEUE_WAIT("queue_wait"),
+    SPAWN("spawn"),
+    MODEL_LOAD("model_load"),
+    AUDIO_DECODE("audio_decode"),
+    INFERENCE("inference"),
+    POST_PROCESS("post_process"),
+    SAVE("save");
+
+    private final String metricName;
+
+    JobPhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /** Short name used in metrics and log lines. */
+    public String metricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,141 @@
+package com.promixa.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides which models stay loaded in the worker pool. Each worker may keep up
+ * to {@link #getMaxModelsPerWorker()} models, so switching between e.g. a
+ * draft and a final model does not reload either, and all resident models
+ * together must fit {@link #getMemoryBudgetBytes()}. When a load would break
+ * either limit, the least recently used models are released first.
+ * <p>
+ * Defaults can be set with the {@code promixa.maxModels} and
+ * {@code promixa.modelMemoryMb} system properties.
+ */
+public class ModelResidency {
+
+    public static final int DEFAULT_MAX_MODELS_PER_WORKER = 2;
+
+    private static final long MB = 1024L * 1024L;
+
+    /** A model to release from a worker before another one is loaded. */
+    public static final class Eviction {
+        private final WhisperWorker worker;
+        private final String model;
+
+        Eviction(WhisperWorker worker, String model) {
+            this.worker = worker;
+            this.model = model;
+        }
+
+        public WhisperWorker getWorker() {
+            return worker;
+        }
+
+        public String getModel() {
+            return model;
+        }
+    }
+
+    private volatile int maxModelsPerWorker;
+    private volatile long memoryBudgetBytes;
+
+    public ModelResidency() {
+        this(Integer.getInteger("promixa.maxModels", DEFAULT_MAX_MODELS_PER_WORKER),
+                Long.getLong("promixa.modelMemoryMb", 0L) * MB);
+    }
+
+    /**
+     * @param memoryBudgetBytes budget for all resident models; 0 or less uses
+     *                          {@link PoolSizing#modelMemoryBudget()}
+     */
+    public ModelResidency(int maxModelsPerWorker, long memoryBudgetBytes) {
+        setMaxModelsPerWorker(maxModelsPerWorker);
+        setMemoryBudgetBytes(memoryBudgetBytes);
+    }
+
+    public int getMaxModelsPerWorker() {
+        return maxModelsPerWorker;
+    }
+
+    public void setMaxModelsPerWorker(int maxModelsPerWorker) {
+        this.maxModelsPerWorker = Math.max(1, maxModelsPerWorker);
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes > 0 ? memoryBudgetBytes : PoolSizing.modelMemoryBudget();
+    }
+
+    /** Estimated memory held by the models resident in {@code workers}. */
+    public static long residentBytes(Collection<WhisperWorker> workers) {
+        long bytes = 0;
+        for (WhisperWorker worker : workers) {
+            for (String model : worker.getResidentModels()) {
+                bytes += PoolSizing.modelMemoryBytes(model);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Plans the releases needed before {@code model} is loaded into
+     * {@code target}. Only {@code target} and the idle workers are candidates;
+     * models in busy workers count against the budget but cannot be released
+     * mid-job. If the budget cannot be met the model is loaded anyway, since
+     * the job needs it.
+     *
+     * @param busyBytes estimated memory of the models resident in busy workers
+     */
+    public List<Eviction> planLoad(WhisperWorker target, String model, Collection<WhisperWorker> idleWorkers,
+                                   long busyBytes) {
+        List<Eviction> evictions = new ArrayList<>();
+        if (target.hasModel(model)) {
+            return evictions;
+        }
+
+        List<Eviction> candidates = new ArrayList<>();
+        for (String resident : target.getResidentModels()) {
+            candidates.add(new Eviction(target, resident));
+        }
+        for (WhisperWorker worker : idleWorkers) {
+            if (worker != target) {
+                for (String resident : worker.getResidentModels()) {
+                    candidates.add(new Eviction(worker, resident));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(e -> e.getWorker().getModelLastUsed(e.getModel())));
+
+        long used = busyBytes + residentBytes(List.of(target)) + PoolSizing.modelMemoryBytes(model);
+        for (WhisperWorker worker : idleWorkers) {
+            if (worker != target) {
+                used += residentBytes(List.of(worker));
+            }
+        }
+        int targetModels = target.getResidentModels().size();
+        for (Eviction candidate : candidates) {
+            boolean overBudget = used > memoryBudgetBytes;
+            boolean targetFull = targetModels >= maxModelsPerWorker;
+            if (!overBudget && !targetFull) {
+                break;
+            }
+            if (!overBudget && candidate.getWorker() != target) {
+                // Only the target's own models help it make room
+                continue;
+            }
+            evictions.add(candidate);
+            used -= PoolSizing.modelMemoryBytes(candidate.getModel());
+            if (candidate.getWorker() == target) {
+                targetModels--;
+            }
+        }
+        return evictions;
+    }
+}
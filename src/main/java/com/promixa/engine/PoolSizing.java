@@ -0,0 +1,88 @@
+package com.promixa.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Works out how many Whisper workers this machine can run side by side and
+ * how many torch threads each of them should get.
+ */
+public final class PoolSizing {
+
+    private static final long GB = 1024L * 1024L * 1024L;
+
+    /** Don't hand more than this share of free memory to workers. */
+    private static final double MEMORY_HEADROOM = 0.8;
+
+    /** Below this many torch threads a worker gets slower than splitting is worth. */
+    private static final int MIN_THREADS_PER_WORKER = 2;
+
+    private PoolSizing() {
+    }
+
+    /**
+     * Approximate resident size of a worker with the given model loaded,
+     * based on the memory requirements published for the Whisper models.
+     */
+    public static long modelMemoryBytes(String model) {
+        switch (model) {
+            case "tiny":
+            case "base":
+                return GB;
+            case "small":
+                return 2 * GB;
+            case "medium":
+                return 5 * GB;
+            case "large":
+                return 10 * GB;
+            default:
+                return 2 * GB;
+        }
+    }
+
+    /**
+     * Memory the pool may fill with resident models by default: the usual
+     * share of what is free right now.
+     */
+    public static long modelMemoryBudget() {
+        return (long) (freeMemoryBytes() * MEMORY_HEADROOM);
+    }
+
+    /**
+     * Number of workers that fit both the cores and the free memory for the model.
+     */
+    public static int recommendedWorkers(String model) {
+        int byCores = Math.max(1, availableCores() / MIN_THREADS_PER_WORKER);
+        return Math.min(byCores, workersFittingMemory(model));
+    }
+
+    /**
+     * Number of workers with the model loaded that fit the free memory,
+     * however many cores there are.
+     */
+    public static int workersFittingMemory(String model) {
+        return (int) Math.max(1, modelMemoryBudget() / modelMemoryBytes(model));
+    }
+
+    /**
+     * Torch threads each worker should use when {@code workers} share the machine.
+     */
+    public static int threadsPerWorker(int workers) {
+        return Math.max(1, availableCores() / Math.max(1, workers));
+    }
+
+    public static int availableCores() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Free physical memory, or the JVM's max heap if the platform bean can't tell.
+     */
+    public static long freeMemoryBytes() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getFreeMemorySize();
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+}
@@ -0,0 +1,133 @@
+package com.promixa.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns a {@link Calibration} into a plan for a batch of files: which of the
+ * measured worker and thread splits finishes the whole batch first, and when.
+ * A few long files finish sooner on fewer, wider workers; many short ones on
+ * as many workers as fit.
+ */
+public final class QueuePlanner {
+
+    /** Worker and thread split for a batch and how long the batch should take. */
+    public static final class Plan {
+        private final String model;
+        private final int workers;
+        private final int threads;
+        private final double estimatedSeconds;
+
+        public Plan(String model, int workers, int threads, double estimatedSeconds) {
+            this.model = model;
+            this.workers = workers;
+            this.threads = threads;
+            this.estimatedSeconds = estimatedSeconds;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /** Wall seconds until the last file of the batch is done. */
+        public double getEstimatedSeconds() {
+            return estimatedSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d worker(s) x %d thread(s), about %s", workers, threads,
+                    formatDuration(estimatedSeconds));
+        }
+    }
+
+    private QueuePlanner() {
+    }
+
+    /**
+     * Picks the measured split of {@code model} that finishes
+     * {@code audioSeconds} soonest. Lengths below zero are unknown and
+     * counted as the average of the known ones.
+     *
+     * @return the plan, or {@code null} if the model was not calibrated
+     */
+    public static Plan plan(Calibration calibration, String model, List<Double> audioSeconds) {
+        double[] lengths = withUnknownsAveraged(audioSeconds);
+        Plan best = null;
+        for (Calibration.Measurement measurement : calibration.getMeasurements(model)) {
+            double seconds = makespan(lengths, measurement.getWorkers(), measurement.getJobSpeed());
+            if (best == null || seconds < best.getEstimatedSeconds()) {
+                best = new Plan(model, measurement.getWorkers(), measurement.getThreads(), seconds);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Wall seconds {@code workers} workers running at {@code jobSpeed} need
+     * for jobs of the given audio lengths, taking them longest first, each
+     * as soon as a worker is free.
+     */
+    public static double makespan(double[] audioSeconds, int workers, double jobSpeed) {
+        if (jobSpeed <= 0) {
+            return 0;
+        }
+        double[] freeAt = new double[Math.max(1, workers)];
+        double[] lengths = audioSeconds.clone();
+        Arrays.sort(lengths);
+        for (int i = lengths.length - 1; i >= 0; i--) {
+            int worker = 0;
+            for (int w = 1; w < freeAt.length; w++) {
+                if (freeAt[w] < freeAt[worker]) {
+                    worker = w;
+                }
+            }
+            freeAt[worker] += lengths[i] / jobSpeed;
+        }
+        double end = 0;
+        for (double time : freeAt) {
+            end = Math.max(end, time);
+        }
+        return end;
+    }
+
+    /** The lengths as an array, with unknown (negative) ones replaced by the average of the known. */
+    static double[] withUnknownsAveraged(List<Double> audioSeconds) {
+        double known = 0;
+        int knownCount = 0;
+        for (double seconds : audioSeconds) {
+            if (seconds >= 0) {
+                known += seconds;
+                knownCount++;
+            }
+        }
+        double average = knownCount > 0 ? known / knownCount : 0;
+        double[] lengths = new double[audioSeconds.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            double seconds = audioSeconds.get(i);
+            lengths[i] = seconds >= 0 ? seconds : average;
+        }
+        return lengths;
+    }
+
+    /** "45s", "12m 05s" or "3h 20m". */
+    public static String formatDuration(double seconds) {
+        long total = Math.round(seconds);
+        if (total < 60) {
+            return total + "s";
+        }
+        if (total < 3600) {
+            return String.format(Locale.ROOT, "%dm %02ds", total / 60, total % 60);
+        }
+        return String.format(Locale.ROOT, "%dh %02dm", total / 3600, total % 3600 / 60);
+    }
+}
@@ -0,0 +1,57 @@
+package com.promixa.engine;
+
+/**
+ * Aggregate throughput of a {@link TranscriptionQueue}. Wall time only counts
+ * periods in which at least one job was running.
+ */
+public class QueueStats {
+
+    private final int completed;
+    private final int running;
+    private final int queued;
+    private final double audioSeconds;
+    private final double wallSeconds;
+
+    public QueueStats(int completed, int running, int queued, double audioSeconds, double wallSeconds) {
+        this.completed = completed;
+        this.running = running;
+        this.queued = queued;
+        this.audioSeconds = audioSeconds;
+        this.wallSeconds = wallSeconds;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public double getAudioSeconds() {
+        return audioSeconds;
+    }
+
+    public double getWallSeconds() {
+        return wallSeconds;
+    }
+
+    public double getFilesPerMinute() {
+        return wallSeconds > 0 ? completed * 60.0 / wallSeconds : 0;
+    }
+
+    /** Seconds of audio transcribed per second of wall time. */
+    public double getAudioSecondsPerWallSecond() {
+        return wallSeconds > 0 ? audioSeconds / wallSeconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d done, %d running, %d queued | %.1f files/min | %.2fx realtime",
+                completed, running, queued, getFilesPerMinute(), getAudioSecondsPerWallSecond());
+    }
+}
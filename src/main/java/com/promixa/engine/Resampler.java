@@ -0,0 +1,161 @@
+package com.promixa.engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming sample rate converter using a windowed-sinc (Blackman) low-pass
+ * filter, so downsampling to 16 kHz does not fold higher frequencies into the
+ * speech band. Filter coefficients are precomputed for up to
+ * {@value #MAX_PHASES} fractional positions; ratios needing more are rounded
+ * to the nearest of those, which is far below what Whisper can hear.
+ */
+final class Resampler {
+
+    /** Receives converted samples; the array is reused after the call returns. */
+    @FunctionalInterface
+    interface Output {
+        void write(float[] samples, int count) throws IOException;
+    }
+
+    /** Filter length in zero crossings of the sinc on each side. */
+    private static final int ZERO_CROSSINGS = 16;
+    private static final int MAX_PHASES = 1024;
+    private static final int OUTPUT_BLOCK = 8192;
+
+    private final int up;
+    private final int down;
+    private final int half;
+    private final int phases;
+    private final float[][] coefficients;
+    private final Output output;
+    private final float[] outBlock = new float[OUTPUT_BLOCK];
+    private int outCount;
+
+    /** Input samples; {@code buffer[0]} is input index {@code bufferStart}. */
+    private float[] buffer = new float[OUTPUT_BLOCK * 2];
+    private int buffered;
+    private long bufferStart;
+    private long inputCount;
+    private long nextOutput;
+
+    Resampler(int inputRate, int outputRate, Output output) {
+        int gcd = gcd(inputRate, outputRate);
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        this.output = output;
+        // Cut off at the lower of the two Nyquist frequencies
+        double cutoff = Math.min(1.0, (double) up / down);
+        this.half = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        this.phases = Math.min(up, MAX_PHASES);
+        this.coefficients = new float[phases][2 * half];
+        for (int phase = 0; phase < phases; phase++) {
+            double fraction = (double) phase / phases;
+            for (int tap = 0; tap < 2 * half; tap++) {
+                // Distance in input samples from the output position to this tap
+                double x = fraction + half - 1 - tap;
+                coefficients[phase][tap] = (float) (cutoff * sinc(cutoff * x) * blackman(x / half));
+            }
+        }
+        // Taps before the first sample read as silence
+        this.bufferStart = -half;
+        this.buffered = half;
+    }
+
+    /** True when the rates are equal and samples pass through unchanged. */
+    boolean isIdentity() {
+        return up == down;
+    }
+
+    /** Converts the first {@code count} of {@code samples}. */
+    void write(float[] samples, int count) throws IOException {
+        inputCount += count;
+        if (isIdentity()) {
+            output.write(samples, count);
+            return;
+        }
+        ensureCapacity(buffered + count);
+        System.arraycopy(samples, 0, buffer, buffered, count);
+        buffered += count;
+        convert(Long.MAX_VALUE);
+    }
+
+    /** Converts what is left, reading silence past the end, and flushes. */
+    void finish() throws IOException {
+        if (!isIdentity()) {
+            ensureCapacity(buffered + half + 1);
+            Arrays.fill(buffer, buffered, buffered + half + 1, 0f);
+            buffered += half + 1;
+            convert((inputCount * up + down - 1) / down);
+        }
+        flushOutput();
+    }
+
+    /**
+     * Produces outputs while all their taps are buffered, up to
+     * {@code limit} outputs in total, then drops input no longer needed.
+     */
+    private void convert(long limit) throws IOException {
+        long available = bufferStart + buffered;
+        while (nextOutput < limit) {
+            long position = nextOutput * down;
+            long base = position / up;
+            if (base + half >= available) {
+                break;
+            }
+            int phase = phases == up
+                    ? (int) (position % up)
+                    : (int) ((position % up) * phases / up);
+            float[] taps = coefficients[phase];
+            int first = (int) (base - half + 1 - bufferStart);
+            float sum = 0f;
+            for (int tap = 0; tap < taps.length; tap++) {
+                sum += buffer[first + tap] * taps[tap];
+            }
+            outBlock[outCount++] = sum;
+            if (outCount == outBlock.length) {
+                flushOutput();
+            }
+            nextOutput++;
+        }
+        long keepFrom = nextOutput * down / up - half + 1;
+        int drop = (int) Math.max(0, Math.min(buffered, keepFrom - bufferStart));
+        if (drop > 0) {
+            System.arraycopy(buffer, drop, buffer, 0, buffered - drop);
+            buffered -= drop;
+            bufferStart += drop;
+        }
+    }
+
+    private void flushOutput() throws IOException {
+        if (outCount > 0) {
+            output.write(outBlock, outCount);
+            outCount = 0;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1.0;
+        }
+        double pix = Math.PI * x;
+        return Math.sin(pix) / pix;
+    }
+
+    private static double blackman(double x) {
+        if (Math.abs(x) >= 1) {
+            return 0;
+        }
+        return 0.42 + 0.5 * Math.cos(Math.PI * x) + 0.08 * Math.cos(2 * Math.PI * x);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,50 @@
+package com.promixa.engine;
+
+import java.util.Locale;
+
+/**
+ * One timestamped piece of a transcript as decoded by Whisper.
+ */
+public class Segment {
+
+    private final double start;
+    private final double end;
+    private final String text;
+
+    public Segment(double start, double end, String text) {
+        this.start = start;
+        this.end = end;
+        this.text = text;
+    }
+
+    /** Start of the segment in seconds from the beginning of the audio. */
+    public double getStart() {
+        return start;
+    }
+
+    /** End of the segment in seconds from the beginning of the audio. */
+    public double getEnd() {
+        return end;
+    }
+
+    /** Segment text as produced by Whisper, usually with a leading space. */
+    public String getText() {
+        return text;
+    }
+
+    /** Formats seconds as {@code m:ss}, or {@code h:mm:ss} from an hour on. */
+    public static String formatTime(double seconds) {
+        long total = (long) seconds;
+        long hours = total / 3600;
+        long minutes = total % 3600 / 60;
+        long secs = total % 60;
+        return hours > 0
+                ? String.format(Locale.ROOT, "%d:%02d:%02d", hours, minutes, secs)
+                : String.format(Locale.ROOT, "%d:%02d", minutes, secs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%.2f --> %.2f]%s", start, end, text);
+    }
+}
@@ -0,0 +1,88 @@
+package com.promixa.engine;
+
+import com.promixa.checkpoint.JobJournal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcribes a job in one pass on a pooled worker, recording each segment
+ * in the job's journal as it arrives. When the journal already holds
+ * segments from an interrupted run, they are replayed to the listener and
+ * the worker only transcribes the audio after the last of them.
+ */
+class SequentialTranscriber {
+
+    /** Stand-in end of the audio when its length cannot be read; the worker stops at the real end. */
+    private static final double UNKNOWN_END_SECONDS = 24 * 3600.0;
+
+    private final WorkerManager workerManager;
+
+    SequentialTranscriber(WorkerManager workerManager) {
+        this.workerManager = workerManager;
+    }
+
+    /**
+     * @param journal where progress is recorded and resumed from, or {@code null}
+     */
+    TranscriptionResult transcribe(TranscriptionJob job, TranscriptionListener listener, JobJournal journal)
+            throws IOException {
+        if (journal == null) {
+            return workerManager.transcribe(job, listener);
+        }
+        TranscriptionListener journaling = new TranscriptionListener() {
+            @Override
+            public void onProgress(String message, String status) {
+                listener.onProgress(message, status);
+            }
+
+            @Override
+            public void onSegment(Segment segment) {
+                journal.addSegment(segment);
+                listener.onSegment(segment);
+            }
+
+            @Override
+            public void onPhase(JobPhase phase, long nanos) {
+                listener.onPhase(phase, nanos);
+            }
+
+            @Override
+            public void onWorkerMemory(long rssBytes) {
+                listener.onWorkerMemory(rssBytes);
+            }
+        };
+        List<Segment> recovered = journal.getSegments();
+        if (recovered.isEmpty()) {
+            return workerManager.transcribe(job, journaling);
+        }
+
+        double resumeAt = recovered.get(recovered.size() - 1).getEnd();
+        double duration = job.getDecodedAudio() != null
+                ? job.getDecodedAudio().getSeconds()
+                : AudioDecoder.durationSeconds(job.getAudioFile());
+        for (Segment segment : recovered) {
+            listener.onSegment(segment);
+        }
+        listener.onProgress("Resuming at " + Segment.formatTime(resumeAt) + " from the last checkpoint...", "working");
+
+        List<Segment> segments = new ArrayList<>(recovered);
+        String model = job.getModel();
+        double processingSeconds = 0;
+        // Nothing but trailing silence may be left
+        if (duration <= 0 || duration - resumeAt > 1.0) {
+            TranscriptionResult rest = workerManager.transcribeRange(job, resumeAt,
+                    duration > 0 ? duration : UNKNOWN_END_SECONDS, journaling);
+            segments.addAll(rest.getSegments());
+            model = rest.getModel();
+            processingSeconds = rest.getProcessingSeconds();
+        }
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : segments) {
+            text.append(segment.getText());
+        }
+        double audioSeconds = duration > 0 ? duration : segments.get(segments.size() - 1).getEnd();
+        return new TranscriptionResult(text.toString().strip(), segments, model, audioSeconds, processingSeconds);
+    }
+}
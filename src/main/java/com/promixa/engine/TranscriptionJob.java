@@ -0,0 +1,270 @@
+package com.promixa.engine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One audio file waiting for, or going through, transcription. State fields are
+ * written by the thread running the job and may be read from any thread.
+ */
+public class TranscriptionJob {
+
+    public enum State {
+        QUEUED("Queued"),
+        RUNNING("Running"),
+        COMPLETED("Done"),
+        FAILED("Failed"),
+        CANCELLED("Cancelled");
+
+        private final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id = NEXT_ID.getAndIncrement();
+    private final File audioFile;
+    private final String model;
+    private final TranscriptionOptions options;
+    private final long queuedAt = System.currentTimeMillis();
+    private final List<Segment> segments = new ArrayList<>();
+    private final JobMetrics metrics = new JobMetrics();
+
+    private volatile State state = State.QUEUED;
+    private volatile String message = "";
+    private volatile TranscriptionResult result;
+    private volatile DecodedAudio decodedAudio;
+    private volatile String error;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile boolean cancelRequested;
+    private volatile String abortReason;
+    private volatile long runningSinceNanos;
+    private volatile long lastActivityNanos;
+
+    private final Set<WhisperWorker> workers = new HashSet<>();
+
+    public TranscriptionJob(File audioFile, String model, TranscriptionOptions options) {
+        this.audioFile = audioFile;
+        this.model = model;
+        this.options = options;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public File getAudioFile() {
+        return audioFile;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public TranscriptionOptions getOptions() {
+        return options;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** Latest progress message reported for this job. */
+    public String getMessage() {
+        return message;
+    }
+
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TranscriptionResult getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /** Samples decoded ahead for the worker, or {@code null} to let it decode the file. */
+    public DecodedAudio getDecodedAudio() {
+        return decodedAudio;
+    }
+
+    void setDecodedAudio(DecodedAudio decodedAudio) {
+        this.decodedAudio = decodedAudio;
+    }
+
+    /** Number of segments decoded so far. */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Segments decoded so far, starting at {@code fromIndex}. Lets a view
+     * append only what it has not shown yet.
+     */
+    public synchronized List<Segment> getSegments(int fromIndex) {
+        return new ArrayList<>(segments.subList(Math.min(fromIndex, segments.size()), segments.size()));
+    }
+
+    synchronized void addSegment(Segment segment) {
+        segments.add(segment);
+        markActive();
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /** Why the job was stopped by a timeout or a failed chunk, or {@code null}. */
+    public String getAbortReason() {
+        return abortReason;
+    }
+
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Notes a worker report of the given status for the no-progress timeout.
+     * The worker's once-a-second "working" tick comes from a thread of its
+     * own and keeps coming while the model hangs, so it does not count;
+     * model loading reports do, so a slow download is not taken for a hang.
+     */
+    void markProgress(String status) {
+        if (!"working".equals(status)) {
+            markActive();
+        }
+    }
+
+    /** Notes that the job made progress, for the no-progress timeout. */
+    void markActive() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /** Nanoseconds since the job started running. */
+    long runningNanos() {
+        return System.nanoTime() - runningSinceNanos;
+    }
+
+    /** Nanoseconds since the worker last reported progress or a segment. */
+    long inactiveNanos() {
+        return System.nanoTime() - lastActivityNanos;
+    }
+
+    void markRunning() {
+        metrics.markStarted();
+        startedAt = System.currentTimeMillis();
+        runningSinceNanos = System.nanoTime();
+        lastActivityNanos = runningSinceNanos;
+        state = State.RUNNING;
+    }
+
+    void markCompleted(TranscriptionResult result) {
+        markCompleted(result, "Transcription complete");
+    }
+
+    void markCompleted(TranscriptionResult result, String finalMessage) {
+        this.result = result;
+        finish(State.COMPLETED, finalMessage);
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        finish(State.FAILED, error);
+    }
+
+    void markCancelled() {
+        finish(State.CANCELLED, "Cancelled");
+    }
+
+    private void finish(State finalState, String finalMessage) {
+        metrics.markFinished();
+        finishedAt = System.currentTimeMillis();
+        message = finalMessage;
+        state = finalState;
+    }
+
+    /**
+     * Binds the job to a worker running it, or one of its chunks, so a cancel
+     * can stop that worker.
+     *
+     * @return {@code false} if the job was cancelled before it got the worker
+     */
+    synchronized boolean attach(WhisperWorker worker) {
+        if (cancelRequested) {
+            return false;
+        }
+        workers.add(worker);
+        // Time spent waiting for a free worker is not a stall
+        markActive();
+        return true;
+    }
+
+    synchronized void detach(WhisperWorker worker) {
+        workers.remove(worker);
+    }
+
+    /** True while at least one worker is running the job or one of its chunks. */
+    synchronized boolean hasWorkers() {
+        return !workers.isEmpty();
+    }
+
+    /**
+     * Flags the job as cancelled and kills every worker running it. Killed
+     * workers are replaced by the pool on the next job.
+     */
+    synchronized void requestCancel() {
+        cancelRequested = true;
+        for (WhisperWorker worker : workers) {
+            worker.kill();
+        }
+    }
+
+    /**
+     * Stops the job like {@link #requestCancel()}, but it ends as failed
+     * with {@code reason} rather than as cancelled, e.g. after a timeout or
+     * when one of its chunks failed.
+     */
+    synchronized void abort(String reason) {
+        if (!cancelRequested) {
+            abortReason = reason;
+            requestCancel();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return audioFile.getName() + " [" + state + "]";
+    }
+}
@@ -0,0 +1,38 @@
+package com.promixa.engine;
+
+/**
+ * Receives progress events and decoded segments reported by a Whisper worker
+ * while a job runs. Callbacks arrive on the thread that drives the job, never
+ * on the FX thread.
+ */
+@FunctionalInterface
+public interface TranscriptionListener {
+
+    TranscriptionListener NONE = (message, status) -> { };
+
+    /**
+     * Called for every progress event of the job.
+     *
+     * @param message human readable progress message
+     * @param status  event status such as "loading", "working" or "complete"
+     */
+    void onProgress(String message, String status);
+
+    /**
+     * Called as soon as the worker has decoded a segment, in audio order.
+     */
+    default void onSegment(Segment segment) {
+    }
+
+    /**
+     * Called when the worker reports time spent in a phase of the job.
+     */
+    default void onPhase(JobPhase phase, long nanos) {
+    }
+
+    /**
+     * Called with the worker's resident memory after a job, when known.
+     */
+    default void onWorkerMemory(long rssBytes) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.promixa.engine;
+
+import java.util.Objects;
+
+/**
+ * Decode options of a transcription job besides the audio file and model.
+ */
+public class TranscriptionOptions {
+
+    /** Auto-detected language, whole file in one pass. */
+    public static final TranscriptionOptions DEFAULT = new TranscriptionOptions(null, 0, 1);
+
+    private final String language;
+    private final int chunkSeconds;
+    private final int chunkParallelism;
+
+    /**
+     * @param language         language code, or {@code null} to let Whisper detect it
+     * @param chunkSeconds     target chunk length for long-file mode, or 0 to
+     *                         transcribe the file in a single pass
+     * @param chunkParallelism how many chunks of one file may be transcribed at once
+     */
+    public TranscriptionOptions(String language, int chunkSeconds, int chunkParallelism) {
+        this.language = language;
+        this.chunkSeconds = Math.max(0, chunkSeconds);
+        this.chunkParallelism = Math.max(1, chunkParallelism);
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /** Whether long files are split at silences and their chunks transcribed in parallel. */
+    public boolean isChunked() {
+        return chunkSeconds > 0;
+    }
+
+    public int getChunkSeconds() {
+        return chunkSeconds;
+    }
+
+    public int getChunkParallelism() {
+        return chunkParallelism;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TranscriptionOptions)) {
+            return false;
+        }
+        TranscriptionOptions other = (TranscriptionOptions) o;
+        return chunkSeconds == other.chunkSeconds
+                && chunkParallelism == other.chunkParallelism
+                && Objects.equals(language, other.language);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(language, chunkSeconds, chunkParallelism);
+    }
+
+    @Override
+    public String toString() {
+        return "language=" + (language == null ? "auto" : language)
+                + (isChunked() ? ", chunks=" + chunkSeconds + "s x" + chunkParallelism : "");
+    }
+}
@@ -0,0 +1,537 @@
+package com.promixa.engine;
+
+import com.promixa.cache.TranscriptCache;
+import com.promixa.checkpoint.CheckpointStore;
+import com.promixa.checkpoint.JobJournal;
+import com.promixa.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Ordered queue of transcription jobs run through a {@link WorkerManager} with
+ * bounded parallelism. Queued jobs can be reordered or cancelled; running jobs
+ * can be cancelled, which kills the workers they run on.
+ * <p>
+ * A watchdog fails running jobs that exceed the job timeout, or whose worker
+ * has reported neither progress nor a segment for the stall timeout (its
+ * "working" heartbeat does not count), so a hung model or decoder cannot
+ * hold a slot forever.
+ * <p>
+ * Jobs run on a pool of daemon threads no larger than the parallelism, so
+ * idle threads are reused between jobs and none keeps the JVM alive.
+ * <p>
+ * The queue only limits how many jobs run at once. The size of the worker
+ * pool is set on the {@link WorkerManager} by whoever owns both, since chunked
+ * jobs may use several workers each.
+ * <p>
+ * With a {@link CheckpointStore}, running jobs record their progress as
+ * they go. A job that fails or is cut off by the app closing continues from
+ * there the next time the same file is transcribed the same way; completed
+ * and cancelled jobs drop their journal.
+ */
+public class TranscriptionQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptionQueue.class);
+
+    /** Default limit on how long a worker may go without reporting anything. */
+    public static final long DEFAULT_STALL_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long WATCHDOG_INTERVAL_MS = 1000;
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    /**
+     * Notified whenever a job changes state or reports progress. Called from
+     * the thread running the job.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void jobUpdated(TranscriptionJob job);
+
+        /** Called for every segment as soon as a running job decodes it. */
+        default void segmentAdded(TranscriptionJob job, Segment segment) {
+        }
+    }
+
+    private final WorkerManager workerManager;
+    private final ChunkedTranscriber chunkedTranscriber;
+    private final SequentialTranscriber sequentialTranscriber;
+    private final JobMetricsRecorder metricsRecorder;
+    private volatile TranscriptCache cache;
+    private volatile AudioPreDecoder preDecoder;
+    private volatile CheckpointStore checkpoints;
+    private volatile boolean closed;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService watchdog;
+    private final ThreadPoolExecutor jobExecutor;
+    private volatile long jobTimeoutNanos;
+    private volatile long stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STALL_TIMEOUT_MS);
+
+    private final List<TranscriptionJob> jobs = new ArrayList<>();
+    private final List<TranscriptionJob> pending = new ArrayList<>();
+    private int parallelism;
+    private int running;
+
+    // Throughput bookkeeping: wall time only counts while at least one job runs
+    private long busySinceNanos;
+    private long busyNanos;
+    private int completedCount;
+    private double completedAudioSeconds;
+
+    public TranscriptionQueue(WorkerManager workerManager, int parallelism) {
+        this(workerManager, parallelism, new MetricsRegistry());
+    }
+
+    public TranscriptionQueue(WorkerManager workerManager, int parallelism, MetricsRegistry metrics) {
+        this.workerManager = workerManager;
+        this.chunkedTranscriber = new ChunkedTranscriber(workerManager);
+        this.sequentialTranscriber = new SequentialTranscriber(workerManager);
+        this.metricsRecorder = new JobMetricsRecorder(metrics);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.jobExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "transcription-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        jobExecutor.allowCoreThreadTimeOut(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "transcription-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        watchdog.scheduleWithFixedDelay(this::checkTimeouts, WATCHDOG_INTERVAL_MS, WATCHDOG_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        setParallelism(parallelism);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Enables the transcript cache: jobs whose audio, model and options match
+     * an earlier result complete immediately without a worker.
+     */
+    public void setCache(TranscriptCache cache) {
+        this.cache = cache;
+    }
+
+    public TranscriptCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Records the progress of every job that starts from now on in
+     * {@code checkpoints}, and resumes jobs that have a journal there.
+     */
+    public void setCheckpoints(CheckpointStore checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public CheckpointStore getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Decodes audio ahead on the given decoder: every running job and as many
+     * waiting ones as may run at once, in run order.
+     */
+    void setPreDecoder(AudioPreDecoder preDecoder) {
+        this.preDecoder = preDecoder;
+        prefetch();
+    }
+
+    /**
+     * Changes how many jobs may run at once. Extra capacity is used right away;
+     * a lower limit takes effect as running jobs finish.
+     */
+    public void setParallelism(int parallelism) {
+        int limit = Math.max(1, parallelism);
+        synchronized (this) {
+            this.parallelism = limit;
+            // The maximum may never drop below the core size, so the order depends on the direction
+            if (limit > jobExecutor.getMaximumPoolSize()) {
+                jobExecutor.setMaximumPoolSize(limit);
+                jobExecutor.setCorePoolSize(limit);
+            } else {
+                jobExecutor.setCorePoolSize(limit);
+                jobExecutor.setMaximumPoolSize(limit);
+            }
+        }
+        dispatch();
+    }
+
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets when running jobs are failed: {@code jobTimeoutMs} after they
+     * started, or after their worker has been silent for
+     * {@code stallTimeoutMs}. Zero or less turns a limit off.
+     */
+    public void setTimeouts(long jobTimeoutMs, long stallTimeoutMs) {
+        this.jobTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, jobTimeoutMs));
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, stallTimeoutMs));
+    }
+
+    /**
+     * Stops the watchdog and the job threads once they are idle. Jobs still
+     * running are left to the worker manager; queued jobs no longer start.
+     */
+    public void close() {
+        closed = true;
+        watchdog.shutdownNow();
+        jobExecutor.shutdown();
+    }
+
+    public TranscriptionJob submit(TranscriptionJob job) {
+        synchronized (this) {
+            jobs.add(job);
+            pending.add(job);
+        }
+        fireUpdated(job);
+        dispatch();
+        return job;
+    }
+
+    /** Snapshot of all jobs still tracked by the queue, in display order. */
+    public synchronized List<TranscriptionJob> getJobs() {
+        return Collections.unmodifiableList(new ArrayList<>(jobs));
+    }
+
+    public synchronized boolean isBusy() {
+        return running > 0 || !pending.isEmpty();
+    }
+
+    /**
+     * Blocks until no job is queued or running.
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (isBusy()) {
+            wait();
+        }
+    }
+
+    /**
+     * Moves a queued job {@code delta} places earlier (negative) or later
+     * (positive) among the jobs that have not started yet.
+     *
+     * @return {@code false} if the job is no longer waiting
+     */
+    public synchronized boolean move(TranscriptionJob job, int delta) {
+        int index = pending.indexOf(job);
+        if (index < 0) {
+            return false;
+        }
+        int target = Math.max(0, Math.min(pending.size() - 1, index + delta));
+        pending.remove(index);
+        pending.add(target, job);
+
+        // Keep the display order in step with the run order
+        jobs.removeAll(pending);
+        jobs.addAll(pending);
+        return true;
+    }
+
+    /**
+     * Cancels a job. A queued job is dropped from the run order; a running job
+     * has its worker killed, and a job about to start ends before it does.
+     */
+    public void cancel(TranscriptionJob job) {
+        boolean wasQueued;
+        synchronized (this) {
+            wasQueued = pending.remove(job);
+        }
+        if (wasQueued) {
+            AudioPreDecoder decoder = preDecoder;
+            if (decoder != null) {
+                decoder.release(job);
+            }
+            job.requestCancel();
+            job.markCancelled();
+            metricsRecorder.jobFinished(job);
+            fireUpdated(job);
+            synchronized (this) {
+                notifyAll();
+            }
+        } else if (!job.getState().isFinished()) {
+            // Already taken off the run order, but maybe not marked running yet
+            job.requestCancel();
+        }
+    }
+
+    /** Forgets all finished jobs. */
+    public synchronized void clearFinished() {
+        jobs.removeIf(job -> job.getState().isFinished());
+    }
+
+    public synchronized QueueStats getStats() {
+        long wallNanos = busyNanos + (running > 0 ? System.nanoTime() - busySinceNanos : 0);
+        return new QueueStats(completedCount, running, pending.size(), completedAudioSeconds, wallNanos / 1e9);
+    }
+
+    private void dispatch() {
+        while (true) {
+            TranscriptionJob next;
+            synchronized (this) {
+                if (running >= parallelism || pending.isEmpty()) {
+                    break;
+                }
+                next = pending.remove(0);
+                if (running++ == 0) {
+                    busySinceNanos = System.nanoTime();
+                }
+            }
+            AudioPreDecoder decoder = preDecoder;
+            if (decoder != null) {
+                // Ahead of the look-ahead decodes queued below
+                decoder.prefetch(next);
+            }
+            try {
+                jobExecutor.execute(() -> run(next));
+            } catch (RejectedExecutionException e) {
+                // Closed: fail the job as the worker manager would
+                if (decoder != null) {
+                    decoder.release(next);
+                }
+                next.markFailed("Transcription engine has been shut down.");
+                metricsRecorder.jobFinished(next);
+                synchronized (this) {
+                    if (--running == 0) {
+                        busyNanos += System.nanoTime() - busySinceNanos;
+                    }
+                    notifyAll();
+                }
+                fireUpdated(next);
+            }
+        }
+        prefetch();
+    }
+
+    /** Starts decoding the jobs that will run next. */
+    private void prefetch() {
+        AudioPreDecoder decoder = preDecoder;
+        if (decoder == null) {
+            return;
+        }
+        List<TranscriptionJob> next;
+        synchronized (this) {
+            next = new ArrayList<>(pending.subList(0, Math.min(parallelism, pending.size())));
+        }
+        for (TranscriptionJob job : next) {
+            decoder.prefetch(job);
+        }
+    }
+
+    /**
+     * Records time spent writing a finished job's transcript to disk.
+     */
+    public void recordSave(TranscriptionJob job, long nanos) {
+        metricsRecorder.saved(job, nanos);
+    }
+
+    private void checkTimeouts() {
+        long jobLimit = jobTimeoutNanos;
+        long stallLimit = stallTimeoutNanos;
+        if (jobLimit <= 0 && stallLimit <= 0) {
+            return;
+        }
+        List<TranscriptionJob> current;
+        synchronized (this) {
+            current = new ArrayList<>(jobs);
+        }
+        for (TranscriptionJob job : current) {
+            if (job.getState() != TranscriptionJob.State.RUNNING || job.isCancelRequested()) {
+                continue;
+            }
+            String reason = null;
+            if (jobLimit > 0 && job.runningNanos() > jobLimit) {
+                reason = "Timed out after " + describe(jobLimit);
+            } else if (stallLimit > 0 && job.hasWorkers() && job.inactiveNanos() > stallLimit) {
+                // Waiting for a free worker or for decoded audio is not a stall
+                reason = "No progress from the worker for " + describe(stallLimit);
+            }
+            if (reason != null) {
+                LOG.warn("Stopping job {} on {}: {}", job.getId(), job.getAudioFile(), reason);
+                job.abort(reason);
+            }
+        }
+    }
+
+    private static String describe(long nanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        return seconds % 60 == 0 ? seconds / 60 + " min" : seconds + " s";
+    }
+
+    private void run(TranscriptionJob job) {
+        MDC.put("job", String.valueOf(job.getId()));
+        job.markRunning();
+        fireUpdated(job);
+        CheckpointStore store = checkpoints;
+        JobJournal journal = null;
+        try {
+            // Cancelled between leaving the run order and starting
+            if (job.isCancelRequested()) {
+                job.markCancelled();
+                return;
+            }
+            String cacheKey = cacheKey(job);
+            TranscriptionResult cached = cacheKey != null ? cache.get(cacheKey) : null;
+            if (cached != null) {
+                for (Segment segment : cached.getSegments()) {
+                    job.addSegment(segment);
+                }
+                job.getMetrics().markCacheHit();
+                job.markCompleted(cached, "Loaded from cache");
+                recordCompleted(cached);
+                return;
+            }
+
+            TranscriptionListener jobListener = new TranscriptionListener() {
+                @Override
+                public void onProgress(String message, String status) {
+                    job.setMessage(message);
+                    job.markProgress(status);
+                    fireUpdated(job);
+                }
+
+                @Override
+                public void onSegment(Segment segment) {
+                    job.addSegment(segment);
+                    for (Listener listener : listeners) {
+                        listener.segmentAdded(job, segment);
+                    }
+                }
+
+                @Override
+                public void onPhase(JobPhase phase, long nanos) {
+                    job.getMetrics().add(phase, nanos);
+                    job.markActive();
+                }
+
+                @Override
+                public void onWorkerMemory(long rssBytes) {
+                    job.getMetrics().recordWorkerRss(rssBytes);
+                }
+            };
+            journal = openJournal(store, job);
+            AudioPreDecoder decoder = preDecoder;
+            if (decoder != null) {
+                job.setDecodedAudio(decoder.await(job, jobListener));
+            }
+            TranscriptionResult result = job.getOptions().isChunked()
+                    ? chunkedTranscriber.transcribe(job, jobListener, journal)
+                    : sequentialTranscriber.transcribe(job, jobListener, journal);
+            long postStarted = System.nanoTime();
+            if (cacheKey != null) {
+                cache.put(cacheKey, result);
+            }
+            if (journal != null) {
+                store.discard(journal);
+                journal = null;
+            }
+            job.getMetrics().add(JobPhase.POST_PROCESS, System.nanoTime() - postStarted);
+            job.markCompleted(result);
+            recordCompleted(result);
+        } catch (IOException | RuntimeException e) {
+            if (job.getAbortReason() != null) {
+                job.markFailed(job.getAbortReason());
+            } else if (job.isCancelRequested()) {
+                job.markCancelled();
+            } else {
+                job.markFailed(e.getMessage() != null ? e.getMessage() : e.toString());
+                LOG.warn("Transcription of {} failed: {}", job.getAudioFile(), job.getError());
+            }
+            if (journal != null) {
+                if (job.getState() == TranscriptionJob.State.CANCELLED) {
+                    store.discard(journal);
+                    journal = null;
+                } else if (!closed) {
+                    // Shutting down kills running jobs; those are resumed at the next launch
+                    journal.markFailed();
+                }
+            }
+        } finally {
+            if (journal != null) {
+                store.release(journal);
+            }
+            AudioPreDecoder decoder = preDecoder;
+            if (decoder != null) {
+                job.setDecodedAudio(null);
+                decoder.release(job);
+            }
+            metricsRecorder.jobFinished(job);
+            MDC.remove("job");
+            synchronized (this) {
+                if (--running == 0) {
+                    busyNanos += System.nanoTime() - busySinceNanos;
+                }
+            }
+            fireUpdated(job);
+            dispatch();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /** Counts a completed job towards the throughput stats, whether transcribed or cached. */
+    private synchronized void recordCompleted(TranscriptionResult result) {
+        completedCount++;
+        completedAudioSeconds += result.getAudioSeconds();
+    }
+
+    private JobJournal openJournal(CheckpointStore store, TranscriptionJob job) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            JobJournal journal = store.open(job.getAudioFile(), job.getModel(), job.getOptions());
+            if (journal != null && journal.hasProgress()) {
+                LOG.info("Resuming {} from its checkpoint", job.getAudioFile());
+            }
+            return journal;
+        } catch (IOException e) {
+            LOG.warn("Cannot checkpoint {}: {}", job.getAudioFile(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String cacheKey(TranscriptionJob job) {
+        TranscriptCache current = cache;
+        if (current == null) {
+            return null;
+        }
+        try {
+            return current.keyFor(job.getAudioFile().toPath(), job.getModel(), job.getOptions());
+        } catch (IOException e) {
+            LOG.warn("Cannot hash {} for the cache: {}", job.getAudioFile(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void fireUpdated(TranscriptionJob job) {
+        for (Listener listener : listeners) {
+            listener.jobUpdated(job);
+        }
+    }
+}
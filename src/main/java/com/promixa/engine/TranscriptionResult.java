@@ -0,0 +1,48 @@
+package com.promixa.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a finished transcription job.
+ */
+public class TranscriptionResult {
+
+    private final String text;
+    private final List<Segment> segments;
+    private final String model;
+    private final double audioSeconds;
+    private final double processingSeconds;
+
+    public TranscriptionResult(String text, List<Segment> segments, String model,
+                               double audioSeconds, double processingSeconds) {
+        this.text = text;
+        this.segments = Collections.unmodifiableList(segments);
+        this.model = model;
+        this.audioSeconds = audioSeconds;
+        this.processingSeconds = processingSeconds;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** Timestamped segments in audio order; empty if the worker sent none. */
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /** Length of the transcribed audio, or 0 if the worker could not tell. */
+    public double getAudioSeconds() {
+        return audioSeconds;
+    }
+
+    /** Wall-clock time the worker spent on the job, including any model load. */
+    public double getProcessingSeconds() {
+        return processingSeconds;
+    }
+}
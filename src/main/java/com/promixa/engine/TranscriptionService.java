@@ -0,0 +1,379 @@
+package com.promixa.engine;
+
+import com.promixa.cache.TranscriptCache;
+import com.promixa.checkpoint.CheckpointStore;
+import com.promixa.checkpoint.JobJournal;
+import com.promixa.export.AutoExporter;
+import com.promixa.export.ExportFormat;
+import com.promixa.metrics.MetricsRegistry;
+import com.promixa.search.TranscriptRecorder;
+import com.promixa.search.TranscriptStore;
+import com.promixa.watch.FolderWatcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The transcription engine without any UI: a pool of warm Whisper workers,
+ * the job queue in front of it and the optional transcript cache. The desktop
+ * app and the headless command line both drive it.
+ */
+public class TranscriptionService implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptionService.class);
+
+    /** Decoding is far cheaper than inference; two threads keep ahead of several workers. */
+    private static final int PRE_DECODE_THREADS = 2;
+
+    private final String device;
+    private final WorkerManager workerManager;
+    private final TranscriptionQueue queue;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private int chunkWorkers = 1;
+    private AutoExporter autoExporter;
+    private TranscriptRecorder transcriptRecorder;
+    private FolderWatcher folderWatcher;
+    private volatile Calibration calibration;
+    private final AudioPreDecoder preDecoder;
+
+    public TranscriptionService(String pythonExecutable, Supplier<Path> scriptLocator, String device) {
+        this.device = device;
+        this.workerManager = new WorkerManager(pythonExecutable, scriptLocator, device);
+        this.queue = new TranscriptionQueue(workerManager, PoolSizing.recommendedWorkers("base"), metrics);
+        updateWorkerLimit();
+        metrics.gauge("queue.running", () -> queue.getStats().getRunning());
+        metrics.gauge("queue.queued", () -> queue.getStats().getQueued());
+        metrics.gauge("workers.live", workerManager::getLiveWorkers);
+        metrics.gauge("workers.max", workerManager::getMaxWorkers);
+        metrics.gauge("models.resident", () -> workerManager.getResidentModels().size());
+        preDecoder = createPreDecoder();
+        if (preDecoder != null) {
+            queue.setPreDecoder(preDecoder);
+        }
+        // Defaults for the desktop app; the command lines take flags instead
+        queue.setTimeouts(TimeUnit.MINUTES.toMillis(Long.getLong("promixa.jobTimeoutMinutes", 0L)),
+                TimeUnit.MINUTES.toMillis(Long.getLong("promixa.stallTimeoutMinutes",
+                        TimeUnit.MILLISECONDS.toMinutes(TranscriptionQueue.DEFAULT_STALL_TIMEOUT_MS))));
+    }
+
+    /**
+     * Decoding in Java is on unless {@code -Dpromixa.predecode=false}; without
+     * a temporary folder the workers decode as before.
+     */
+    private static AudioPreDecoder createPreDecoder() {
+        if (!Boolean.parseBoolean(System.getProperty("promixa.predecode", "true"))) {
+            return null;
+        }
+        try {
+            return new AudioPreDecoder(Files.createTempDirectory("promixa-pcm"), PRE_DECODE_THREADS);
+        } catch (IOException e) {
+            LOG.warn("Audio pre-decoding disabled: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates a service using the interpreter, script and device given by
+     * {@link WhisperEnvironment}.
+     */
+    public static TranscriptionService createDefault() {
+        return new TranscriptionService(WhisperEnvironment.pythonExecutable(), WhisperEnvironment::locateScript,
+                WhisperEnvironment.device());
+    }
+
+    public TranscriptionQueue getQueue() {
+        return queue;
+    }
+
+    public WorkerManager getWorkerManager() {
+        return workerManager;
+    }
+
+    /** Counters and per-phase timings of the jobs this service has run. */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Fails jobs running longer than {@code jobTimeoutMs}, or whose worker
+     * stays silent for {@code stallTimeoutMs}; zero turns a limit off.
+     */
+    public void setTimeouts(long jobTimeoutMs, long stallTimeoutMs) {
+        queue.setTimeouts(jobTimeoutMs, stallTimeoutMs);
+    }
+
+    /**
+     * Turns on the on-disk transcript cache.
+     */
+    public void enableCache(Path directory, long maxBytes) throws IOException {
+        queue.setCache(new TranscriptCache(directory, maxBytes));
+    }
+
+    /**
+     * Checkpoints running jobs in {@code directory}, so a failed or
+     * interrupted job continues where it stopped when it runs again.
+     *
+     * @throws IOException if the folder cannot be created
+     */
+    public void enableCheckpoints(Path directory) throws IOException {
+        queue.setCheckpoints(new CheckpointStore(directory));
+    }
+
+    /**
+     * Queues again every job that was still running when the app last closed
+     * or crashed; each continues from its checkpoint.
+     *
+     * @return the queued jobs, empty without checkpoints
+     */
+    public List<TranscriptionJob> resumeInterrupted() {
+        CheckpointStore checkpoints = queue.getCheckpoints();
+        List<TranscriptionJob> resumed = new ArrayList<>();
+        if (checkpoints == null) {
+            return resumed;
+        }
+        for (JobJournal journal : checkpoints.interrupted()) {
+            LOG.info("Resuming interrupted transcription of {}", journal.getAudioFile());
+            resumed.add(submit(journal.getAudioFile(), journal.getModel(), journal.getOptions()));
+        }
+        return resumed;
+    }
+
+    /**
+     * Writes each completed job into {@code directory} in every one of
+     * {@code formats}, replacing any earlier auto-export.
+     *
+     * @throws IOException if the folder cannot be created
+     */
+    public synchronized AutoExporter enableAutoExport(Path directory, List<ExportFormat> formats) throws IOException {
+        AutoExporter exporter = new AutoExporter(directory, formats, queue, metrics);
+        disableAutoExport();
+        queue.addListener(exporter);
+        autoExporter = exporter;
+        return exporter;
+    }
+
+    public synchronized void disableAutoExport() {
+        if (autoExporter != null) {
+            queue.removeListener(autoExporter);
+            autoExporter = null;
+        }
+    }
+
+    /**
+     * Transcribes every recording that appears in {@code root} or below it
+     * with {@code model}, and writes each transcript in every one of
+     * {@code formats} into {@code outputDir}, or next to the recording if it
+     * is {@code null}. Recordings already transcribed, as remembered in
+     * {@code ledgerFile}, are skipped. Replaces any earlier watch.
+     *
+     * @throws IOException if the folder cannot be watched or the output folder created
+     */
+    public synchronized FolderWatcher watchFolder(Path root, Path ledgerFile, String model,
+                                                  TranscriptionOptions options, Path outputDir,
+                                                  List<ExportFormat> formats) throws IOException {
+        AutoExporter exporter = new AutoExporter(outputDir, formats, queue, metrics);
+        FolderWatcher watcher = new FolderWatcher(root, ledgerFile, queue, model, options, exporter,
+                FolderWatcher.DEFAULT_SETTLE_MS);
+        stopWatching();
+        try {
+            watcher.start();
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+        folderWatcher = watcher;
+        return watcher;
+    }
+
+    /** Stops watching the folder; recordings already queued still run and are written. */
+    public synchronized void stopWatching() {
+        if (folderWatcher != null) {
+            folderWatcher.close();
+            folderWatcher = null;
+        }
+    }
+
+    /** The watched folder's watcher, or {@code null}. */
+    public synchronized FolderWatcher getFolderWatcher() {
+        return folderWatcher;
+    }
+
+    /**
+     * Opens the transcript store in {@code directory} and adds every job that
+     * completes from now on to it.
+     *
+     * @throws IOException if the store cannot be opened
+     */
+    public synchronized TranscriptStore enableTranscriptStore(Path directory) throws IOException {
+        if (transcriptRecorder != null) {
+            throw new IllegalStateException("The transcript store is already open.");
+        }
+        transcriptRecorder = new TranscriptRecorder(new TranscriptStore(directory));
+        queue.addListener(transcriptRecorder);
+        return transcriptRecorder.getStore();
+    }
+
+    /** The open transcript store, or {@code null}. */
+    public synchronized TranscriptStore getTranscriptStore() {
+        return transcriptRecorder != null ? transcriptRecorder.getStore() : null;
+    }
+
+    /** The active auto-export, or {@code null}. */
+    public synchronized AutoExporter getAutoExporter() {
+        return autoExporter;
+    }
+
+    /**
+     * Loads models in the background ahead of the jobs that will use them.
+     *
+     * @see WorkerManager#preload(String...)
+     */
+    public void preloadModels(String... models) {
+        workerManager.preload(models);
+    }
+
+    /** How many models each worker may keep loaded, and their total memory. */
+    public ModelResidency getResidency() {
+        return workerManager.getResidency();
+    }
+
+    /** How many files are transcribed at once. */
+    public synchronized void setParallelism(int parallelism) {
+        queue.setParallelism(parallelism);
+        updateWorkerLimit();
+    }
+
+    /**
+     * How many workers a single chunked job may use. The pool is sized for
+     * whichever needs more workers: parallel files or the chunks of one file.
+     */
+    public synchronized void setChunkWorkers(int chunkWorkers) {
+        this.chunkWorkers = Math.max(1, chunkWorkers);
+        updateWorkerLimit();
+    }
+
+    /**
+     * Uses {@code calibration} for {@link #plan}; {@code null} forgets it.
+     */
+    public void setCalibration(Calibration calibration) {
+        this.calibration = calibration;
+    }
+
+    /**
+     * Uses the calibration saved in {@code file} if it was measured on this
+     * machine for this service's device.
+     *
+     * @return the calibration, or {@code null} if there is none that fits
+     */
+    public Calibration loadCalibration(Path file) {
+        Calibration loaded = Calibration.load(file, device);
+        calibration = loaded;
+        return loaded;
+    }
+
+    /** The calibration plans are based on, or {@code null}. */
+    public Calibration getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * Works out the fastest worker and thread split for transcribing
+     * {@code files} with {@code model} and how long it will take. Reads the
+     * length of every file, so call it off the FX thread.
+     *
+     * @return the plan, or {@code null} without a calibration of the model
+     */
+    public QueuePlanner.Plan plan(String model, List<File> files) {
+        Calibration current = calibration;
+        if (current == null) {
+            return null;
+        }
+        return QueuePlanner.plan(current, model, lengths(files));
+    }
+
+    /**
+     * Seconds until {@code files} are transcribed with {@code model} at the
+     * current parallelism, ignoring jobs already queued; -1 without a
+     * calibration of the model.
+     */
+    public double estimate(String model, List<File> files) {
+        Calibration current = calibration;
+        double speed = current != null ? current.jobSpeed(model, workerManager.workerThreads()) : 0;
+        if (speed <= 0) {
+            return -1;
+        }
+        return QueuePlanner.makespan(QueuePlanner.withUnknownsAveraged(lengths(files)), queue.getParallelism(), speed);
+    }
+
+    private static List<Double> lengths(List<File> files) {
+        List<Double> lengths = new ArrayList<>(files.size());
+        for (File file : files) {
+            lengths.add(AudioDecoder.durationSeconds(file));
+        }
+        return lengths;
+    }
+
+    /**
+     * Runs as many files at once as {@code plan} says, on workers with its
+     * thread count. Workers already running a job keep their threads.
+     */
+    public synchronized void apply(QueuePlanner.Plan plan) {
+        workerManager.setThreadsPerWorker(plan.getThreads());
+        setParallelism(plan.getWorkers());
+    }
+
+    public TranscriptionJob submit(File audioFile, String model, TranscriptionOptions options) {
+        return queue.submit(new TranscriptionJob(audioFile, model, options));
+    }
+
+    /**
+     * Records how long writing {@code job}'s transcript to disk took, so saving
+     * shows up next to the engine's own phases.
+     */
+    public void recordSave(TranscriptionJob job, long nanos) {
+        queue.recordSave(job, nanos);
+    }
+
+    /**
+     * Blocks until every submitted job has finished.
+     */
+    public void awaitIdle() throws InterruptedException {
+        queue.awaitIdle();
+    }
+
+    private void updateWorkerLimit() {
+        workerManager.setMaxWorkers(Math.max(queue.getParallelism(), chunkWorkers));
+    }
+
+    @Override
+    public void close() {
+        stopWatching();
+        queue.close();
+        workerManager.close();
+        if (preDecoder != null) {
+            preDecoder.close();
+        }
+        TranscriptCache cache = queue.getCache();
+        if (cache != null) {
+            cache.close();
+        }
+        TranscriptStore store = getTranscriptStore();
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                LOG.warn("Cannot close the transcript store: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.promixa.engine;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where the Python interpreter and {@code whisper_script.py} are found.
+ * The interpreter can be overridden with the {@code promixa.python} system
+ * property and the script with {@code promixa.script}, e.g. to run against
+ * the stub worker in {@code src/test/python}. Workers run on the CPU unless
+ * {@code promixa.device} names another torch device, such as {@code cuda}.
+ */
+public final class WhisperEnvironment {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WhisperEnvironment.class);
+
+    public static final String SCRIPT_NAME = "whisper_script.py";
+
+    private static final String DEFAULT_PYTHON = System.getProperty("os.name").toLowerCase().contains("win") ? "python.exe" : "python";
+
+    private static volatile Path locatedScript;
+
+    private WhisperEnvironment() {
+    }
+
+    public static String pythonExecutable() {
+        return System.getProperty("promixa.python", DEFAULT_PYTHON);
+    }
+
+    /** Torch device the workers run on. */
+    public static String device() {
+        return System.getProperty("promixa.device", "cpu");
+    }
+
+    /**
+     * Uses the {@code promixa.script} property when set. Otherwise looks for
+     * the script in a {@code python} folder next to the JAR, then
+     * next to the JAR itself, then on the classpath. The search result is
+     * remembered, since every new worker asks again.
+     *
+     * @return the script path, or {@code null} if it cannot be found
+     */
+    public static Path locateScript() {
+        String override = System.getProperty("promixa.script");
+        if (override != null) {
+            return Paths.get(override).toAbsolutePath();
+        }
+        Path located = locatedScript;
+        if (located == null) {
+            located = findScript();
+            locatedScript = located;
+        }
+        return located;
+    }
+
+    private static Path findScript() {
+        try {
+            File jarDir = new File(WhisperEnvironment.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParentFile();
+            Path directPath = Paths.get(jarDir.getAbsolutePath(), SCRIPT_NAME);
+
+            File scriptInPythonSubfolder = new File(jarDir, "python" + File.separator + SCRIPT_NAME);
+            if(scriptInPythonSubfolder.exists()){
+                LOG.debug("Found script in python subfolder: {}", scriptInPythonSubfolder.getAbsolutePath());
+                return scriptInPythonSubfolder.toPath();
+            }
+
+            if (directPath.toFile().exists()) {
+                LOG.debug("Found script next to JAR: {}", directPath);
+                return directPath;
+            }
+            LOG.debug("Script not found next to JAR or in python subfolder. Checking resources...");
+
+            URL resourceUrl = WhisperEnvironment.class.getResource("/" + SCRIPT_NAME);
+            if (resourceUrl == null) {
+                resourceUrl = WhisperEnvironment.class.getResource("/python/" + SCRIPT_NAME);
+            }
+
+            if (resourceUrl != null) {
+                LOG.debug("Found script in resources: {}", resourceUrl.toURI());
+                return Paths.get(resourceUrl.toURI());
+            }
+
+            LOG.error("Script not found using JAR location or classpath resources.");
+            return null;
+
+        } catch (URISyntaxException | NullPointerException e) {
+            LOG.error("Error finding script path", e);
+            return null;
+        }
+    }
+}
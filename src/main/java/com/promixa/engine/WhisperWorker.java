@@ -0,0 +1,459 @@
+package com.promixa.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived {@code whisper_script.py --worker} process. Models stay loaded
+ * between jobs, so only the first job on a given model pays for interpreter
+ * startup, the torch/whisper imports and {@code whisper.load_model()}. A worker
+ * can hold several models; {@link WorkerManager} decides when to release them.
+ * <p>
+ * Jobs are sent as JSON lines on the worker's stdin and answered with
+ * length-prefixed frames (see {@link FrameDecoder}) on a channel that carries
+ * nothing else, including one frame per segment as soon as it is decoded.
+ * Whisper's own output goes to stderr and is drained on a shared pump pool.
+ * A worker runs one job at a time.
+ */
+public class WhisperWorker implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WhisperWorker.class);
+    /** Whisper's own output (progress bars, warnings), kept apart so it can be silenced. */
+    private static final Logger WORKER_OUTPUT = LoggerFactory.getLogger("com.promixa.worker");
+    private static final int LOG_TAIL_LINES = 50;
+    private static final long SHUTDOWN_GRACE_MS = 3000;
+    /**
+     * Drains every worker's stderr. Each pump blocks on its stream for the
+     * worker's lifetime, so the pool grows with the workers, but threads of
+     * stopped workers are reused by the ones that replace them.
+     */
+    private static final ExecutorService LOG_PUMPS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "whisper-worker-log");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Process process;
+    private final int threads;
+    private final long spawnedNanos = System.nanoTime();
+    private boolean readyReported;
+    private final BufferedWriter commands;
+    private final FrameDecoder events;
+    private final Deque<String> logTail = new ArrayDeque<>();
+
+    private long nextJobId = 1;
+    /** Resident models, least recently used first. */
+    private volatile List<String> residentModels = Collections.emptyList();
+    private final Map<String, Long> modelLastUsed = new ConcurrentHashMap<>();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private WhisperWorker(Process process, int threads) {
+        this.process = process;
+        this.threads = threads;
+        this.commands = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.events = new FrameDecoder(new BufferedInputStream(process.getInputStream()));
+
+        LOG_PUMPS.execute(this::pumpLog);
+    }
+
+    /**
+     * Starts a new worker process. The model is loaded lazily by the first job.
+     */
+    public static WhisperWorker start(String pythonExecutable, Path scriptPath, String device, int threads) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(
+                pythonExecutable,
+                scriptPath.toString(),
+                "--worker",
+                "--device", device,
+                "--threads", String.valueOf(threads)
+        );
+        LOG.info("Starting Whisper worker: {}", String.join(" ", pb.command()));
+        ChildProcesses.reapOnExit();
+        return new WhisperWorker(pb.start(), threads);
+    }
+
+    /**
+     * Transcribes one file on this worker, blocking until the job completes.
+     *
+     * @throws IOException if the job fails or the worker dies while running it
+     */
+    public TranscriptionResult transcribe(File audioFile, String model, String language,
+                                          TranscriptionListener listener) throws IOException {
+        return transcribeRange(audioFile, model, language, -1, -1, listener);
+    }
+
+    /**
+     * Transcribes the {@code [start, end)} seconds of a file. Segment times in
+     * the result are relative to the start of the whole file. A negative
+     * {@code start} transcribes the entire file.
+     *
+     * @throws IOException if the job fails or the worker dies while running it
+     */
+    public TranscriptionResult transcribeRange(File audioFile, String model, String language,
+                                               double start, double end,
+                                               TranscriptionListener listener) throws IOException {
+        return transcribeRange(audioFile, null, model, language, start, end, listener);
+    }
+
+    /**
+     * Like {@link #transcribeRange(File, String, String, double, double, TranscriptionListener)},
+     * but the worker maps {@code decoded} instead of decoding the file itself
+     * when it is given.
+     */
+    public synchronized TranscriptionResult transcribeRange(File audioFile, DecodedAudio decoded, String model,
+                                                            String language, double start, double end,
+                                                            TranscriptionListener listener) throws IOException {
+        long jobId = nextJobId++;
+        long started = System.nanoTime();
+
+        JsonObjectBuilder request = Json.createObjectBuilder()
+                .add("cmd", "transcribe")
+                .add("job", jobId)
+                .add("audio", audioFile.getAbsolutePath())
+                .add("model", model);
+        addDecoded(request, decoded);
+        if (language != null) {
+            request.add("language", language);
+        }
+        if (start >= 0) {
+            request.add("start", start).add("end", end);
+        }
+        send(request.build());
+
+        List<Segment> segments = new ArrayList<>();
+        JsonObject complete = awaitCompletion(jobId, model, segments, listener);
+        String loadedModel = complete.getString("model", model);
+        modelLastUsed.put(loadedModel, System.currentTimeMillis());
+        double audioSeconds = complete.containsKey("duration") ? complete.getJsonNumber("duration").doubleValue() : 0;
+        reportTimings(complete, listener);
+
+        // The worker does not repeat the transcript at the end; it is the segments joined
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : segments) {
+            text.append(segment.getText());
+        }
+        return new TranscriptionResult(text.toString().strip(), segments, loadedModel, audioSeconds,
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    /**
+     * Makes {@code model} resident without transcribing anything, so a later
+     * job on it starts decoding right away.
+     */
+    public synchronized void load(String model, TranscriptionListener listener) throws IOException {
+        long jobId = nextJobId++;
+        send(Json.createObjectBuilder()
+                .add("cmd", "load")
+                .add("job", jobId)
+                .add("model", model)
+                .build());
+        JsonObject complete = awaitCompletion(jobId, model, new ArrayList<>(), listener);
+        modelLastUsed.put(model, System.currentTimeMillis());
+        reportTimings(complete, listener);
+    }
+
+    /**
+     * Drops the given models from the worker's memory.
+     */
+    public synchronized void release(Collection<String> models) throws IOException {
+        if (models.isEmpty()) {
+            return;
+        }
+        long jobId = nextJobId++;
+        JsonArrayBuilder names = Json.createArrayBuilder();
+        for (String model : models) {
+            names.add(model);
+        }
+        send(Json.createObjectBuilder()
+                .add("cmd", "release")
+                .add("job", jobId)
+                .add("models", names)
+                .build());
+        awaitCompletion(jobId, null, new ArrayList<>(), TranscriptionListener.NONE);
+        for (String model : models) {
+            modelLastUsed.remove(model);
+        }
+        LOG.info("Released {} from Whisper worker {}", models, process.pid());
+    }
+
+    /**
+     * Has the worker pick chunk boundaries for a long file, placing each cut
+     * at the quietest point within {@code searchSeconds} of every
+     * {@code chunkSeconds} mark.
+     */
+    public AudioSplit split(File audioFile, double chunkSeconds, double searchSeconds,
+                            TranscriptionListener listener) throws IOException {
+        return split(audioFile, null, chunkSeconds, searchSeconds, listener);
+    }
+
+    /**
+     * Like {@link #split(File, double, double, TranscriptionListener)}, reading
+     * {@code decoded} instead of the file when it is given.
+     */
+    public synchronized AudioSplit split(File audioFile, DecodedAudio decoded, double chunkSeconds,
+                                         double searchSeconds, TranscriptionListener listener) throws IOException {
+        long jobId = nextJobId++;
+        JsonObjectBuilder request = Json.createObjectBuilder()
+                .add("cmd", "split")
+                .add("job", jobId)
+                .add("audio", audioFile.getAbsolutePath())
+                .add("chunk_seconds", chunkSeconds)
+                .add("search_seconds", searchSeconds);
+        addDecoded(request, decoded);
+        send(request.build());
+
+        JsonObject complete = awaitCompletion(jobId, null, new ArrayList<>(), listener);
+        List<double[]> chunks = new ArrayList<>();
+        for (JsonArray chunk : complete.getJsonArray("chunks").getValuesAs(JsonArray.class)) {
+            chunks.add(new double[] {chunk.getJsonNumber(0).doubleValue(), chunk.getJsonNumber(1).doubleValue()});
+        }
+        return new AudioSplit(complete.getJsonNumber("duration").doubleValue(), chunks);
+    }
+
+    private static void addDecoded(JsonObjectBuilder request, DecodedAudio decoded) {
+        if (decoded != null) {
+            request.add("pcm", decoded.getFile().toAbsolutePath().toString())
+                    .add("pcm_samples", decoded.getSampleCount());
+        }
+    }
+
+    /**
+     * Reads events for one job until its final "done" event, passing
+     * progress and segments on to the listener. "complete" is an ordinary
+     * progress status here; only "done" and "error" end a request.
+     */
+    private JsonObject awaitCompletion(long jobId, String model, List<Segment> segments,
+                                       TranscriptionListener listener) throws IOException {
+        lastUsed = System.currentTimeMillis();
+        try {
+            while (events.next()) {
+                if (events.type() == FrameDecoder.FRAME_SEGMENT) {
+                    if (events.segmentJob() == jobId) {
+                        Segment segment = events.segment();
+                        segments.add(segment);
+                        listener.onSegment(segment);
+                    }
+                    continue;
+                }
+                if (events.type() != FrameDecoder.FRAME_EVENT) {
+                    continue;
+                }
+
+                JsonObject event = events.event();
+                if (!readyReported && "Worker ready".equals(event.getString("message", ""))) {
+                    // Interpreter start and imports; charged to the first job on this worker
+                    readyReported = true;
+                    listener.onPhase(JobPhase.SPAWN, System.nanoTime() - spawnedNanos);
+                }
+                if (!event.containsKey("job") || event.getJsonNumber("job").longValue() != jobId) {
+                    continue;
+                }
+                String status = event.getString("status", "info");
+                String message = event.getString("message", "");
+                if ("error".equals(status)) {
+                    throw new IOException(message);
+                }
+                if ("ready".equals(status) && model != null) {
+                    markResident(model);
+                }
+                if (event.containsKey("resident")) {
+                    List<String> resident = new ArrayList<>();
+                    for (JsonString name : event.getJsonArray("resident").getValuesAs(JsonString.class)) {
+                        resident.add(name.getString());
+                    }
+                    residentModels = Collections.unmodifiableList(resident);
+                }
+                if ("done".equals(status)) {
+                    return event;
+                }
+                if (!message.isEmpty()) {
+                    listener.onProgress(message, status);
+                }
+            }
+        } finally {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        throw new IOException(crashMessage());
+    }
+
+    /**
+     * Passes the per-phase seconds and memory the worker reported with a
+     * result on to the listener.
+     */
+    private static void reportTimings(JsonObject complete, TranscriptionListener listener) {
+        JsonObject timings = complete.getJsonObject("timings");
+        if (timings != null) {
+            reportPhase(timings, "model_load", JobPhase.MODEL_LOAD, listener);
+            reportPhase(timings, "decode", JobPhase.AUDIO_DECODE, listener);
+            reportPhase(timings, "inference", JobPhase.INFERENCE, listener);
+        }
+        if (complete.containsKey("rss_bytes")) {
+            long rss = complete.getJsonNumber("rss_bytes").longValue();
+            if (rss > 0) {
+                listener.onWorkerMemory(rss);
+            }
+        }
+    }
+
+    private static void reportPhase(JsonObject timings, String key, JobPhase phase, TranscriptionListener listener) {
+        if (timings.containsKey(key)) {
+            listener.onPhase(phase, (long) (timings.getJsonNumber(key).doubleValue() * 1e9));
+        }
+    }
+
+    private void markResident(String model) {
+        List<String> resident = new ArrayList<>(residentModels);
+        resident.remove(model);
+        resident.add(model);
+        residentModels = Collections.unmodifiableList(resident);
+    }
+
+    /** Most recently used resident model, or {@code null} before the first job. */
+    public String getLoadedModel() {
+        List<String> resident = residentModels;
+        return resident.isEmpty() ? null : resident.get(resident.size() - 1);
+    }
+
+    /** Models resident in this worker, least recently used first. */
+    public List<String> getResidentModels() {
+        return residentModels;
+    }
+
+    public boolean hasModel(String model) {
+        return residentModels.contains(model);
+    }
+
+    /** When a job last ran on {@code model} in this worker, or 0 if never. */
+    public long getModelLastUsed(String model) {
+        return modelLastUsed.getOrDefault(model, 0L);
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /** Torch threads the worker was started with; 0 means torch's default. */
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Kills the worker and any process it started immediately, abandoning the
+     * job it is running.
+     */
+    public void kill() {
+        ChildProcesses.destroyTree(process);
+    }
+
+    /**
+     * Asks the worker to exit and kills it if it does not do so promptly.
+     */
+    @Override
+    public void close() {
+        if (process.isAlive()) {
+            try {
+                send(Json.createObjectBuilder().add("cmd", "shutdown").build());
+                process.getOutputStream().close();
+            } catch (IOException e) {
+                // The worker is going away anyway
+            }
+            try {
+                if (!process.waitFor(SHUTDOWN_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                    kill();
+                }
+            } catch (InterruptedException e) {
+                kill();
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOG.info("Whisper worker {} stopped.", process.pid());
+    }
+
+    private void send(JsonObject request) throws IOException {
+        commands.write(request.toString());
+        commands.newLine();
+        commands.flush();
+    }
+
+    private void pumpLog() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                WORKER_OUTPUT.debug("[{}] {}", process.pid(), line);
+                synchronized (logTail) {
+                    if (logTail.size() == LOG_TAIL_LINES) {
+                        logTail.removeFirst();
+                    }
+                    logTail.addLast(line);
+                }
+            }
+        } catch (IOException e) {
+            // Stream closes when the worker exits
+        }
+    }
+
+    private String crashMessage() {
+        String log;
+        synchronized (logTail) {
+            log = String.join(System.lineSeparator(), logTail);
+        }
+        LOG.warn("Whisper worker {} exited; its last output was:{}{}", process.pid(), System.lineSeparator(), log);
+        String errorMsg = extractErrorMessage(log);
+        if (errorMsg.isEmpty()) {
+            errorMsg = "Whisper worker exited unexpectedly. Check logs for details.";
+        }
+        return errorMsg;
+    }
+
+    static String extractErrorMessage(String processOutput) {
+        String[] lines = processOutput.split(System.lineSeparator());
+        String lastErrorLine = "";
+        for (int i = lines.length - 1; i >= 0; i--) {
+            String line = lines[i].trim();
+            if (line.toLowerCase().startsWith("error:")) {
+                return line.substring("error:".length()).trim();
+            }
+            if (!line.isEmpty() && !line.toLowerCase().contains("model loaded") && !line.toLowerCase().contains("starting transcription") && !line.toLowerCase().contains("transcription complete")) {
+                lastErrorLine = line;
+            }
+        }
+        return lastErrorLine;
+    }
+}
@@ -0,0 +1,457 @@
+package com.promixa.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of warm {@link WhisperWorker}s. Workers are started lazily, reused by
+ * later jobs (preferring one that already has the job's model loaded),
+ * replaced after a crash and stopped after they have been idle for a while so
+ * the model's memory is returned to the system. Which models stay loaded is
+ * governed by a {@link ModelResidency}; models can also be loaded ahead of
+ * the jobs that need them with {@link #preload(String)}.
+ * <p>
+ * Talking to a worker can block for seconds, so it never happens while the
+ * pool's monitor is held: workers are taken out of the pool under the lock
+ * and stopped or sent commands after leaving it.
+ */
+public class WorkerManager implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerManager.class);
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final long CANCEL_POLL_MS = 500;
+
+    private final String pythonExecutable;
+    private final Supplier<Path> scriptLocator;
+    private final String device;
+    private final long idleTimeoutMs;
+    private final ScheduledExecutorService idleReaper;
+    private final ExecutorService preloader;
+    private final AtomicReference<List<String>> pendingPreload = new AtomicReference<>();
+    private final ModelResidency residency = new ModelResidency();
+
+    private final Deque<WhisperWorker> idleWorkers = new ArrayDeque<>();
+    private final Set<WhisperWorker> busyWorkers = new HashSet<>();
+    private int maxWorkers = 1;
+    private int threadsPerWorker;
+    private int liveWorkers;
+    private boolean closed;
+
+    public WorkerManager(String pythonExecutable, Supplier<Path> scriptLocator, String device) {
+        this(pythonExecutable, scriptLocator, device, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public WorkerManager(String pythonExecutable, Supplier<Path> scriptLocator, String device, long idleTimeoutMs) {
+        this.pythonExecutable = pythonExecutable;
+        this.scriptLocator = scriptLocator;
+        this.device = device;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.idleReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "whisper-worker-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 4);
+        idleReaper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        this.preloader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "whisper-model-preload");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public ModelResidency getResidency() {
+        return residency;
+    }
+
+    /**
+     * Sets how many workers may run at once. Surplus idle workers are stopped;
+     * busy ones finish their job first.
+     */
+    public void setMaxWorkers(int maxWorkers) {
+        List<WhisperWorker> stopped = new ArrayList<>();
+        synchronized (this) {
+            this.maxWorkers = Math.max(1, maxWorkers);
+            while (liveWorkers > this.maxWorkers && !idleWorkers.isEmpty()) {
+                retire(idleWorkers.removeLast(), stopped);
+            }
+            notifyAll();
+        }
+        stopAll(stopped);
+    }
+
+    public synchronized int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    /**
+     * Sets the torch threads of each worker started from now on, e.g. from a
+     * {@link QueuePlanner.Plan}; 0 shares the cores evenly between the
+     * maximum number of workers. Idle workers with another thread count are
+     * stopped; busy ones keep theirs until they are replaced.
+     */
+    public void setThreadsPerWorker(int threads) {
+        List<WhisperWorker> stopped = new ArrayList<>();
+        synchronized (this) {
+            this.threadsPerWorker = Math.max(0, threads);
+            for (Iterator<WhisperWorker> it = idleWorkers.iterator(); it.hasNext(); ) {
+                WhisperWorker worker = it.next();
+                if (worker.getThreads() != workerThreads()) {
+                    it.remove();
+                    retire(worker, stopped);
+                }
+            }
+            notifyAll();
+        }
+        stopAll(stopped);
+    }
+
+    /** Torch threads a worker started now gets. */
+    public synchronized int workerThreads() {
+        return threadsPerWorker > 0 ? threadsPerWorker : PoolSizing.threadsPerWorker(maxWorkers);
+    }
+
+    /** Workers currently running, busy or idle. */
+    public synchronized int getLiveWorkers() {
+        return liveWorkers;
+    }
+
+    /** Work done on a borrowed worker. */
+    @FunctionalInterface
+    private interface WorkerCall<T> {
+        T run(WhisperWorker worker) throws IOException;
+    }
+
+    /**
+     * Runs a job on a pooled worker, blocking until a worker is free and the
+     * job has finished.
+     *
+     * @throws IOException if the job fails, is cancelled or its worker dies
+     */
+    public TranscriptionResult transcribe(TranscriptionJob job, TranscriptionListener listener) throws IOException {
+        return withWorker(job, true, worker -> worker.transcribeRange(job.getAudioFile(), job.getDecodedAudio(),
+                job.getModel(), job.getOptions().getLanguage(), -1, -1, listener));
+    }
+
+    /**
+     * Transcribes {@code [start, end)} seconds of the job's file on a pooled worker.
+     */
+    public TranscriptionResult transcribeRange(TranscriptionJob job, double start, double end,
+                                               TranscriptionListener listener) throws IOException {
+        return withWorker(job, true, worker -> worker.transcribeRange(job.getAudioFile(), job.getDecodedAudio(),
+                job.getModel(), job.getOptions().getLanguage(), start, end, listener));
+    }
+
+    /**
+     * Splits the job's file into chunks at silences on a pooled worker.
+     */
+    public AudioSplit split(TranscriptionJob job, double chunkSeconds, double searchSeconds,
+                            TranscriptionListener listener) throws IOException {
+        return withWorker(job, false, worker -> worker.split(job.getAudioFile(), job.getDecodedAudio(),
+                chunkSeconds, searchSeconds, listener));
+    }
+
+    private <T> T withWorker(TranscriptionJob job, boolean loadsModel, WorkerCall<T> call) throws IOException {
+        WhisperWorker worker = acquire(job.getModel(), true, job);
+        try {
+            if (!job.attach(worker)) {
+                throw new IOException("Transcription cancelled.");
+            }
+            if (loadsModel) {
+                makeRoom(worker, job.getModel());
+            }
+            return call.run(worker);
+        } finally {
+            job.detach(worker);
+            release(worker);
+        }
+    }
+
+    /** Model resident in the most recently used idle worker, or {@code null} if none is idle. */
+    public synchronized String getLoadedModel() {
+        for (WhisperWorker worker : idleWorkers) {
+            if (worker.isAlive() && worker.getLoadedModel() != null) {
+                return worker.getLoadedModel();
+            }
+        }
+        return null;
+    }
+
+    /** Models resident anywhere in the pool. */
+    public synchronized Set<String> getResidentModels() {
+        Set<String> models = new LinkedHashSet<>();
+        for (WhisperWorker worker : idleWorkers) {
+            models.addAll(worker.getResidentModels());
+        }
+        for (WhisperWorker worker : busyWorkers) {
+            models.addAll(worker.getResidentModels());
+        }
+        return models;
+    }
+
+    /**
+     * Loads {@code models}, in order, in the background so the next job on
+     * them starts decoding right away, e.g. at startup or as soon as the user
+     * picks a model. A model is skipped if a worker already holds it or none
+     * is free; of several requests made in quick succession only the latest
+     * is carried out.
+     */
+    public void preload(String... models) {
+        if (pendingPreload.getAndSet(List.of(models)) == null) {
+            try {
+                preloader.execute(this::runPreload);
+            } catch (RejectedExecutionException e) {
+                // Shut down
+            }
+        }
+    }
+
+    private void runPreload() {
+        List<String> models = pendingPreload.getAndSet(null);
+        if (models == null) {
+            return;
+        }
+        for (String model : models) {
+            if (pendingPreload.get() != null) {
+                // Superseded by a newer request
+                return;
+            }
+            preloadOne(model);
+        }
+    }
+
+    private void preloadOne(String model) {
+        WhisperWorker worker;
+        try {
+            synchronized (this) {
+                if (closed || getResidentModels().contains(model)) {
+                    return;
+                }
+                worker = acquire(model, false, null);
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot preload Whisper model {}: {}", model, e.getMessage());
+            return;
+        }
+        if (worker == null) {
+            return;
+        }
+        try {
+            makeRoom(worker, model);
+            LOG.info("Preloading Whisper model {}", model);
+            worker.load(model, TranscriptionListener.NONE);
+        } catch (IOException e) {
+            LOG.warn("Cannot preload Whisper model {}: {}", model, e.getMessage());
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Releases models, least recently used first, until {@code model} fits
+     * into {@code worker} under the residency limits. Idle workers left
+     * without a model are stopped. The idle workers involved are claimed
+     * under the lock like a job would and only talked to after leaving it.
+     */
+    private void makeRoom(WhisperWorker worker, String model) throws IOException {
+        List<String> fromTarget = new ArrayList<>();
+        List<WhisperWorker> stopped = new ArrayList<>();
+        Map<WhisperWorker, List<String>> claimed = new LinkedHashMap<>();
+        synchronized (this) {
+            Set<WhisperWorker> others = new HashSet<>(busyWorkers);
+            others.remove(worker);
+            Map<WhisperWorker, List<String>> fromIdle = new LinkedHashMap<>();
+            for (ModelResidency.Eviction eviction : residency.planLoad(worker, model, idleWorkers,
+                    ModelResidency.residentBytes(others))) {
+                if (eviction.getWorker() == worker) {
+                    fromTarget.add(eviction.getModel());
+                } else {
+                    fromIdle.computeIfAbsent(eviction.getWorker(), w -> new ArrayList<>()).add(eviction.getModel());
+                }
+            }
+            for (Map.Entry<WhisperWorker, List<String>> entry : fromIdle.entrySet()) {
+                WhisperWorker idle = entry.getKey();
+                idleWorkers.remove(idle);
+                if (entry.getValue().containsAll(idle.getResidentModels())) {
+                    LOG.info("Stopping idle Whisper worker to make room for model {}", model);
+                    retire(idle, stopped);
+                } else {
+                    busyWorkers.add(idle);
+                    claimed.put(idle, entry.getValue());
+                }
+            }
+        }
+        stopAll(stopped);
+        for (Map.Entry<WhisperWorker, List<String>> entry : claimed.entrySet()) {
+            WhisperWorker idle = entry.getKey();
+            try {
+                idle.release(entry.getValue());
+                release(idle);
+            } catch (IOException e) {
+                synchronized (this) {
+                    busyWorkers.remove(idle);
+                    liveWorkers--;
+                    notifyAll();
+                }
+                idle.close();
+            }
+        }
+        worker.release(fromTarget);
+    }
+
+    /**
+     * Takes a worker for a job on {@code model}, waiting for one to become
+     * free unless {@code wait} is false, in which case {@code null} is
+     * returned when none is. Waiting ends early if {@code job} is cancelled.
+     */
+    private synchronized WhisperWorker acquire(String model, boolean wait, TranscriptionJob job) throws IOException {
+        while (true) {
+            if (closed) {
+                throw new IOException("Transcription engine has been shut down.");
+            }
+            if (job != null && job.isCancelRequested()) {
+                throw new IOException("Transcription cancelled.");
+            }
+            pruneDeadIdleWorkers();
+
+            // A worker that already holds the model starts decoding right away
+            for (Iterator<WhisperWorker> it = idleWorkers.iterator(); it.hasNext(); ) {
+                WhisperWorker worker = it.next();
+                if (worker.hasModel(model)) {
+                    it.remove();
+                    busyWorkers.add(worker);
+                    return worker;
+                }
+            }
+            if (liveWorkers < maxWorkers) {
+                Path scriptPath = scriptLocator.get();
+                if (scriptPath == null) {
+                    throw new IOException("Could not find the transcription script.");
+                }
+                WhisperWorker worker = WhisperWorker.start(pythonExecutable, scriptPath, device, workerThreads());
+                liveWorkers++;
+                busyWorkers.add(worker);
+                return worker;
+            }
+            if (!idleWorkers.isEmpty()) {
+                WhisperWorker worker = idleWorkers.removeFirst();
+                busyWorkers.add(worker);
+                return worker;
+            }
+            if (!wait) {
+                return null;
+            }
+            try {
+                // A cancel does not notify this monitor; look again now and then
+                wait(job != null ? CANCEL_POLL_MS : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a Whisper worker.");
+            }
+        }
+    }
+
+    private void release(WhisperWorker worker) {
+        List<WhisperWorker> stopped = new ArrayList<>();
+        synchronized (this) {
+            busyWorkers.remove(worker);
+            if (!worker.isAlive()) {
+                LOG.warn("Whisper worker exited; a new one will be started for the next job.");
+                liveWorkers--;
+            } else if (closed || liveWorkers > maxWorkers) {
+                retire(worker, stopped);
+            } else {
+                idleWorkers.addFirst(worker);
+            }
+            notifyAll();
+        }
+        stopAll(stopped);
+    }
+
+    private void pruneDeadIdleWorkers() {
+        for (Iterator<WhisperWorker> it = idleWorkers.iterator(); it.hasNext(); ) {
+            WhisperWorker worker = it.next();
+            if (!worker.isAlive()) {
+                LOG.warn("Whisper worker is no longer running; it will be replaced.");
+                it.remove();
+                liveWorkers--;
+            }
+        }
+    }
+
+    /** Takes a worker out of the count; the caller stops it with {@link #stopAll} after leaving the lock. */
+    private void retire(WhisperWorker worker, List<WhisperWorker> stopped) {
+        liveWorkers--;
+        stopped.add(worker);
+    }
+
+    private static void stopAll(List<WhisperWorker> workers) {
+        for (WhisperWorker worker : workers) {
+            worker.close();
+        }
+    }
+
+    private void evictIdle() {
+        List<WhisperWorker> stopped = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Iterator<WhisperWorker> it = idleWorkers.iterator(); it.hasNext(); ) {
+                WhisperWorker worker = it.next();
+                if (now - worker.getLastUsed() >= idleTimeoutMs) {
+                    LOG.info("Whisper worker idle for {}s; stopping it to free memory.", idleTimeoutMs / 1000);
+                    it.remove();
+                    retire(worker, stopped);
+                }
+            }
+        }
+        stopAll(stopped);
+    }
+
+    /**
+     * Stops all idle workers and the idle reaper, and kills busy workers
+     * together with the processes they started, failing their jobs. Further
+     * jobs are rejected.
+     */
+    @Override
+    public void close() {
+        List<WhisperWorker> stopped = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            idleReaper.shutdownNow();
+            preloader.shutdownNow();
+            while (!idleWorkers.isEmpty()) {
+                retire(idleWorkers.removeFirst(), stopped);
+            }
+            for (WhisperWorker worker : busyWorkers) {
+                LOG.info("Stopping busy Whisper worker on shutdown");
+                worker.kill();
+            }
+            notifyAll();
+        }
+        stopAll(stopped);
+    }
+}
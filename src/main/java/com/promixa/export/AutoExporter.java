@@ -0,0 +1,106 @@
+package com.promixa.export;
+
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes every job that completes into a folder, in each of the configured
+ * formats, as soon as it is done. Runs on the thread that ran the job, before
+ * the queue starts the next one or reports itself idle, so a batch is not
+ * finished until its files are on disk. Without a folder, each file is
+ * written next to its recording.
+ */
+public class AutoExporter implements TranscriptionQueue.Listener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AutoExporter.class);
+
+    private final Path directory;
+    private final List<ExportFormat> formats;
+    private final TranscriptionQueue queue;
+    private final MetricsRegistry metrics;
+    private final Set<Long> exported = ConcurrentHashMap.newKeySet();
+    private final Map<Long, String> errors = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory where to write, or {@code null} to write next to each recording
+     * @throws IOException if the folder cannot be created
+     */
+    public AutoExporter(Path directory, List<ExportFormat> formats, TranscriptionQueue queue,
+                        MetricsRegistry metrics) throws IOException {
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("No export format given.");
+        }
+        this.directory = directory != null ? Files.createDirectories(directory) : null;
+        this.formats = List.copyOf(formats);
+        this.queue = queue;
+        this.metrics = metrics;
+    }
+
+    /** The folder written to, or {@code null} if files go next to their recordings. */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public List<ExportFormat> getFormats() {
+        return formats;
+    }
+
+    @Override
+    public void jobUpdated(TranscriptionJob job) {
+        if (job.getState() == TranscriptionJob.State.COMPLETED && exported.add(job.getId())) {
+            export(job);
+        }
+    }
+
+    /**
+     * Why writing {@code job}'s files failed, or {@code null} if they were
+     * written or the job has not completed yet.
+     */
+    public String getError(TranscriptionJob job) {
+        return errors.get(job.getId());
+    }
+
+    /** Files written for {@code job}, whether or not they exist yet. */
+    public List<Path> targetsFor(TranscriptionJob job) {
+        List<Path> targets = new ArrayList<>();
+        for (ExportFormat format : formats) {
+            targets.add(targetFor(job, format));
+        }
+        return targets;
+    }
+
+    private void export(TranscriptionJob job) {
+        long started = System.nanoTime();
+        for (ExportFormat format : formats) {
+            Path target = targetFor(job, format);
+            try {
+                format.writeTo(target, job.getAudioFile(), job.getResult());
+                metrics.increment("export.files");
+                LOG.debug("Wrote {}", target);
+            } catch (IOException | RuntimeException e) {
+                metrics.increment("export.failed");
+                errors.put(job.getId(), "Cannot write " + target + ": " + e.getMessage());
+                LOG.warn("Cannot write {}: {}", target, e.getMessage());
+            }
+        }
+        queue.recordSave(job, System.nanoTime() - started);
+    }
+
+    private Path targetFor(TranscriptionJob job, ExportFormat format) {
+        Path folder = directory != null ? directory : job.getAudioFile().getAbsoluteFile().toPath().getParent();
+        return folder.resolve(format.fileNameFor(job.getAudioFile()));
+    }
+}
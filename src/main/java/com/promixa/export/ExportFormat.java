@@ -0,0 +1,133 @@
+package com.promixa.export;
+
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * File formats a transcript can be saved in.
+ */
+public enum ExportFormat {
+    TXT("txt", "Text", "text/plain", TextExporter::new),
+    SRT("srt", "SubRip subtitles", "application/x-subrip", SubtitleExporter::srt),
+    VTT("vtt", "WebVTT subtitles", "text/vtt", SubtitleExporter::vtt),
+    JSON("json", "JSON with segments", "application/json", JsonExporter::new);
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final String extension;
+    private final String description;
+    private final String mediaType;
+    private final Supplier<TranscriptExporter> exporter;
+
+    ExportFormat(String extension, String description, String mediaType, Supplier<TranscriptExporter> exporter) {
+        this.extension = extension;
+        this.description = description;
+        this.mediaType = mediaType;
+        this.exporter = exporter;
+    }
+
+    /** File name extension without the dot. */
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /** MIME type of the written bytes, which are always UTF-8. */
+    public String getMediaType() {
+        return mediaType + "; charset=utf-8";
+    }
+
+    /**
+     * Streams the transcript to {@code out}, which is flushed but left open.
+     */
+    public void write(File audioFile, TranscriptionResult result, Writer out) throws IOException {
+        exporter.get().write(audioFile, result, out);
+    }
+
+    /**
+     * Writes the transcript to {@code target} through a buffer of fixed size.
+     * The file is written under a temporary name and moved into place, so it
+     * is either complete or absent.
+     */
+    public void writeTo(Path target, File audioFile, TranscriptionResult result) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            try (Writer out = new BufferedWriter(
+                    new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8), BUFFER_CHARS)) {
+                write(audioFile, result, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** {@code talk.mp3} becomes {@code talk.srt}. */
+    public String fileNameFor(File audioFile) {
+        String name = audioFile.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "." + extension;
+    }
+
+    /**
+     * The format named by an extension such as {@code srt}, in any case.
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static ExportFormat fromName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown format: " + name);
+    }
+
+    /**
+     * Parses a comma-separated list such as {@code txt,srt}.
+     *
+     * @throws IllegalArgumentException for an unknown or empty list
+     */
+    public static List<ExportFormat> parseList(String names) {
+        List<ExportFormat> formats = new ArrayList<>();
+        for (String name : names.split(",")) {
+            if (!name.isBlank()) {
+                ExportFormat format = fromName(name);
+                if (!formats.contains(format)) {
+                    formats.add(format);
+                }
+            }
+        }
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("No format given.");
+        }
+        return formats;
+    }
+
+    /** The format whose extension {@code file} has, or {@code null}. */
+    public static ExportFormat forFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (name.endsWith("." + format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
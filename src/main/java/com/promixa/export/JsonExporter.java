@@ -0,0 +1,43 @@
+package com.promixa.export;
+
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * The transcript with its timed segments as one JSON object on a single line,
+ * so several files can follow each other on one stream (NDJSON). Written with
+ * the streaming generator rather than built as a tree first.
+ */
+final class JsonExporter implements TranscriptExporter {
+
+    @Override
+    public void write(File audioFile, TranscriptionResult result, Writer out) throws IOException {
+        // Not closed: closing the generator would close the caller's writer
+        JsonGenerator json = Json.createGenerator(out);
+        json.writeStartObject()
+                .write("file", audioFile.getPath())
+                .write("model", result.getModel())
+                .write("audioSeconds", result.getAudioSeconds())
+                .write("processingSeconds", result.getProcessingSeconds())
+                .write("text", result.getText())
+                .writeStartArray("segments");
+        for (Segment segment : result.getSegments()) {
+            json.writeStartObject()
+                    .write("start", segment.getStart())
+                    .write("end", segment.getEnd())
+                    .write("text", segment.getText())
+                    .writeEnd();
+        }
+        json.writeEnd().writeEnd();
+        json.flush();
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+}
@@ -0,0 +1,114 @@
+package com.promixa.export;
+
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * SubRip ({@code .srt}) and WebVTT ({@code .vtt}) subtitles, one cue per
+ * segment. The two differ only in the header, cue numbering, the decimal
+ * separator of timestamps and which characters need escaping.
+ */
+final class SubtitleExporter implements TranscriptExporter {
+
+    private final boolean webVtt;
+    private final char[] timestamp = new char[12];
+
+    private SubtitleExporter(boolean webVtt) {
+        this.webVtt = webVtt;
+    }
+
+    static SubtitleExporter srt() {
+        return new SubtitleExporter(false);
+    }
+
+    static SubtitleExporter vtt() {
+        return new SubtitleExporter(true);
+    }
+
+    @Override
+    public void write(File audioFile, TranscriptionResult result, Writer out) throws IOException {
+        if (webVtt) {
+            out.write("WEBVTT\n\n");
+        }
+        List<Segment> segments = result.getSegments();
+        if (segments.isEmpty() && !result.getText().isBlank()) {
+            // No timing from the worker: one cue over the whole recording
+            writeCue(out, 1, 0, result.getAudioSeconds(), result.getText());
+        }
+        int number = 1;
+        for (Segment segment : segments) {
+            if (!segment.getText().isBlank()) {
+                writeCue(out, number++, segment.getStart(), segment.getEnd(), segment.getText());
+            }
+        }
+        out.flush();
+    }
+
+    private void writeCue(Writer out, int number, double start, double end, String text) throws IOException {
+        if (!webVtt) {
+            out.write(Integer.toString(number));
+            out.write('\n');
+        }
+        writeTimestamp(out, start);
+        out.write(" --> ");
+        writeTimestamp(out, Math.max(start, end));
+        out.write('\n');
+        writeText(out, text.strip());
+        out.write("\n\n");
+    }
+
+    /** {@code hh:mm:ss,mmm} for SubRip, {@code hh:mm:ss.mmm} for WebVTT. */
+    private void writeTimestamp(Writer out, double seconds) throws IOException {
+        long millis = Double.isFinite(seconds) && seconds > 0 ? Math.round(seconds * 1000) : 0;
+        long hours = Math.min(99, millis / 3_600_000);
+        twoDigits(0, hours);
+        timestamp[2] = ':';
+        twoDigits(3, millis / 60_000 % 60);
+        timestamp[5] = ':';
+        twoDigits(6, millis / 1000 % 60);
+        timestamp[8] = webVtt ? '.' : ',';
+        long fraction = millis % 1000;
+        timestamp[9] = (char) ('0' + fraction / 100);
+        timestamp[10] = (char) ('0' + fraction / 10 % 10);
+        timestamp[11] = (char) ('0' + fraction % 10);
+        out.write(timestamp);
+    }
+
+    private void twoDigits(int offset, long value) {
+        timestamp[offset] = (char) ('0' + value / 10);
+        timestamp[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    /**
+     * Cue text without blank lines, which would end the cue early; WebVTT
+     * additionally reserves {@code &}, {@code <} and {@code >}.
+     */
+    private void writeText(Writer out, String text) throws IOException {
+        boolean newline = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n') {
+                newline = true;
+                continue;
+            }
+            if (newline) {
+                out.write('\n');
+                newline = false;
+            }
+            if (webVtt && c == '&') {
+                out.write("&amp;");
+            } else if (webVtt && c == '<') {
+                out.write("&lt;");
+            } else if (webVtt && c == '>') {
+                out.write("&gt;");
+            } else {
+                out.write(c);
+            }
+        }
+    }
+}
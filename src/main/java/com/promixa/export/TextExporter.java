@@ -0,0 +1,43 @@
+package com.promixa.export;
+
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Plain text, identical to {@link TranscriptionResult#getText()} followed by a
+ * line break: the segments joined with the surrounding whitespace stripped.
+ */
+final class TextExporter implements TranscriptExporter {
+
+    @Override
+    public void write(File audioFile, TranscriptionResult result, Writer out) throws IOException {
+        if (result.getSegments().isEmpty()) {
+            out.write(result.getText());
+        } else {
+            // Trailing whitespace is held back until more text follows, so the
+            // end is stripped without knowing in advance which segment is last
+            boolean started = false;
+            String pending = "";
+            for (Segment segment : result.getSegments()) {
+                String text = started ? segment.getText() : segment.getText().stripLeading();
+                String stripped = text.stripTrailing();
+                if (stripped.isEmpty()) {
+                    pending += text;
+                    continue;
+                }
+                if (started) {
+                    out.write(pending);
+                }
+                out.write(stripped);
+                pending = text.substring(stripped.length());
+                started = true;
+            }
+        }
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+}
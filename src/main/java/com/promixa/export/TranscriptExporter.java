@@ -0,0 +1,17 @@
+package com.promixa.export;
+
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a finished transcript in one format. Implementations stream segment
+ * by segment and never build the whole document in memory; they flush but do
+ * not close {@code out}, so several transcripts can share one stream.
+ */
+interface TranscriptExporter {
+
+    void write(File audioFile, TranscriptionResult result, Writer out) throws IOException;
+}
@@ -0,0 +1,64 @@
+package com.promixa.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Running statistics of a measured value: count, total and maximum over the
+ * whole run, and percentiles over the most recent samples.
+ */
+public class Distribution {
+
+    private static final int WINDOW = 1024;
+
+    private final String unit;
+    private final double[] recent = new double[WINDOW];
+    private long count;
+    private double sum;
+    private double max;
+
+    public Distribution(String unit) {
+        this.unit = unit;
+    }
+
+    public synchronized void record(double value) {
+        recent[(int) (count % WINDOW)] = value;
+        count++;
+        sum += value;
+        max = count == 1 ? value : Math.max(max, value);
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    public synchronized double getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * Nearest-rank percentile of the last {@value #WINDOW} samples, or 0 before
+     * the first one.
+     */
+    public synchronized double percentile(double percent) {
+        int size = (int) Math.min(count, WINDOW);
+        if (size == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOf(recent, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percent / 100.0 * size);
+        return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,97 @@
+package com.promixa.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Named counters, gauges and value distributions for one engine instance.
+ * Metrics are created on first use; names are dotted, e.g.
+ * {@code job.inference_seconds}.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Distribution> distributions = new ConcurrentSkipListMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /** Records a value in the named distribution, creating it with {@code unit} if needed. */
+    public void record(String name, String unit, double value) {
+        distribution(name, unit).record(value);
+    }
+
+    public Distribution distribution(String name, String unit) {
+        return distributions.computeIfAbsent(name, n -> new Distribution(unit));
+    }
+
+    /** Registers a value that is read whenever a snapshot is taken. */
+    public void gauge(String name, Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    /** All metrics as JSON, for the HTTP server and reports. */
+    public JsonObject toJson() {
+        JsonObjectBuilder counterJson = Json.createObjectBuilder();
+        counters.forEach((name, counter) -> counterJson.add(name, counter.sum()));
+
+        JsonObjectBuilder gaugeJson = Json.createObjectBuilder();
+        new TreeMap<>(gauges).forEach((name, value) -> gaugeJson.add(name, value.get().doubleValue()));
+
+        JsonObjectBuilder distributionJson = Json.createObjectBuilder();
+        distributions.forEach((name, d) -> distributionJson.add(name, Json.createObjectBuilder()
+                .add("unit", d.getUnit())
+                .add("count", d.getCount())
+                .add("mean", d.getMean())
+                .add("p50", d.percentile(50))
+                .add("p90", d.percentile(90))
+                .add("p99", d.percentile(99))
+                .add("max", d.getMax())));
+
+        return Json.createObjectBuilder()
+                .add("counters", counterJson)
+                .add("gauges", gaugeJson)
+                .add("distributions", distributionJson)
+                .build();
+    }
+
+    /** All metrics as aligned text lines, for the stats panel and the command line. */
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        counters.forEach((name, counter) -> text.append(String.format(Locale.ROOT, "%-28s %d%n", name, counter.sum())));
+        new TreeMap<>(gauges).forEach((name, value) ->
+                text.append(String.format(Locale.ROOT, "%-28s %s%n", name, formatNumber(value.get()))));
+        distributions.forEach((name, d) -> {
+            if (d.getCount() > 0) {
+                text.append(String.format(Locale.ROOT, "%-28s n=%d  p50 %s  p90 %s  max %s %s%n", name, d.getCount(),
+                        formatNumber(d.percentile(50)), formatNumber(d.percentile(90)), formatNumber(d.getMax()),
+                        d.getUnit()));
+            }
+        });
+        return text.toString();
+    }
+
+    private static String formatNumber(Number value) {
+        double v = value.doubleValue();
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            return String.valueOf((long) v);
+        }
+        return Math.abs(v) >= 100 ? String.format(Locale.ROOT, "%.0f", v) : String.format(Locale.ROOT, "%.3f", v);
+    }
+}
@@ -0,0 +1,75 @@
+package com.promixa.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event spanning one job from start to finish, with the time
+ * it spent in each phase. Record with e.g.
+ * {@code -XX:StartFlightRecording=filename=promixa.jfr} and look for
+ * "Transcription Job" under the PROMIXA category in JDK Mission Control.
+ */
+@Name("com.promixa.TranscriptionJob")
+@Label("Transcription Job")
+@Category("PROMIXA")
+@Description("One audio file transcribed by the engine")
+public class TranscriptionJobEvent extends Event {
+
+    @Label("Job Id")
+    public long jobId;
+
+    @Label("File")
+    public String file;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Chunked")
+    public boolean chunked;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Worker Spawn")
+    @Timespan(Timespan.NANOSECONDS)
+    public long spawn;
+
+    @Label("Model Load")
+    @Timespan(Timespan.NANOSECONDS)
+    public long modelLoad;
+
+    @Label("Audio Decode")
+    @Timespan(Timespan.NANOSECONDS)
+    public long audioDecode;
+
+    @Label("Inference")
+    @Timespan(Timespan.NANOSECONDS)
+    public long inference;
+
+    @Label("Post-processing")
+    @Timespan(Timespan.NANOSECONDS)
+    public long postProcess;
+
+    @Label("Audio Seconds")
+    public double audioSeconds;
+
+    @Label("Real-time Factor")
+    @Description("Seconds of audio per second of processing")
+    public double realtimeFactor;
+
+    @Label("Worker RSS")
+    @DataAmount(DataAmount.BYTES)
+    public long workerRss;
+}
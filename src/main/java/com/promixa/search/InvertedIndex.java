@@ -0,0 +1,181 @@
+package com.promixa.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory inverted index from term to every place it occurs: transcript,
+ * segment and word position. Postings are kept per term as delta-encoded
+ * variable-length integers, so a typical occurrence costs two or three
+ * bytes, and are only expanded for the terms a query names.
+ * <p>
+ * Transcripts must be added in increasing id order, and segments of one
+ * transcript in order. Not thread-safe; {@link TranscriptStore} guards it.
+ */
+final class InvertedIndex {
+
+    static final int POSITION_BITS = 20;
+    static final int SEGMENT_BITS = 20;
+    static final int MAX_POSITION = (1 << POSITION_BITS) - 1;
+    static final int MAX_SEGMENT = (1 << SEGMENT_BITS) - 1;
+
+    /**
+     * Postings of one term in the order they were added: a transcript delta,
+     * then either a new segment and position or, within the same segment,
+     * a position delta.
+     */
+    static final class PostingList {
+        private byte[] data = new byte[8];
+        private int length;
+        private int count;
+        private int lastDoc;
+        private int lastSegment;
+        private int lastPosition;
+
+        void add(int doc, int segment, int position) {
+            if (doc != lastDoc) {
+                writeVarint(doc - lastDoc);
+                writeVarint(segment);
+                writeVarint(position);
+            } else if (segment != lastSegment) {
+                writeVarint(0);
+                writeVarint(segment - lastSegment);
+                writeVarint(position);
+            } else {
+                writeVarint(0);
+                writeVarint(0);
+                writeVarint(position - lastPosition);
+            }
+            lastDoc = doc;
+            lastSegment = segment;
+            lastPosition = position;
+            count++;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /** Bytes used by the encoded postings. */
+        int encodedBytes() {
+            return length;
+        }
+
+        /** Every occurrence as a {@link #key}, in ascending order. */
+        long[] decode() {
+            long[] keys = new long[count];
+            int offset = 0;
+            int doc = 0;
+            int segment = 0;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int docDelta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    docDelta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int segmentValue = 0;
+                shift = 0;
+                do {
+                    b = data[offset++];
+                    segmentValue |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int positionValue = 0;
+                shift = 0;
+                do {
+                    b = data[offset++];
+                    positionValue |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                if (docDelta != 0) {
+                    doc += docDelta;
+                    segment = segmentValue;
+                    position = positionValue;
+                } else if (segmentValue != 0) {
+                    segment += segmentValue;
+                    position = positionValue;
+                } else {
+                    position += positionValue;
+                }
+                keys[i] = key(doc, segment, position);
+            }
+            return keys;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + 5, data.length * 2));
+            }
+            while ((value & ~0x7f) != 0) {
+                data[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private long postingCount;
+
+    /** Indexes the words of one segment. */
+    void add(int doc, int segment, String text) {
+        if (segment > MAX_SEGMENT) {
+            return;
+        }
+        Tokenizer.tokenize(text, (term, position, offset) -> {
+            if (position <= MAX_POSITION) {
+                terms.computeIfAbsent(term, t -> new PostingList()).add(doc, segment, position);
+                postingCount++;
+            }
+        });
+    }
+
+    /** Postings of {@code term}, or {@code null} if it never occurs. */
+    PostingList get(String term) {
+        return terms.get(term);
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    long postingCount() {
+        return postingCount;
+    }
+
+    long encodedBytes() {
+        long bytes = 0;
+        for (PostingList postings : terms.values()) {
+            bytes += postings.encodedBytes();
+        }
+        return bytes;
+    }
+
+    /** Packs an occurrence into a long that sorts by transcript, segment, then position. */
+    static long key(int doc, int segment, int position) {
+        return (long) doc << (SEGMENT_BITS + POSITION_BITS) | (long) segment << POSITION_BITS | position;
+    }
+
+    static int docOf(long key) {
+        return (int) (key >>> (SEGMENT_BITS + POSITION_BITS));
+    }
+
+    static int segmentOf(long key) {
+        return (int) (key >>> POSITION_BITS) & MAX_SEGMENT;
+    }
+
+    static int positionOf(long key) {
+        return (int) key & MAX_POSITION;
+    }
+
+    /** The key with its position cleared, identifying the segment. */
+    static long segmentKey(long key) {
+        return key & ~(long) MAX_POSITION;
+    }
+}
@@ -0,0 +1,61 @@
+package com.promixa.search;
+
+/**
+ * A segment of a stored transcript that matches a query, with the time at
+ * which the first matching word is spoken.
+ */
+public class SearchHit {
+
+    private final StoredTranscript transcript;
+    private final int segmentIndex;
+    private final double segmentStart;
+    private final double segmentEnd;
+    private final double time;
+    private final String text;
+
+    SearchHit(StoredTranscript transcript, int segmentIndex, double segmentStart, double segmentEnd, double time,
+              String text) {
+        this.transcript = transcript;
+        this.segmentIndex = segmentIndex;
+        this.segmentStart = segmentStart;
+        this.segmentEnd = segmentEnd;
+        this.time = time;
+        this.text = text;
+    }
+
+    public StoredTranscript getTranscript() {
+        return transcript;
+    }
+
+    /** Index of the matching segment within its transcript. */
+    public int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    public double getSegmentStart() {
+        return segmentStart;
+    }
+
+    public double getSegmentEnd() {
+        return segmentEnd;
+    }
+
+    /**
+     * Seconds into the audio where the match is spoken. Whisper only times
+     * whole segments, so this is interpolated from where the word sits in
+     * the segment text.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /** Text of the matching segment. */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return transcript.getAudioFile().getName() + " @" + String.format("%.1f", time) + "s:" + text;
+    }
+}
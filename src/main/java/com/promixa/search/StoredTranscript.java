@@ -0,0 +1,58 @@
+package com.promixa.search;
+
+import java.io.File;
+
+/**
+ * A transcript kept by {@link TranscriptStore}: which file it came from and
+ * when. Its segments are read from disk on demand with
+ * {@link TranscriptStore#getSegments(StoredTranscript)}.
+ */
+public class StoredTranscript {
+
+    private final int id;
+    private final File audioFile;
+    private final String model;
+    private final long addedAt;
+    private final double audioSeconds;
+    /** Where the record's segments start in the log. */
+    final long segmentsOffset;
+    /** Offset of each segment from {@link #segmentsOffset}. */
+    final int[] segmentOffsets;
+    boolean removed;
+
+    StoredTranscript(int id, File audioFile, String model, long addedAt, double audioSeconds,
+                     long segmentsOffset, int[] segmentOffsets) {
+        this.id = id;
+        this.audioFile = audioFile;
+        this.model = model;
+        this.addedAt = addedAt;
+        this.audioSeconds = audioSeconds;
+        this.segmentsOffset = segmentsOffset;
+        this.segmentOffsets = segmentOffsets;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public File getAudioFile() {
+        return audioFile;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /** When the transcript was stored, in milliseconds since the epoch. */
+    public long getAddedAt() {
+        return addedAt;
+    }
+
+    public double getAudioSeconds() {
+        return audioSeconds;
+    }
+
+    public int getSegmentCount() {
+        return segmentOffsets.length;
+    }
+}
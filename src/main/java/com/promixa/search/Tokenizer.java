@@ -0,0 +1,66 @@
+package com.promixa.search;
+
+/**
+ * Splits transcript text into the terms the index stores: lower-cased runs
+ * of letters and digits. Ideographs (Chinese, Japanese kanji) are written
+ * without spaces, so each one is a term of its own and a phrase query finds
+ * a run of them.
+ */
+final class Tokenizer {
+
+    /** Receives each term with its word position and character offset. */
+    @FunctionalInterface
+    interface Sink {
+        void term(String term, int position, int offset);
+    }
+
+    private Tokenizer() {
+    }
+
+    /** Calls {@code sink} for every term of {@code text}, in order. */
+    static void tokenize(String text, Sink sink) {
+        StringBuilder term = new StringBuilder();
+        int position = 0;
+        int start = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            if (Character.isIdeographic(codePoint)) {
+                if (start >= 0) {
+                    sink.term(term.toString(), position++, start);
+                    term.setLength(0);
+                    start = -1;
+                }
+                sink.term(new String(Character.toChars(codePoint)), position++, i);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+                term.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (start >= 0) {
+                sink.term(term.toString(), position++, start);
+                term.setLength(0);
+                start = -1;
+            }
+            i = next;
+        }
+        if (start >= 0) {
+            sink.term(term.toString(), position, start);
+        }
+    }
+
+    /**
+     * Character offset of the word at {@code position} in {@code text}, or
+     * -1 if the text has fewer words.
+     */
+    static int offsetOf(String text, int position) {
+        int[] found = {-1};
+        tokenize(text, (term, index, offset) -> {
+            if (index == position) {
+                found[0] = offset;
+            }
+        });
+        return found[0];
+    }
+}
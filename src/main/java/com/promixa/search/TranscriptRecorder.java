@@ -0,0 +1,42 @@
+package com.promixa.search;
+
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionQueue;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds every job that completes to a {@link TranscriptStore}, on the thread
+ * that ran it, so a transcript is searchable as soon as its job is done.
+ */
+public class TranscriptRecorder implements TranscriptionQueue.Listener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptRecorder.class);
+
+    private final TranscriptStore store;
+    private final Set<Long> recorded = ConcurrentHashMap.newKeySet();
+
+    public TranscriptRecorder(TranscriptStore store) {
+        this.store = store;
+    }
+
+    public TranscriptStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void jobUpdated(TranscriptionJob job) {
+        if (job.getState() == TranscriptionJob.State.COMPLETED && recorded.add(job.getId())) {
+            try {
+                store.add(job.getAudioFile(), job.getResult());
+            } catch (IOException e) {
+                LOG.warn("Cannot store the transcript of {}: {}", job.getAudioFile(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.promixa.search;
+
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionResult;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Every finished transcript, kept across restarts and searchable by word.
+ * <p>
+ * Transcripts are appended to a single log file as length-prefixed,
+ * checksummed records, so a record cut short by a crash is dropped on the
+ * next open without losing the ones before it. Storing a newer transcript of
+ * the same file, or removing one, appends a tombstone for the old record.
+ * Opening the store reads the log once to rebuild an {@link InvertedIndex};
+ * only transcript metadata and the index stay in memory, and the text of
+ * matching segments is read back from the log.
+ * <p>
+ * A query is a list of words that must all occur in the same segment, or a
+ * phrase in double quotes whose words must occur in order. Hits come from the
+ * newest transcripts first.
+ */
+public class TranscriptStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptStore.class);
+
+    public static final String LOG_FILE = "transcripts.log";
+
+    private static final int MAGIC = 0x504d5853;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    /** Length and CRC-32 of the payload. */
+    private static final int RECORD_HEADER_BYTES = 8;
+    /** Start, end and text length. */
+    private static final int SEGMENT_HEADER_BYTES = 20;
+    private static final byte TYPE_TRANSCRIPT = 1;
+    private static final byte TYPE_REMOVED = 2;
+    /** Transcript ids share a long with the segment and position; see {@link InvertedIndex#key}. */
+    private static final int MAX_TRANSCRIPTS = (1 << 23) - 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final InvertedIndex index = new InvertedIndex();
+    /** All transcripts ever stored, removed ones included; id {@code n} is at {@code n - 1}. */
+    private final List<StoredTranscript> transcripts = new ArrayList<>();
+    /** The live transcript of each audio file. */
+    private final Map<String, StoredTranscript> latest = new HashMap<>();
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed.
+     *
+     * @throws IOException if the log cannot be read or is not a transcript log
+     */
+    public TranscriptStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(LOG_FILE);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the transcript of {@code audioFile}, replacing an earlier one
+     * of the same file, and makes it searchable.
+     */
+    public synchronized StoredTranscript add(File audioFile, TranscriptionResult result) throws IOException {
+        int id = transcripts.size() + 1;
+        if (id > MAX_TRANSCRIPTS) {
+            throw new IOException("Transcript store " + file + " is full.");
+        }
+        String path = audioFile.getAbsolutePath();
+        String model = result.getModel() != null ? result.getModel() : "";
+        long addedAt = System.currentTimeMillis();
+        List<Segment> segments = result.getSegments();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + segments.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_TRANSCRIPT);
+        out.writeInt(id);
+        writeString(out, path);
+        writeString(out, model);
+        out.writeLong(addedAt);
+        out.writeDouble(result.getAudioSeconds());
+        out.writeInt(segments.size());
+        int segmentsStart = bytes.size();
+        int[] offsets = new int[segments.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            Segment segment = segments.get(i);
+            offsets[i] = bytes.size() - segmentsStart;
+            out.writeDouble(segment.getStart());
+            out.writeDouble(segment.getEnd());
+            writeString(out, segment.getText());
+        }
+        long payloadOffset = append(bytes.toByteArray());
+
+        StoredTranscript previous = latest.get(path);
+        if (previous != null) {
+            remove(previous);
+        }
+        StoredTranscript transcript = new StoredTranscript(id, new File(path), model, addedAt,
+                result.getAudioSeconds(), payloadOffset + segmentsStart, offsets);
+        register(transcript);
+        for (int i = 0; i < offsets.length; i++) {
+            index.add(id, i, segments.get(i).getText());
+        }
+        return transcript;
+    }
+
+    /**
+     * Drops a transcript from search results and listings. The space is not
+     * reclaimed.
+     *
+     * @return false if it was already removed
+     */
+    public synchronized boolean remove(StoredTranscript transcript) throws IOException {
+        if (transcript.removed) {
+            return false;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_REMOVED);
+        out.writeInt(transcript.getId());
+        append(bytes.toByteArray());
+        markRemoved(transcript);
+        return true;
+    }
+
+    /** Live transcripts, newest first. */
+    public synchronized List<StoredTranscript> getTranscripts() {
+        List<StoredTranscript> live = new ArrayList<>(latest.size());
+        for (int i = transcripts.size() - 1; i >= 0; i--) {
+            if (!transcripts.get(i).removed) {
+                live.add(transcripts.get(i));
+            }
+        }
+        return live;
+    }
+
+    /** Number of live transcripts. */
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    /** Reads a stored transcript's segments back from disk. */
+    public synchronized List<Segment> getSegments(StoredTranscript transcript) throws IOException {
+        List<Segment> segments = new ArrayList<>(transcript.getSegmentCount());
+        for (int i = 0; i < transcript.getSegmentCount(); i++) {
+            segments.add(readSegment(transcript, i));
+        }
+        return segments;
+    }
+
+    /**
+     * Finds up to {@code limit} segments matching {@code query}: all of its
+     * words in one segment, or, when the query is in double quotes, the
+     * words in that order. Case and punctuation are ignored.
+     */
+    public synchronized List<SearchHit> search(String query, int limit) throws IOException {
+        String trimmed = query.strip();
+        boolean phrase = trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+        List<String> terms = new ArrayList<>();
+        Tokenizer.tokenize(trimmed, (term, position, offset) -> terms.add(term));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        InvertedIndex.PostingList[] lists = new InvertedIndex.PostingList[terms.size()];
+        int rarest = 0;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = index.get(terms.get(i));
+            if (lists[i] == null) {
+                return List.of();
+            }
+            if (lists[i].size() < lists[rarest].size()) {
+                rarest = i;
+            }
+        }
+        long[][] postings = new long[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            postings[i] = lists[i].decode();
+        }
+
+        // The rarest term drives the scan; newest transcripts first, each in segment order
+        long[] anchors = postings[rarest];
+        List<Long> matches = new ArrayList<>();
+        int end = anchors.length;
+        while (end > 0 && matches.size() < limit) {
+            int doc = InvertedIndex.docOf(anchors[end - 1]);
+            int start = end - 1;
+            while (start > 0 && InvertedIndex.docOf(anchors[start - 1]) == doc) {
+                start--;
+            }
+            if (!transcripts.get(doc - 1).removed) {
+                long lastSegment = -1;
+                for (int i = start; i < end && matches.size() < limit; i++) {
+                    long match = phrase ? matchPhrase(anchors[i], rarest, postings)
+                            : matchSegment(anchors[i], rarest, postings);
+                    if (match >= 0 && InvertedIndex.segmentKey(match) != lastSegment) {
+                        matches.add(match);
+                        lastSegment = InvertedIndex.segmentKey(match);
+                    }
+                }
+            }
+            end = start;
+        }
+
+        List<SearchHit> hits = new ArrayList<>(matches.size());
+        for (long match : matches) {
+            StoredTranscript transcript = transcripts.get(InvertedIndex.docOf(match) - 1);
+            int segmentIndex = InvertedIndex.segmentOf(match);
+            Segment segment = readSegment(transcript, segmentIndex);
+            String text = segment.getText();
+            int offset = Math.max(0, Tokenizer.offsetOf(text, InvertedIndex.positionOf(match)));
+            double time = segment.getStart()
+                    + (segment.getEnd() - segment.getStart()) * offset / Math.max(1, text.length());
+            hits.add(new SearchHit(transcript, segmentIndex, segment.getStart(), segment.getEnd(), time,
+                    text.strip()));
+        }
+        return hits;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The first occurrence of any query term in the anchor's segment if all
+     * of them occur there, otherwise -1.
+     */
+    private static long matchSegment(long anchor, int anchorTerm, long[][] postings) {
+        long segment = InvertedIndex.segmentKey(anchor);
+        long first = anchor;
+        for (int i = 0; i < postings.length; i++) {
+            if (i == anchorTerm) {
+                continue;
+            }
+            int index = Arrays.binarySearch(postings[i], segment);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index >= postings[i].length || InvertedIndex.segmentKey(postings[i][index]) != segment) {
+                return -1;
+            }
+            first = Math.min(first, postings[i][index]);
+        }
+        return first;
+    }
+
+    /**
+     * The occurrence of the phrase's first word if the anchor, term number
+     * {@code anchorTerm} of the phrase, is part of the whole phrase, otherwise -1.
+     */
+    private static long matchPhrase(long anchor, int anchorTerm, long[][] postings) {
+        if (InvertedIndex.positionOf(anchor) < anchorTerm) {
+            return -1;
+        }
+        long first = anchor - anchorTerm;
+        for (int i = 0; i < postings.length; i++) {
+            if (i != anchorTerm && Arrays.binarySearch(postings[i], first + i) < 0) {
+                return -1;
+            }
+        }
+        return first;
+    }
+
+    private void load() throws IOException {
+        long started = System.nanoTime();
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(header, 0);
+            channel.force(false);
+            return;
+        }
+
+        long position = 0;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            if (size < HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a transcript store.");
+            }
+            position = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            while (size - position >= RECORD_HEADER_BYTES) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > size - position - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                replay(ByteBuffer.wrap(payload), position + RECORD_HEADER_BYTES);
+                position += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // Handled below like any other incomplete tail
+        }
+        if (position < size) {
+            LOG.warn("Dropping {} bytes of an incomplete record at the end of {}", size - position, file);
+            channel.truncate(position);
+        }
+        LOG.info("Loaded {} transcripts ({} terms, {} postings in {} KB) in {} ms", latest.size(),
+                index.termCount(), index.postingCount(), index.encodedBytes() / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void replay(ByteBuffer record, long payloadOffset) throws IOException {
+        byte type = record.get();
+        int id = record.getInt();
+        if (type == TYPE_REMOVED) {
+            if (id >= 1 && id <= transcripts.size()) {
+                markRemoved(transcripts.get(id - 1));
+            }
+            return;
+        }
+        if (type != TYPE_TRANSCRIPT || id != transcripts.size() + 1) {
+            throw new IOException("Unexpected record in " + file + " at " + payloadOffset);
+        }
+        String path = readString(record);
+        String model = readString(record);
+        long addedAt = record.getLong();
+        double audioSeconds = record.getDouble();
+        int[] offsets = new int[record.getInt()];
+        int segmentsStart = record.position();
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = record.position() - segmentsStart;
+            record.position(record.position() + 16);
+            index.add(id, i, readString(record));
+        }
+        StoredTranscript previous = latest.get(path);
+        if (previous != null) {
+            // Its tombstone follows this record; a crash may have cut it off
+            markRemoved(previous);
+        }
+        register(new StoredTranscript(id, new File(path), model, addedAt, audioSeconds,
+                payloadOffset + segmentsStart, offsets));
+    }
+
+    private void register(StoredTranscript transcript) {
+        transcripts.add(transcript);
+        latest.put(transcript.getAudioFile().getPath(), transcript);
+    }
+
+    private void markRemoved(StoredTranscript transcript) {
+        transcript.removed = true;
+        latest.remove(transcript.getAudioFile().getPath(), transcript);
+    }
+
+    private Segment readSegment(StoredTranscript transcript, int index) throws IOException {
+        long offset = transcript.segmentsOffset + transcript.segmentOffsets[index];
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        readFully(header, offset);
+        header.flip();
+        double start = header.getDouble();
+        double end = header.getDouble();
+        ByteBuffer text = ByteBuffer.allocate(header.getInt());
+        readFully(text, offset + SEGMENT_HEADER_BYTES);
+        return new Segment(start, end, new String(text.array(), StandardCharsets.UTF_8));
+    }
+
+    /** Appends a record and returns the file offset of its payload. */
+    private long append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        long offset = channel.size();
+        writeFully(record, offset);
+        channel.force(false);
+        return offset + RECORD_HEADER_BYTES;
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Truncated record in " + file);
+            }
+            offset += read;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+package com.promixa.server;
+
+import com.promixa.AppDirectories;
+import com.promixa.CommandLineArgs;
+import com.promixa.cache.TranscriptCache;
+import com.promixa.engine.EnvironmentProbe;
+import com.promixa.engine.PoolSizing;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.engine.TranscriptionService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link TranscriptionServer} until the process is stopped. Started with
+ * {@code promixa --serve [options]}.
+ */
+public final class ServerMain {
+
+    static final int DEFAULT_PORT = 8765;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: promixa --serve [options]",
+            "",
+            "Options:",
+            "  --port N              port to listen on (default: " + DEFAULT_PORT + ")",
+            "  --bind ADDRESS        interface to listen on (default: 127.0.0.1)",
+            "  --parallel N          files transcribed at once (default: fits free memory for base)",
+            "  --max-queued N        jobs waiting or running before uploads get 503 (default: 16)",
+            "  --max-upload-mb N     largest accepted upload (default: 1024)",
+            "  --preload MODELS      comma-separated models to load at startup, e.g. tiny,small",
+            "  --max-models N        models each worker keeps loaded (default: 2)",
+            "  --model-memory-mb N   memory all loaded models may use (default: 80% of free memory)",
+            "  --timeout MIN         fail a file still running after MIN minutes (default: 0, off)",
+            "  --stall-timeout MIN   fail a file when its worker is silent for MIN minutes",
+            "                        (default: 10, 0 turns it off)",
+            "  --no-cache            do not read or write the transcript cache",
+            "  --python PATH         Python interpreter that has Whisper installed",
+            "  --script PATH         worker script to run instead of the bundled whisper_script.py",
+            "  --help                show this message");
+
+    private ServerMain() {
+    }
+
+    public static void main(String[] args) {
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Starts the server and returns 0, leaving it running on its own threads,
+     * or returns 2 on a usage error.
+     */
+    static int run(String[] args) {
+        int port = DEFAULT_PORT;
+        String bind = "127.0.0.1";
+        int parallelism = PoolSizing.recommendedWorkers("base");
+        int maxQueued = 16;
+        long maxUploadMb = 1024;
+        boolean useCache = true;
+        long jobTimeoutMinutes = 0;
+        long stallTimeoutMinutes = TimeUnit.MILLISECONDS.toMinutes(TranscriptionQueue.DEFAULT_STALL_TIMEOUT_MS);
+        String[] preload = new String[0];
+        int maxModels = 0;
+        long modelMemoryMb = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--port":
+                        port = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--bind":
+                        bind = CommandLineArgs.value(args, ++i, arg);
+                        break;
+                    case "--parallel":
+                        parallelism = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--max-queued":
+                        maxQueued = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--max-upload-mb":
+                        maxUploadMb = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--preload":
+                        preload = CommandLineArgs.value(args, ++i, arg).split(",");
+                        break;
+                    case "--max-models":
+                        maxModels = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--model-memory-mb":
+                        modelMemoryMb = CommandLineArgs.positiveInt(args, ++i, arg);
+                        break;
+                    case "--timeout":
+                        jobTimeoutMinutes = CommandLineArgs.nonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--stall-timeout":
+                        stallTimeoutMinutes = CommandLineArgs.nonNegativeInt(args, ++i, arg);
+                        break;
+                    case "--no-cache":
+                        useCache = false;
+                        break;
+                    case "--python":
+                        System.setProperty("promixa.python", CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--script":
+                        System.setProperty("promixa.script", CommandLineArgs.value(args, ++i, arg));
+                        break;
+                    case "--help":
+                    case "-h":
+                        System.out.println(USAGE);
+                        return 0;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        TranscriptionService service = TranscriptionService.createDefault();
+        service.setParallelism(parallelism);
+        service.setTimeouts(TimeUnit.MINUTES.toMillis(jobTimeoutMinutes), TimeUnit.MINUTES.toMillis(stallTimeoutMinutes));
+        if (maxModels > 0) {
+            service.getResidency().setMaxModelsPerWorker(maxModels);
+        }
+        if (modelMemoryMb > 0) {
+            service.getResidency().setMemoryBudgetBytes(modelMemoryMb * 1024 * 1024);
+        }
+        if (useCache) {
+            try {
+                service.enableCache(AppDirectories.cacheDir(), TranscriptCache.DEFAULT_MAX_BYTES);
+            } catch (IOException e) {
+                System.err.println("Transcript cache disabled: " + e.getMessage());
+            }
+        }
+
+        TranscriptionServer server;
+        try {
+            // Enough handler threads for every queued job to have a client streaming it, plus a few for polling
+            server = new TranscriptionServer(service, new InetSocketAddress(bind, port), maxQueued,
+                    maxUploadMb * 1024 * 1024, AppDirectories.uploadDir(), maxQueued + 4);
+        } catch (IOException e) {
+            System.err.println("Cannot start server on " + bind + ":" + port + ": " + e.getMessage());
+            service.close();
+            return 2;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            service.close();
+        }, "server-shutdown"));
+        server.start();
+        EnvironmentProbe.createDefault(AppDirectories.environmentCacheFile()).probe().thenAccept(report -> {
+            if (!report.isReady()) {
+                System.err.println("Warning: " + report);
+            }
+        });
+        if (preload.length > 0) {
+            service.preloadModels(preload);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,581 @@
+package com.promixa.server;
+
+import com.promixa.engine.QueueStats;
+import com.promixa.engine.Segment;
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionOptions;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.engine.TranscriptionResult;
+import com.promixa.engine.TranscriptionService;
+import com.promixa.export.ExportFormat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small HTTP front end to a {@link TranscriptionService}, so other tools on the
+ * same host can use the warm worker pool instead of starting Whisper
+ * themselves.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *   <li>{@code POST /jobs?model=&language=&name=} with the audio as the body:
+ *       queues a job and answers 202 with its id</li>
+ *   <li>{@code GET /jobs} and {@code GET /jobs/{id}}: job status, and the
+ *       transcript once done; {@code ?wait=N} blocks up to N seconds for the
+ *       job to finish</li>
+ *   <li>{@code GET /jobs/{id}/stream}: segments as newline-delimited JSON
+ *       while they are decoded, ending with the final status</li>
+ *   <li>{@code GET /jobs/{id}/transcript?format=}: a finished transcript as
+ *       txt, srt, vtt or json</li>
+ *   <li>{@code DELETE /jobs/{id}}: cancels a job</li>
+ *   <li>{@code GET /health}: queue statistics</li>
+ *   <li>{@code GET /metrics}: the engine's counters and per-phase timing
+ *       distributions</li>
+ * </ul>
+ * At most {@code maxQueued} uploaded jobs may be waiting or running. Further
+ * uploads are refused with 503 and a {@code Retry-After} header before their
+ * body is read, so a busy server does not buffer audio it cannot process.
+ * <p>
+ * Long polls and streams hold a handler thread while they wait. All but a
+ * couple of the handler threads may be held that way; beyond that they are
+ * refused with 503 and a {@code Retry-After} header, so uploads, status and
+ * health checks are always answered.
+ */
+public class TranscriptionServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscriptionServer.class);
+
+    private static final Set<String> MODELS = Set.of("tiny", "base", "small", "medium", "large");
+    private static final int MAX_RETAINED_JOBS = 1000;
+    private static final int MAX_WAIT_SECONDS = 300;
+    private static final int RETRY_AFTER_SECONDS = 5;
+    /** Handler threads that long polls and streams may not take. */
+    private static final int RESERVED_HANDLERS = 2;
+
+    private final TranscriptionService service;
+    private final Path uploadDir;
+    private final long maxUploadBytes;
+    private final int maxQueued;
+    private final Semaphore slots;
+    private final int maxWaiters;
+    private final Semaphore waiters;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    // Jobs that still hold a queue slot, with the upload to delete when they finish
+    private final Map<Long, Path> activeUploads = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Long, TranscriptionJob> jobs = new LinkedHashMap<>();
+    private final Object updates = new Object();
+
+    public TranscriptionServer(TranscriptionService service, InetSocketAddress address, int maxQueued,
+                               long maxUploadBytes, Path uploadDir, int handlerThreads) throws IOException {
+        this.service = service;
+        this.uploadDir = uploadDir;
+        this.maxUploadBytes = maxUploadBytes;
+        this.maxQueued = Math.max(1, maxQueued);
+        this.slots = new Semaphore(this.maxQueued);
+        Files.createDirectories(uploadDir);
+
+        service.getQueue().addListener(new TranscriptionQueue.Listener() {
+            @Override
+            public void jobUpdated(TranscriptionJob job) {
+                if (job.getState().isFinished()) {
+                    finished(job);
+                }
+                signal();
+            }
+
+            @Override
+            public void segmentAdded(TranscriptionJob job, Segment segment) {
+                signal();
+            }
+        });
+
+        int poolSize = Math.max(RESERVED_HANDLERS + 1, handlerThreads);
+        this.maxWaiters = poolSize - RESERVED_HANDLERS;
+        this.waiters = new Semaphore(maxWaiters);
+        this.executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "http-handler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpServer = HttpServer.create(address, 0);
+        httpServer.createContext("/jobs", this::handleJobs);
+        httpServer.createContext("/health", this::handleHealth);
+        httpServer.createContext("/metrics", this::handleMetrics);
+        httpServer.setExecutor(executor);
+    }
+
+    public void start() {
+        httpServer.start();
+        LOG.info("Transcription server listening on http://{}:{} (max {} queued jobs)",
+                getAddress().getHostString(), getAddress().getPort(), maxQueued);
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /** Snapshot of remembered jobs, oldest first. */
+    public List<TranscriptionJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Stops accepting requests, giving open exchanges up to {@code delaySeconds}
+     * to finish. The service itself is left to its owner.
+     */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        executor.shutdownNow();
+        signal();
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            String[] parts = path.replaceAll("/+$", "").split("/");
+            // parts: "", "jobs", [id], [stream|transcript]
+            if (parts.length == 2) {
+                if (method.equals("POST")) {
+                    submit(exchange);
+                } else if (method.equals("GET")) {
+                    listJobs(exchange);
+                } else {
+                    sendError(exchange, 405, "Use GET or POST on /jobs.");
+                }
+                return;
+            }
+
+            TranscriptionJob job = parts.length <= 4 ? findJob(parts[2]) : null;
+            if (job == null) {
+                sendError(exchange, 404, "No such job: " + path);
+            } else if (parts.length == 4 && parts[3].equals("stream") && method.equals("GET")) {
+                stream(exchange, job);
+            } else if (parts.length == 4 && parts[3].equals("transcript") && method.equals("GET")) {
+                transcript(exchange, job);
+            } else if (parts.length == 3 && method.equals("GET")) {
+                status(exchange, job);
+            } else if (parts.length == 3 && method.equals("DELETE")) {
+                service.getQueue().cancel(job);
+                sendJson(exchange, 202, toJson(job, false));
+            } else {
+                sendError(exchange, 405, "Unsupported request: " + method + " " + path);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("HTTP request failed", e);
+            sendError(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            QueueStats stats = service.getQueue().getStats();
+            sendJson(exchange, 200, Json.createObjectBuilder()
+                    .add("status", "ok")
+                    .add("running", stats.getRunning())
+                    .add("queued", stats.getQueued())
+                    .add("completed", stats.getCompleted())
+                    .add("capacity", maxQueued)
+                    .add("availableSlots", slots.availablePermits())
+                    .add("filesPerMinute", stats.getFilesPerMinute())
+                    .add("realtimeFactor", stats.getAudioSecondsPerWallSecond())
+                    .add("workers", service.getWorkerManager().getMaxWorkers())
+                    .build());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            sendJson(exchange, 200, service.getMetrics().toJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String model = query.getOrDefault("model", "base");
+        if (!MODELS.contains(model)) {
+            sendError(exchange, 400, "Unknown model: " + model);
+            return;
+        }
+        String lengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (lengthHeader != null && parseLong(lengthHeader) > maxUploadBytes) {
+            sendError(exchange, 413, "Upload larger than " + maxUploadBytes + " bytes.");
+            return;
+        }
+
+        // Backpressure: refuse before reading the body when the queue is full
+        if (!slots.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            sendError(exchange, 503, "Queue is full (" + maxQueued + " jobs); retry later.");
+            return;
+        }
+        Path upload = null;
+        try {
+            upload = uploadDir.resolve(UUID.randomUUID() + "-" + safeName(query.getOrDefault("name", "audio.wav")));
+            if (!receive(exchange.getRequestBody(), upload)) {
+                Files.deleteIfExists(upload);
+                slots.release();
+                sendError(exchange, 413, "Upload larger than " + maxUploadBytes + " bytes.");
+                return;
+            }
+        } catch (IOException e) {
+            if (upload != null) {
+                Files.deleteIfExists(upload);
+            }
+            slots.release();
+            throw e;
+        }
+
+        String language = query.get("language");
+        TranscriptionOptions options = new TranscriptionOptions(language == null || language.isEmpty() ? null : language, 0, 1);
+        TranscriptionJob job = new TranscriptionJob(upload.toFile(), model, options);
+        activeUploads.put(job.getId(), upload);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            forgetOldJobs();
+        }
+        service.getQueue().submit(job);
+
+        exchange.getResponseHeaders().set("Location", "/jobs/" + job.getId());
+        sendJson(exchange, 202, toJson(job, false));
+    }
+
+    /** Copies the body to a file, returning {@code false} if it exceeds the upload limit. */
+    private boolean receive(InputStream body, Path target) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = body; OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxUploadBytes) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private void listJobs(HttpExchange exchange) throws IOException {
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        synchronized (jobs) {
+            for (TranscriptionJob job : jobs.values()) {
+                array.add(toJson(job, false));
+            }
+        }
+        sendJson(exchange, 200, Json.createObjectBuilder().add("jobs", array).build());
+    }
+
+    private void status(HttpExchange exchange, TranscriptionJob job) throws IOException {
+        String wait = parseQuery(exchange.getRequestURI().getRawQuery()).get("wait");
+        long waitSeconds = wait != null ? Math.min(MAX_WAIT_SECONDS, Math.max(0, parseLong(wait))) : 0;
+        if (waitSeconds > 0 && !job.getState().isFinished()) {
+            if (!acquireWaiter(exchange)) {
+                return;
+            }
+            try {
+                if (!awaitChange(() -> job.getState().isFinished(),
+                        System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds))) {
+                    return;
+                }
+            } finally {
+                waiters.release();
+            }
+        }
+        sendJson(exchange, 200, toJson(job, true));
+    }
+
+    /**
+     * Streams segments as they are decoded, one JSON object per line, then
+     * the job's final status.
+     */
+    private void stream(HttpExchange exchange, TranscriptionJob job) throws IOException {
+        boolean waiting = !job.getState().isFinished();
+        if (waiting && !acquireWaiter(exchange)) {
+            return;
+        }
+        try {
+            streamSegments(exchange, job);
+        } finally {
+            if (waiting) {
+                waiters.release();
+            }
+        }
+    }
+
+    private void streamSegments(HttpExchange exchange, TranscriptionJob job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int sent = 0;
+        while (true) {
+            // Read the state first: once it is final, every segment has been added
+            boolean finished = job.getState().isFinished();
+            List<Segment> segments = job.getSegments(sent);
+            for (Segment segment : segments) {
+                writeLine(out, Json.createObjectBuilder()
+                        .add("type", "segment")
+                        .add("start", segment.getStart())
+                        .add("end", segment.getEnd())
+                        .add("text", segment.getText())
+                        .build());
+            }
+            sent += segments.size();
+            if (finished) {
+                break;
+            }
+            out.flush();
+            int seen = sent;
+            if (!awaitChange(() -> job.getState().isFinished() || job.getSegmentCount() > seen,
+                    System.nanoTime() + TimeUnit.SECONDS.toNanos(MAX_WAIT_SECONDS))) {
+                return;
+            }
+        }
+        writeLine(out, Json.createObjectBuilder(toJson(job, false)).add("type", "status").build());
+        out.close();
+    }
+
+    /**
+     * Sends a finished job's transcript as a file in the format named by
+     * {@code ?format=} (txt, srt, vtt or json; txt by default), streamed
+     * without a known length.
+     */
+    private void transcript(HttpExchange exchange, TranscriptionJob job) throws IOException {
+        String name = parseQuery(exchange.getRequestURI().getRawQuery()).getOrDefault("format", "txt");
+        ExportFormat format;
+        try {
+            format = ExportFormat.fromName(name);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        if (job.getState() != TranscriptionJob.State.COMPLETED) {
+            sendError(exchange, 409, "Job " + job.getId() + " is " + job.getState() + ".");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", format.getMediaType());
+        exchange.getResponseHeaders().set("Content-Disposition",
+                "attachment; filename=\"" + format.fileNameFor(new File(displayName(job))).replace("\"", "") + "\"");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            format.write(new File(displayName(job)), job.getResult(), out);
+        }
+    }
+
+    /**
+     * Takes one of the handler threads allowed to block, or answers 503 when
+     * none is left.
+     */
+    private boolean acquireWaiter(HttpExchange exchange) throws IOException {
+        if (waiters.tryAcquire()) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        sendError(exchange, 503, "Too many clients waiting (" + maxWaiters + "); retry later.");
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean holds();
+    }
+
+    /**
+     * Waits until the condition holds or the deadline passes.
+     *
+     * @return {@code false} if the server is stopping and the exchange should be dropped
+     */
+    private boolean awaitChange(Condition condition, long deadlineNanos) {
+        synchronized (updates) {
+            while (!condition.holds()) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return true;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(updates, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void signal() {
+        synchronized (updates) {
+            updates.notifyAll();
+        }
+    }
+
+    private void finished(TranscriptionJob job) {
+        Path upload = activeUploads.remove(job.getId());
+        if (upload == null) {
+            return;
+        }
+        slots.release();
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException e) {
+            LOG.warn("Could not delete upload {}: {}", upload, e.getMessage());
+        }
+        // The server keeps its own job history; don't let the queue's grow without bound
+        service.getQueue().clearFinished();
+    }
+
+    private TranscriptionJob findJob(String id) {
+        try {
+            synchronized (jobs) {
+                return jobs.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Drops the oldest finished jobs once too many are remembered. */
+    private void forgetOldJobs() {
+        Iterator<TranscriptionJob> it = jobs.values().iterator();
+        while (jobs.size() > MAX_RETAINED_JOBS && it.hasNext()) {
+            if (it.next().getState().isFinished()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static JsonObject toJson(TranscriptionJob job, boolean withTranscript) {
+        JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("id", job.getId())
+                .add("file", displayName(job))
+                .add("model", job.getModel())
+                .add("state", job.getState().name().toLowerCase())
+                .add("message", job.getMessage())
+                .add("segmentCount", job.getSegmentCount())
+                .add("queuedAt", job.getQueuedAt());
+        if (job.getStartedAt() > 0) {
+            json.add("startedAt", job.getStartedAt());
+        }
+        if (job.getFinishedAt() > 0) {
+            json.add("finishedAt", job.getFinishedAt());
+        }
+        if (job.getError() != null) {
+            json.add("error", job.getError());
+        }
+        TranscriptionResult result = job.getResult();
+        if (withTranscript && result != null) {
+            JsonArrayBuilder segments = Json.createArrayBuilder();
+            for (Segment segment : result.getSegments()) {
+                segments.add(Json.createObjectBuilder()
+                        .add("start", segment.getStart())
+                        .add("end", segment.getEnd())
+                        .add("text", segment.getText()));
+            }
+            json.add("text", result.getText())
+                    .add("audioSeconds", result.getAudioSeconds())
+                    .add("processingSeconds", result.getProcessingSeconds())
+                    .add("segments", segments);
+        }
+        return json.build();
+    }
+
+    /** Upload name without the random prefix added on receipt. */
+    private static String displayName(TranscriptionJob job) {
+        String name = job.getAudioFile().getName();
+        return name.length() > 37 && name.charAt(36) == '-' ? name.substring(37) : name;
+    }
+
+    private static void writeLine(OutputStream out, JsonObject json) throws IOException {
+        out.write((json.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonObject json) throws IOException {
+        byte[] body = (json.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Json.createObjectBuilder().add("error", message).build());
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Keeps the extension (ffmpeg uses it as a hint) but nothing that could escape the upload folder. */
+    private static String safeName(String name) {
+        String cleaned = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        cleaned = cleaned.replaceAll("^\\.+", "");
+        if (cleaned.isEmpty()) {
+            return "audio";
+        }
+        return cleaned.length() > 100 ? cleaned.substring(cleaned.length() - 100) : cleaned;
+    }
+}
@@ -0,0 +1,53 @@
+package com.promixa.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+/**
+ * Collects items reported from background threads and hands them to the FX
+ * thread in batches: however many arrive before the FX thread gets round to
+ * it, there is one {@link Platform#runLater} and each item appears once, in
+ * the order it was first reported.
+ */
+public class FxUpdateBatcher<T> {
+
+    private final Consumer<List<T>> consumer;
+    private final Set<T> pending = new LinkedHashSet<>();
+    private boolean scheduled;
+
+    /**
+     * @param consumer called on the FX thread with each batch, never empty
+     */
+    public FxUpdateBatcher(Consumer<List<T>> consumer) {
+        this.consumer = consumer;
+    }
+
+    /** Queues {@code item} for the next batch. May be called from any thread. */
+    public void add(T item) {
+        synchronized (pending) {
+            pending.add(item);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        Platform.runLater(this::drain);
+    }
+
+    private void drain() {
+        List<T> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            scheduled = false;
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.promixa.ui;
+
+import com.promixa.engine.Segment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Append-only, observable list of transcript segments kept in a compact form:
+ * times in two primitive arrays and all text in one character buffer, so a
+ * transcript with hundreds of thousands of segments costs a few bytes per
+ * segment beyond its text. {@link Segment} objects are only created for the
+ * rows a view actually asks for.
+ * <p>
+ * Like any list backing a control, it must be modified on the FX thread.
+ */
+public class SegmentList extends ObservableListBase<Segment> {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private double[] starts = new double[INITIAL_CAPACITY];
+    private double[] ends = new double[INITIAL_CAPACITY];
+    /** End offset of each segment's text in {@link #text}. */
+    private int[] textEnds = new int[INITIAL_CAPACITY];
+    private final StringBuilder text = new StringBuilder();
+    private int size;
+    private boolean sorted = true;
+
+    @Override
+    public Segment get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return new Segment(starts[index], ends[index], segmentText(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Start of segment {@code index} in seconds, without creating a {@link Segment}. */
+    public double getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Appends segments as a single change, so a burst of decoded segments
+     * updates the view once.
+     */
+    public void appendAll(List<Segment> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        int from = size;
+        ensureCapacity(size + segments.size());
+        for (Segment segment : segments) {
+            if (size > 0 && segment.getStart() < starts[size - 1]) {
+                sorted = false;
+            }
+            starts[size] = segment.getStart();
+            ends[size] = segment.getEnd();
+            text.append(segment.getText());
+            textEnds[size] = text.length();
+            size++;
+        }
+        beginChange();
+        nextAdd(from, size);
+        endChange();
+    }
+
+    /**
+     * Index of the segment playing at {@code seconds}: the last one starting
+     * at or before it, or 0 if the time is before the first segment.
+     */
+    public int indexAt(double seconds) {
+        if (size == 0) {
+            return -1;
+        }
+        if (!sorted) {
+            int best = 0;
+            for (int i = 0; i < size; i++) {
+                if (starts[i] <= seconds && starts[i] >= starts[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+        int index = Arrays.binarySearch(starts, 0, size, seconds);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(0, index);
+    }
+
+    private String segmentText(int index) {
+        return text.substring(index == 0 ? 0 : textEnds[index - 1], textEnds[index]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= starts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, starts.length * 2);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        textEnds = Arrays.copyOf(textEnds, newCapacity);
+    }
+}
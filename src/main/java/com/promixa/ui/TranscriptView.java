@@ -0,0 +1,140 @@
+package com.promixa.ui;
+
+import com.promixa.engine.Segment;
+
+import java.util.List;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * Transcript shown one row per segment with its start time. The list is
+ * virtualized, so only the visible rows are laid out however long the
+ * transcript gets, and rows are appended while a job runs. While the view is
+ * following the tail, new segments are scrolled into view; scrolling up or
+ * jumping to a time stops that until the next transcript is shown.
+ */
+public class TranscriptView extends ListView<Segment> {
+
+    private final Label placeholder = new Label();
+    private SegmentList segments = new SegmentList();
+    private boolean followTail = true;
+
+    public TranscriptView() {
+        setItems(segments);
+        setPlaceholder(placeholder);
+        getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        setCellFactory(list -> new SegmentCell());
+
+        addEventFilter(ScrollEvent.SCROLL, event -> {
+            if (event.getDeltaY() > 0) {
+                followTail = false;
+            }
+        });
+        addEventHandler(KeyEvent.KEY_PRESSED, event -> {
+            if (event.isShortcutDown() && event.getCode() == KeyCode.C) {
+                copySelection();
+                event.consume();
+            }
+        });
+    }
+
+    /** Text shown while there are no segments. */
+    public void setPlaceholderText(String text) {
+        placeholder.setText(text);
+    }
+
+    /** Starts an empty transcript. */
+    public void clear() {
+        // A fresh list is cheaper than announcing the removal of every row
+        segments = new SegmentList();
+        setItems(segments);
+        followTail = true;
+    }
+
+    public void append(List<Segment> newSegments) {
+        segments.appendAll(newSegments);
+        if (followTail && !newSegments.isEmpty()) {
+            scrollTo(segments.size() - 1);
+        }
+    }
+
+    public SegmentList getSegments() {
+        return segments;
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Scrolls to and selects the segment playing at {@code seconds}.
+     *
+     * @return false if the transcript is empty
+     */
+    public boolean jumpTo(double seconds) {
+        int index = segments.indexAt(seconds);
+        if (index < 0) {
+            return false;
+        }
+        followTail = false;
+        scrollTo(index);
+        getSelectionModel().clearAndSelect(index);
+        requestFocus();
+        return true;
+    }
+
+    private void copySelection() {
+        StringBuilder text = new StringBuilder();
+        for (int index : getSelectionModel().getSelectedIndices()) {
+            text.append(segments.get(index).getText());
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(text.toString().strip());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    /**
+     * Parses {@code h:mm:ss}, {@code m:ss} or plain seconds.
+     *
+     * @throws NumberFormatException if the text is not a time
+     */
+    public static double parseTime(String text) {
+        String[] parts = text.trim().split(":");
+        if (parts.length > 3) {
+            throw new NumberFormatException("Not a time: " + text);
+        }
+        double seconds = 0;
+        for (String part : parts) {
+            double value = Double.parseDouble(part.trim());
+            if (value < 0) {
+                throw new NumberFormatException("Not a time: " + text);
+            }
+            seconds = seconds * 60 + value;
+        }
+        return seconds;
+    }
+
+    private final class SegmentCell extends ListCell<Segment> {
+
+        SegmentCell() {
+            setWrapText(true);
+            // Wrap to the list's width instead of growing a horizontal scroll bar
+            prefWidthProperty().bind(TranscriptView.this.widthProperty().subtract(24));
+            setMaxWidth(USE_PREF_SIZE);
+        }
+
+        @Override
+        protected void updateItem(Segment segment, boolean empty) {
+            super.updateItem(segment, empty);
+            setText(empty || segment == null ? null : Segment.formatTime(segment.getStart()) + "   " + segment.getText().strip());
+        }
+    }
+}
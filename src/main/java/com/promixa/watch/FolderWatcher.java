@@ -0,0 +1,341 @@
+package com.promixa.watch;
+
+import com.promixa.cache.AudioHasher;
+import com.promixa.engine.AudioFiles;
+import com.promixa.engine.TranscriptionJob;
+import com.promixa.engine.TranscriptionOptions;
+import com.promixa.engine.TranscriptionQueue;
+import com.promixa.export.AutoExporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transcribes every recording that lands in a folder or any folder below it.
+ * The operating system reports new and changed files, so only those are
+ * looked at again; the whole tree is only listed at start and when the
+ * system dropped events. A file is queued once its size and modification
+ * time have not changed for the settle time, and skipped if a recording with
+ * the same content was already transcribed. Transcripts are written by the
+ * watcher's own exporter, usually next to the recording.
+ */
+public class FolderWatcher implements TranscriptionQueue.Listener, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FolderWatcher.class);
+
+    /** How long a file must stay unchanged before it counts as fully written. */
+    public static final long DEFAULT_SETTLE_MS = 2000;
+    private static final long CHECK_INTERVAL_MS = 500;
+
+    /** A file seen by the watcher that has not settled yet. */
+    private static final class Candidate {
+        private long size = -1;
+        private long modified = -1;
+        private long unchangedSince;
+    }
+
+    /** A queued file, recorded as processed once its job completes. */
+    private static final class Submission {
+        private final String hash;
+        private final Path file;
+        private final long size;
+        private final long modified;
+
+        Submission(String hash, Path file, long size, long modified) {
+            this.hash = hash;
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    private final Path root;
+    private final ProcessedLedger ledger;
+    private final TranscriptionQueue queue;
+    private final String model;
+    private final TranscriptionOptions options;
+    private final AutoExporter exporter;
+    private final long settleMs;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Map<Path, Candidate> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Submission> submitted = new ConcurrentHashMap<>();
+    /** Content of the queued files, so a copy arriving meanwhile is not queued twice. */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger submittedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final ScheduledExecutorService settler;
+    private final Thread watchThread;
+    private volatile boolean closed;
+
+    /**
+     * @param ledgerFile where processed recordings are remembered across runs
+     * @param exporter   writes the transcripts of the watcher's jobs, and no others
+     * @throws IOException if {@code root} is not a folder or the ledger cannot be read
+     */
+    public FolderWatcher(Path root, Path ledgerFile, TranscriptionQueue queue, String model,
+                         TranscriptionOptions options, AutoExporter exporter, long settleMs) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException(root + " is not a folder.");
+        }
+        this.root = root.toAbsolutePath().normalize();
+        this.ledger = new ProcessedLedger(ledgerFile);
+        this.queue = queue;
+        this.model = model;
+        this.options = options;
+        this.exporter = exporter;
+        this.settleMs = settleMs;
+        this.watchService = this.root.getFileSystem().newWatchService();
+        this.settler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "folder-watch-settle");
+            t.setDaemon(true);
+            return t;
+        });
+        this.watchThread = new Thread(this::watch, "folder-watch");
+        this.watchThread.setDaemon(true);
+    }
+
+    /**
+     * Registers the folder tree, picks up the recordings already in it and
+     * starts watching.
+     *
+     * @throws IOException if the folder cannot be watched
+     */
+    public void start() throws IOException {
+        queue.addListener(this);
+        register(root);
+        watchThread.start();
+        settler.scheduleWithFixedDelay(this::checkPending, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        LOG.info("Watching {} ({} folders, {} recordings to check)", root, directories.size(), pending.size());
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /** Recordings queued since the watcher started. */
+    public int getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /** Recordings skipped because their content was already transcribed or queued. */
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /** Recordings still being written, or waiting for their size to settle. */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void jobUpdated(TranscriptionJob job) {
+        if (!job.getState().isFinished()) {
+            return;
+        }
+        Submission submission = submitted.remove(job.getId());
+        if (submission == null) {
+            return;
+        }
+        if (job.getState() == TranscriptionJob.State.COMPLETED) {
+            exporter.jobUpdated(job);
+            // Left out of the ledger when its files were not written, so the next run tries again
+            if (exporter.getError(job) == null) {
+                ledger.add(submission.hash, submission.file, submission.size, submission.modified);
+            }
+        }
+        inFlight.remove(submission.hash);
+        if (closed && submitted.isEmpty()) {
+            queue.removeListener(this);
+        }
+    }
+
+    /**
+     * Stops watching. Jobs already queued still run and write their files.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        settler.shutdownNow();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.debug("Cannot close the watch service: {}", e.getMessage());
+        }
+        watchThread.interrupt();
+        if (submitted.isEmpty()) {
+            queue.removeListener(this);
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    LOG.info("Missed changes in {}; listing it again", root);
+                    registerQuietly(root);
+                    continue;
+                }
+                if (directory == null) {
+                    continue;
+                }
+                Path child = directory.resolve((Path) event.context());
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    // Files copied in with a new folder may predate its registration
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        registerQuietly(child);
+                    }
+                } else if (AudioFiles.isAudioFile(child.toFile())) {
+                    offer(child);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    /** Watches {@code start} and every folder below it, and offers the recordings in them. */
+    private void register(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // Registering a folder again returns its existing key
+                directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && AudioFiles.isAudioFile(file.toFile())) {
+                    offer(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                LOG.warn("Cannot watch {}: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void registerQuietly(Path start) {
+        try {
+            register(start);
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOG.warn("Cannot watch {}: {}", start, e.getMessage());
+        }
+    }
+
+    /** Starts or restarts the settle time of {@code file}. */
+    private void offer(Path file) {
+        pending.put(file, new Candidate());
+    }
+
+    /**
+     * Queues the candidates whose size and modification time held still for
+     * the settle time. Only the candidates are looked at, however large the
+     * tree.
+     */
+    private void checkPending() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Path, Candidate> entry : pending.entrySet()) {
+                Path file = entry.getKey();
+                Candidate candidate = entry.getValue();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // Deleted or renamed away before it settled
+                    pending.remove(file, candidate);
+                    continue;
+                }
+                long size = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (!attributes.isRegularFile()) {
+                    pending.remove(file, candidate);
+                } else if (size != candidate.size || modified != candidate.modified) {
+                    candidate.size = size;
+                    candidate.modified = modified;
+                    candidate.unchangedSince = now;
+                } else if (size > 0 && now - candidate.unchangedSince >= settleMs && pending.remove(file, candidate)) {
+                    process(file, size, modified);
+                }
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule and stop the watcher for good
+            LOG.warn("Checking watched files failed", e);
+        }
+    }
+
+    private void process(Path file, long size, long modified) {
+        if (closed) {
+            return;
+        }
+        if (ledger.containsUnchanged(file, size, modified)) {
+            skippedCount.incrementAndGet();
+            return;
+        }
+        String hash;
+        try {
+            hash = AudioHasher.sha256(file);
+        } catch (IOException e) {
+            LOG.warn("Cannot read {}: {}", file, e.getMessage());
+            return;
+        }
+        if (ledger.containsHash(hash)) {
+            LOG.debug("Skipping {}: already transcribed", file);
+            // Remembered by path too, so the next run does not read it again
+            ledger.add(hash, file, size, modified);
+            skippedCount.incrementAndGet();
+            return;
+        }
+        if (!inFlight.add(hash)) {
+            LOG.debug("Skipping {}: the same recording is already queued", file);
+            skippedCount.incrementAndGet();
+            return;
+        }
+        TranscriptionJob job = new TranscriptionJob(file.toFile(), model, options);
+        submitted.put(job.getId(), new Submission(hash, file, size, modified));
+        submittedCount.incrementAndGet();
+        LOG.info("Queued {} from the watched folder", file);
+        queue.submit(job);
+    }
+}
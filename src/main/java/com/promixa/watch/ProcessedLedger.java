@@ -0,0 +1,76 @@
+package com.promixa.watch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recordings a watched folder has already transcribed, by content hash, kept
+ * in a tab-separated file that only grows: hash, size, modification time and
+ * path per line. Size and modification time let a file that has not changed
+ * since be recognised without hashing it again.
+ */
+final class ProcessedLedger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessedLedger.class);
+
+    private final Path file;
+    private final Set<String> hashes = new HashSet<>();
+    /** Size and modification time of each processed path when it was processed. */
+    private final Map<String, String> stamps = new HashMap<>();
+
+    ProcessedLedger(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.getParent());
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                // A line cut short by a crash is missing fields; its file is simply processed again
+                if (fields.length == 4) {
+                    hashes.add(fields[0]);
+                    stamps.put(fields[3], stamp(fields[1], fields[2]));
+                }
+            }
+        }
+        LOG.debug("{} recordings already processed according to {}", hashes.size(), file);
+    }
+
+    synchronized boolean containsHash(String hash) {
+        return hashes.contains(hash);
+    }
+
+    /** Whether {@code path} was processed when it had this size and modification time. */
+    synchronized boolean containsUnchanged(Path path, long size, long modified) {
+        return stamp(String.valueOf(size), String.valueOf(modified)).equals(stamps.get(path.toString()));
+    }
+
+    synchronized void add(String hash, Path path, long size, long modified) {
+        hashes.add(hash);
+        stamps.put(path.toString(), stamp(String.valueOf(size), String.valueOf(modified)));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            writer.write(hash + "\t" + size + "\t" + modified + "\t" + path + "\n");
+        } catch (IOException e) {
+            LOG.warn("Cannot record {} in {}: {}", path, file, e.getMessage());
+        }
+    }
+
+    private static String stamp(String size, String modified) {
+        return size + "/" + modified;
+    }
+}
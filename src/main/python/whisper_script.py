@@ -7,8 +7,60 @@ import torch
 import gc
 import threading
 import json
+import re
+import struct
+import subprocess
+import numpy as np
+from collections import OrderedDict
 
-def print_progress(message, status='info'):
+# Worker protocol: every message is a frame of
+#   u8 version | u8 type | u32 payload length (big-endian) | payload
+# EVENT payloads are UTF-8 JSON; SEGMENT payloads are
+#   i64 job | f64 start | f64 end | UTF-8 text
+PROTOCOL_VERSION = 3
+FRAME_EVENT = 1
+FRAME_SEGMENT = 2
+_FRAME_HEADER = struct.Struct('>BBI')
+_SEGMENT_HEADER = struct.Struct('>qdd')
+
+# One-shot mode writes JSON event lines to stderr. Worker mode sends frames
+# on a private copy of the original stdout descriptor instead.
+_event_stream = sys.stderr
+_frame_stream = None
+_event_lock = threading.Lock()
+
+def open_protocol_channel():
+    """Move the protocol to a private descriptor and send fd 1 to the log, so
+    nothing printed by Whisper, tqdm or native code can corrupt a frame"""
+    global _frame_stream
+    sys.stdout.flush()
+    protocol_fd = os.dup(1)
+    os.dup2(2, 1)
+    _frame_stream = os.fdopen(protocol_fd, 'wb')
+
+def write_frame(frame_type, payload):
+    with _event_lock:
+        _frame_stream.write(_FRAME_HEADER.pack(PROTOCOL_VERSION, frame_type, len(payload)))
+        _frame_stream.write(payload)
+        _frame_stream.flush()
+
+def emit_event(data):
+    """Send a single structured event to Java"""
+    if _frame_stream is not None:
+        write_frame(FRAME_EVENT, json.dumps(data).encode('utf-8'))
+        return
+    with _event_lock:
+        _event_stream.write(json.dumps(data) + "\n")
+        _event_stream.flush()
+
+def emit_segment(job, start, end, text):
+    """Send one decoded segment; binary in worker mode to keep Java's parsing cheap"""
+    if _frame_stream is not None:
+        write_frame(FRAME_SEGMENT, _SEGMENT_HEADER.pack(job, start, end) + text.encode('utf-8'))
+    else:
+        emit_event({"status": "segment", "job": job, "start": start, "end": end, "text": text})
+
+def print_progress(message, status='info', job=None):
     """Print progress message to stderr so Java can capture it"""
     # Format as JSON for structured parsing in Java
     data = {
@@ -16,9 +68,11 @@ def print_progress(message, status='info'):
         'status': status,
         'timestamp': time.time()
     }
-    print(json.dumps(data), file=sys.stderr, flush=True)
-    
-def progress_updater(start_time, stop_event):
+    if job is not None:
+        data['job'] = job
+    emit_event(data)
+
+def progress_updater(start_time, stop_event, job=None):
     """Thread that periodically updates on the progress"""
     dots = 0
     while not stop_event.is_set():
@@ -26,70 +80,430 @@ def progress_updater(start_time, stop_event):
         # Create a loading animation with dots
         dots = (dots + 1) % 4
         dot_str = '.' * dots
-        print_progress(f"Transcribing{dot_str.ljust(3)} ({elapsed:.1f}s elapsed)", "working")
-        time.sleep(1.0)  # Update every second
+        print_progress(f"Transcribing{dot_str.ljust(3)} ({elapsed:.1f}s elapsed)", "working", job)
+        stop_event.wait(1.0)  # Update every second
+
+def loading_heartbeat(name, start_time, stop_event, job=None):
+    """Thread that keeps reporting while a model loads, so a slow download is not taken for a hang"""
+    while not stop_event.wait(5.0):
+        elapsed = time.time() - start_time
+        print_progress(f"Loading Whisper model: {name}... ({elapsed:.0f}s elapsed)", "loading", job)
+
+def exit_when_orphaned(interval=2.0):
+    """Thread that ends the worker once the Java process that started it is gone.
+    Closing stdin already stops an idle worker; this also stops one busy with a job."""
+    parent = os.getppid()
+    while True:
+        time.sleep(interval)
+        if os.getppid() != parent:
+            os._exit(1)
+
+# Whisper's verbose output prints one line per decoded segment, e.g.
+# "[00:01.000 --> 00:04.500]  Hello there"
+SEGMENT_LINE = re.compile(r'^\[((?:\d+:)?\d+:\d+\.\d+) --> ((?:\d+:)?\d+:\d+\.\d+)\] (.*)$')
+
+def parse_timestamp(value):
+    """Convert a Whisper [HH:]MM:SS.mmm timestamp to seconds"""
+    seconds = 0.0
+    for part in value.split(':'):
+        seconds = seconds * 60 + float(part)
+    return seconds
+
+class SegmentTap:
+    """Stdout replacement that turns Whisper's per-segment lines into segment
+    events as soon as they are printed; everything else goes to the log.
+    Timestamps are shifted by offset when a clip of a longer file is decoded."""
+
+    def __init__(self, log, job, offset=0.0):
+        self.log = log
+        self.job = job
+        self.offset = offset
+        self.pending = ''
+        self.count = 0
+
+    def write(self, text):
+        self.pending += text
+        while '\n' in self.pending:
+            line, self.pending = self.pending.split('\n', 1)
+            self._handle(line)
+        return len(text)
+
+    def flush(self):
+        self.log.flush()
+
+    def _handle(self, line):
+        match = SEGMENT_LINE.match(line)
+        if match:
+            emit_segment(self.job, parse_timestamp(match.group(1)) + self.offset,
+                         parse_timestamp(match.group(2)) + self.offset, match.group(3))
+            self.count += 1
+        elif line.strip():
+            self.log.write(line + '\n')
+
+SAMPLE_RATE = 16000
+VAD_FRAME_SECONDS = 0.03
+# Split points are placed in the quietest stretch of about this length
+VAD_SMOOTHING_FRAMES = 10
+
+def ffmpeg_pcm_command(audio_file, start=None, duration=None):
+    """ffmpeg command decoding a file (or a clip of it) to 16 kHz mono s16le on stdout"""
+    cmd = ["ffmpeg", "-nostdin", "-threads", "0"]
+    if start is not None:
+        cmd += ["-ss", f"{start:.3f}"]
+    if duration is not None:
+        cmd += ["-t", f"{duration:.3f}"]
+    cmd += ["-i", audio_file, "-f", "s16le", "-ac", "1", "-acodec", "pcm_s16le", "-ar", str(SAMPLE_RATE), "-"]
+    return cmd
+
+def load_audio_clip(audio_file, start, end):
+    """Decode only [start, end) of a file; ffmpeg seeks instead of decoding from the top"""
+    out = subprocess.run(ffmpeg_pcm_command(audio_file, start, end - start),
+                         capture_output=True, check=True).stdout
+    return np.frombuffer(out, np.int16).flatten().astype(np.float32) / 32768.0
+
+def load_pcm(pcm_file, start=None, end=None):
+    """Samples the Java side already decoded: 16 kHz mono float32, little-endian.
+    The file is mapped, not read, so a clip is a view and several workers
+    transcribing chunks of one recording share the same pages"""
+    # Copy-on-write keeps the array writable for torch without copying it
+    audio = np.memmap(pcm_file, dtype='<f4', mode='c')
+    if start is not None:
+        audio = audio[max(0, int(start * SAMPLE_RATE)):max(0, int(end * SAMPLE_RATE))]
+    return audio
+
+def pcm_energies(pcm_file):
+    """frame_energies for an already decoded file"""
+    frame_samples = int(SAMPLE_RATE * VAD_FRAME_SECONDS)
+    audio = np.memmap(pcm_file, dtype='<f4', mode='r')
+    frames = len(audio) // frame_samples
+    energy = np.empty(frames, dtype=np.float32)
+    block = frame_samples * 2000
+    for first in range(0, frames * frame_samples, block):
+        samples = np.asarray(audio[first:min(first + block, frames * frame_samples)], dtype=np.float32)
+        start = first // frame_samples
+        energy[start:start + len(samples) // frame_samples] = np.sqrt(
+            np.mean(samples.reshape(-1, frame_samples) ** 2, axis=1))
+    return energy, len(audio) / SAMPLE_RATE
+
+def frame_energies(audio_file):
+    """RMS energy of consecutive 30 ms frames, computed while streaming the
+    decoded audio so hour-long files never sit in memory as one array"""
+    frame_samples = int(SAMPLE_RATE * VAD_FRAME_SECONDS)
+    frame_bytes = frame_samples * 2
+    proc = subprocess.Popen(ffmpeg_pcm_command(audio_file), stdout=subprocess.PIPE, stderr=subprocess.DEVNULL)
+    energies = []
+    total_samples = 0
+    leftover = b''
+    while True:
+        data = proc.stdout.read(frame_bytes * 2000)
+        if not data:
+            break
+        total_samples += len(data) // 2
+        data = leftover + data
+        usable = len(data) // frame_bytes * frame_bytes
+        if usable:
+            samples = np.frombuffer(data[:usable], np.int16).astype(np.float32) / 32768.0
+            energies.append(np.sqrt(np.mean(samples.reshape(-1, frame_samples) ** 2, axis=1)))
+        leftover = data[usable:]
+    if proc.wait() != 0:
+        raise RuntimeError(f"ffmpeg could not decode {audio_file}")
+    energy = np.concatenate(energies) if energies else np.zeros(0, dtype=np.float32)
+    return energy, total_samples / SAMPLE_RATE
+
+def split_on_silence(audio_file, chunk_seconds, search_seconds, pcm_file=None):
+    """Energy-based voice activity detection: cut near every chunk_seconds,
+    at the quietest stretch within search_seconds of the target point"""
+    energy, duration = pcm_energies(pcm_file) if pcm_file else frame_energies(audio_file)
+    if duration <= chunk_seconds * 1.5 or len(energy) == 0:
+        return [[0.0, duration]], duration
+
+    kernel = np.ones(VAD_SMOOTHING_FRAMES, dtype=np.float32) / VAD_SMOOTHING_FRAMES
+    smoothed = np.convolve(energy, kernel, mode='same')
+    window = max(1, int(search_seconds / VAD_FRAME_SECONDS))
+
+    cuts = [0.0]
+    target = chunk_seconds
+    while target < duration - chunk_seconds * 0.5:
+        center = int(target / VAD_FRAME_SECONDS)
+        lo = max(0, center - window)
+        hi = min(len(smoothed), center + window)
+        cut = (lo + int(np.argmin(smoothed[lo:hi]))) * VAD_FRAME_SECONDS
+        if cut <= cuts[-1]:
+            cut = target
+        cuts.append(cut)
+        target = cut + chunk_seconds
+    cuts.append(duration)
+    return [[cuts[i], cuts[i + 1]] for i in range(len(cuts) - 1)], duration
+
+def release_model(model, device):
+    """Drop a model and give its memory back"""
+    del model
+    gc.collect()
+    if device == 'cuda':
+        torch.cuda.empty_cache()
+
+def ensure_model(models, name, device, job, timings):
+    """Return a resident model, loading it first if needed; models is kept in least-recently-used order"""
+    if name in models:
+        models.move_to_end(name)
+        return models[name]
+    print_progress(f"Loading Whisper model: {name}...", "loading", job)
+    phase_started = time.perf_counter()
+    stop_heartbeat = threading.Event()
+    heartbeat = threading.Thread(target=loading_heartbeat, args=(name, time.time(), stop_heartbeat, job), daemon=True)
+    heartbeat.start()
+    try:
+        models[name] = whisper.load_model(name, device=device)
+    finally:
+        stop_heartbeat.set()
+        heartbeat.join(timeout=1.0)
+    timings["model_load"] = time.perf_counter() - phase_started
+    print_progress(f"Model {name} loaded successfully.", "ready", job)
+    return models[name]
+
+def release_models(models, names, device):
+    """Drop the named models; which ones to drop is decided by the Java side"""
+    released = [models.pop(name) for name in names if name in models]
+    if released:
+        del released
+        gc.collect()
+        if device == 'cuda':
+            torch.cuda.empty_cache()
+
+def transcribe_file(model, audio_file, device, language, job=None, verbose=True):
+    """Run a transcription while a background thread reports elapsed time.
+    audio_file may also be a decoded 16 kHz float32 array."""
+    name = os.path.basename(audio_file) if isinstance(audio_file, str) else "audio clip"
+    print_progress(f"Starting transcription for: {name}", "processing", job)
+    start_time = time.time()
+
+    # Start a progress update thread
+    stop_thread = threading.Event()
+    progress_thread = threading.Thread(
+        target=progress_updater,
+        args=(start_time, stop_thread, job),
+        daemon=True
+    )
+    progress_thread.start()
+
+    try:
+        result = model.transcribe(
+            audio_file,
+            fp16=False if device == 'cpu' else True,  # fp16=False for wider CPU compatibility
+            language=language,
+            verbose=verbose
+        )
+    finally:
+        # Stop the progress update thread
+        stop_thread.set()
+        progress_thread.join(timeout=1.0)
+
+    processing_time = time.time() - start_time
+    print_progress(f"Transcription complete in {processing_time:.2f} seconds.", "complete", job)
+    return result
+
+def current_rss_bytes():
+    """Resident memory of this process; the peak where the current value is unavailable, 0 if neither is"""
+    try:
+        with open('/proc/self/statm') as statm:
+            return int(statm.read().split()[1]) * os.sysconf('SC_PAGE_SIZE')
+    except (OSError, ValueError, IndexError, AttributeError):
+        pass
+    try:
+        import resource
+        peak = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        return peak if sys.platform == 'darwin' else peak * 1024
+    except (ImportError, OSError):
+        return 0
+
+def audio_duration(result):
+    """Length of the transcribed audio in seconds, taken from the last segment"""
+    segments = result.get("segments") or []
+    return float(segments[-1]["end"]) if segments else 0.0
+
+def run_worker(device):
+    """Long-lived mode: keep models resident and serve jobs read from stdin.
+
+    Each request is one JSON line, e.g.
+        {"cmd": "transcribe", "job": 1, "audio": "...", "model": "base", "language": null}
+        {"cmd": "transcribe", "job": 2, "audio": "...", "model": "base", "start": 300.0, "end": 610.5}
+        {"cmd": "transcribe", "job": 3, "audio": "...", "pcm": "...", "pcm_samples": 960000, "model": "base"}
+        {"cmd": "split", "job": 4, "audio": "...", "chunk_seconds": 300, "search_seconds": 30}
+        {"cmd": "load", "job": 5, "model": "small"}
+        {"cmd": "release", "job": 6, "models": ["tiny"]}
+        {"cmd": "shutdown"}
+    A loaded model stays resident until a "release" names it, so several
+    models can be kept side by side; the Java side decides what to evict.
+    Replies are frames on the protocol channel (see write_frame) and carry
+    the job id. While decoding, each segment is sent as a SEGMENT frame as soon
+    as it exists; a job ends with either a "done" event or an "error" event,
+    and nothing else uses those statuses. The transcript text is not repeated at the end: it is the
+    concatenation of the job's segments. A split answers with a "done" event listing the chunk
+    boundaries in "chunks" and the audio length in "duration". Transcribe, load and release
+    answers list the models left resident in "resident". When "pcm" names a file of
+    samples the Java side decoded ahead (see load_pcm), transcribe and split read
+    that instead of decoding "audio" again.
+    """
+    open_protocol_channel()
+    # Whisper and tqdm print to stdout; keep that chatter off the protocol channel
+    sys.stdout = sys.stderr
+    # Windows does not re-parent orphans, so the check only works elsewhere
+    if sys.platform != 'win32':
+        threading.Thread(target=exit_when_orphaned, daemon=True).start()
+
+    models = OrderedDict()
+
+    emit_event({"message": "Worker ready", "status": "idle", "protocol": PROTOCOL_VERSION, "timestamp": time.time()})
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        try:
+            request = json.loads(line)
+        except ValueError as e:
+            print_progress(f"Error: malformed request: {e}", "error")
+            continue
+
+        command = request.get('cmd')
+        if command == 'shutdown':
+            break
+        if command == 'split':
+            job = request.get('job')
+            try:
+                print_progress("Finding silence to split the audio...", "processing", job)
+                chunks, duration = split_on_silence(request['audio'], float(request.get('chunk_seconds', 300)),
+                                                    float(request.get('search_seconds', 30)),
+                                                    request.get('pcm'))
+                emit_event({"status": "done", "job": job, "message": f"Split into {len(chunks)} chunks",
+                            "chunks": chunks, "duration": duration, "timestamp": time.time()})
+            except Exception as e:
+                print_progress(f"Error splitting audio: {e}", "error", job)
+            continue
+        if command == 'load':
+            job = request.get('job')
+            timings = {}
+            try:
+                ensure_model(models, request.get('model', 'base'), device, job, timings)
+                emit_event({"status": "done", "job": job, "message": "Model loaded",
+                            "model": request.get('model', 'base'), "resident": list(models),
+                            "timings": timings, "rss_bytes": current_rss_bytes(), "timestamp": time.time()})
+            except Exception as e:
+                print_progress(f"Error loading model: {e}", "error", job)
+            continue
+        if command == 'release':
+            job = request.get('job')
+            release_models(models, request.get('models') or [], device)
+            emit_event({"status": "done", "job": job, "message": "Models released",
+                        "resident": list(models), "rss_bytes": current_rss_bytes(), "timestamp": time.time()})
+            continue
+        if command != 'transcribe':
+            print_progress(f"Error: unknown command: {command}", "error", request.get('job'))
+            continue
+
+        job = request.get('job')
+        audio_file = request.get('audio')
+        pcm_file = request.get('pcm')
+        requested_model = request.get('model', 'base')
+        # Seconds spent per phase, reported with the result so Java can attribute time
+        timings = {}
+        try:
+            if pcm_file:
+                if not os.path.exists(pcm_file):
+                    raise FileNotFoundError(f"Decoded audio not found at {pcm_file}")
+            elif not audio_file or not os.path.exists(audio_file):
+                raise FileNotFoundError(f"Audio file not found at {audio_file}")
+
+            model = ensure_model(models, requested_model, device, job, timings)
+
+            # Decode before transcribing so decoding and inference are timed apart;
+            # a clip of a long file is decoded on its own
+            clip_start = request.get('start')
+            phase_started = time.perf_counter()
+            if pcm_file:
+                audio_input = load_pcm(pcm_file, None if clip_start is None else float(clip_start),
+                                       None if clip_start is None else float(request['end']))
+            elif clip_start is not None:
+                audio_input = load_audio_clip(audio_file, float(clip_start), float(request['end']))
+            else:
+                audio_input = whisper.load_audio(audio_file)
+            timings["decode"] = time.perf_counter() - phase_started
+
+            # Stream segments while decoding instead of only returning them at the end
+            tap = SegmentTap(sys.stderr, job, float(clip_start or 0.0))
+            sys.stdout = tap
+            phase_started = time.perf_counter()
+            try:
+                result = transcribe_file(model, audio_input, device, request.get('language'), job, verbose=True)
+            finally:
+                sys.stdout = sys.stderr
+            timings["inference"] = time.perf_counter() - phase_started
+
+            # Java rebuilds the transcript from segments, so make sure none were missed by the tap
+            for segment in (result.get("segments") or [])[tap.count:]:
+                emit_segment(job, float(segment["start"]) + tap.offset, float(segment["end"]) + tap.offset,
+                             segment["text"])
+            emit_event({
+                "message": "Transcription complete",
+                "status": "done",
+                "job": job,
+                "model": requested_model,
+                "resident": list(models),
+                "duration": len(audio_input) / SAMPLE_RATE if len(audio_input) else audio_duration(result),
+                "timings": timings,
+                "rss_bytes": current_rss_bytes(),
+                "timestamp": time.time()
+            })
+        except Exception as e:
+            print_progress(f"Error during transcription: {e}", "error", job)
+
+    release_models(models, list(models), device)
 
 if __name__ == "__main__":
     parser = argparse.ArgumentParser(description='Transcribe an audio file using Whisper.')
-    parser.add_argument('audio_file', type=str, help='Path to the audio file to transcribe.')
-    parser.add_argument('--model', type=str, default='base', choices=['tiny', 'base', 'small', 'medium', 'large'], 
+    parser.add_argument('audio_file', type=str, nargs='?', help='Path to the audio file to transcribe.')
+    parser.add_argument('--model', type=str, default='base', choices=['tiny', 'base', 'small', 'medium', 'large'],
                         help='Whisper model to use (tiny, base, small, medium, large)')
     parser.add_argument('--language', type=str, default=None, help='Language code (optional, auto-detected if not specified)')
     parser.add_argument('--device', type=str, default='cpu', choices=['cpu', 'cuda'], help='Device to use for inference')
+    parser.add_argument('--worker', action='store_true', help='Run as a persistent worker reading jobs from stdin')
+    parser.add_argument('--threads', type=int, default=0, help='Torch CPU threads to use (0 keeps the torch default)')
 
     args = parser.parse_args()
 
-    # Check if the file exists
-    if not os.path.exists(args.audio_file):
-        print_progress(f"Error: Audio file not found at {args.audio_file}")
-        sys.exit(1)
-    
+    # Several workers share the CPU; keep each one to its slice of the cores
+    if args.threads > 0:
+        torch.set_num_threads(args.threads)
+
     # Check for available CUDA for better performance if requested
     if args.device == 'cuda' and not torch.cuda.is_available():
         print_progress("Warning: CUDA requested but not available. Falling back to CPU.")
         args.device = 'cpu'
-    
+
+    if args.worker:
+        run_worker(args.device)
+        sys.exit(0)
+
+    if args.audio_file is None:
+        parser.error("audio_file is required unless --worker is given")
+
+    # Check if the file exists
+    if not os.path.exists(args.audio_file):
+        print_progress(f"Error: Audio file not found at {args.audio_file}")
+        sys.exit(1)
+
     try:
         print_progress(f"Loading Whisper model: {args.model}...", "loading")
-        
+
         # Load the model (will download if not present)
         model = whisper.load_model(args.model, device=args.device)
         print_progress(f"Model {args.model} loaded successfully.", "ready")
-        
-        print_progress(f"Starting transcription for: {os.path.basename(args.audio_file)}", "processing")
-        start_time = time.time()
-        
-        # Start a progress update thread
-        stop_thread = threading.Event()
-        progress_thread = threading.Thread(
-            target=progress_updater,
-            args=(start_time, stop_thread),
-            daemon=True
-        )
-        progress_thread.start()
-        
+
         # Perform transcription
-        result = model.transcribe(
-            args.audio_file, 
-            fp16=False if args.device == 'cpu' else True,  # fp16=False for wider CPU compatibility
-            language=args.language,
-            verbose=True  # Show progress in terminal
-        )
-        
-        # Stop the progress update thread
-        stop_thread.set()
-        progress_thread.join(timeout=1.0)
-        
-        end_time = time.time()
-        processing_time = end_time - start_time
-        print_progress(f"Transcription complete in {processing_time:.2f} seconds.", "complete")
-        
+        result = transcribe_file(model, args.audio_file, args.device, args.language)
+
         # Clean up to reduce memory usage
-        del model
-        gc.collect()
-        if args.device == 'cuda':
-            torch.cuda.empty_cache()
-        
+        release_model(model, args.device)
+
         # Print a JSON completion message to stdout for Java to capture
         print(json.dumps({
             "message": "Transcription complete",
@@ -97,7 +511,7 @@ if __name__ == "__main__":
             "timestamp": time.time()
         }))
         print(result["text"].strip())
-        
+
         sys.exit(0)  # Exit with 0 for success
 
     except Exception as e:
@@ -107,4 +521,4 @@ if __name__ == "__main__":
             "status": "error",
             "timestamp": time.time()
         }))
-        sys.exit(1)  # Exit with a non-zero code to indicate failure
\ No newline at end of file
+        sys.exit(1)  # Exit with a non-zero code to indicate failure
@@ -0,0 +1,179 @@
+"""Stand-in for whisper_script.py --worker that needs neither Whisper nor ffmpeg.
+
+Speaks the same framed protocol, so the Java engine, the CLI and the HTTP
+server can be exercised on any machine:
+
+    java -Dpromixa.script=src/test/python/stub_worker.py -jar promixa.jar --serve
+
+The audio length is read from WAV headers, or estimated from the file size for
+other formats; decoded samples passed as "pcm" are timed by their size. One segment is produced per SEGMENT_SECONDS of audio.
+
+Environment knobs:
+    STUB_LOAD_SECONDS      simulated model load time (default 0.2)
+    STUB_SEGMENT_DELAY     simulated decode time per segment (default 0.02)
+    STUB_FAIL_PATTERN      fail any job whose audio path contains this text
+    STUB_FAIL_FROM         fail ranges starting at or after this second, after one segment's delay
+"""
+import json
+import os
+import struct
+import sys
+import threading
+import time
+import wave
+
+PROTOCOL_VERSION = 3
+FRAME_EVENT = 1
+FRAME_SEGMENT = 2
+SEGMENT_SECONDS = 5.0
+
+LOAD_SECONDS = float(os.environ.get("STUB_LOAD_SECONDS", "0.2"))
+SEGMENT_DELAY = float(os.environ.get("STUB_SEGMENT_DELAY", "0.02"))
+FAIL_PATTERN = os.environ.get("STUB_FAIL_PATTERN")
+FAIL_FROM = float(os.environ["STUB_FAIL_FROM"]) if os.environ.get("STUB_FAIL_FROM") else None
+
+_protocol_fd = os.dup(1)
+os.dup2(2, 1)
+_frames = os.fdopen(_protocol_fd, 'wb')
+# The "working" ticker writes from its own thread, as in the real worker
+_frames_lock = threading.Lock()
+
+
+def write_frame(frame_type, payload):
+    with _frames_lock:
+        _frames.write(struct.pack('>BBI', PROTOCOL_VERSION, frame_type, len(payload)))
+        _frames.write(payload)
+        _frames.flush()
+
+
+def emit_event(data):
+    data.setdefault("timestamp", time.time())
+    write_frame(FRAME_EVENT, json.dumps(data).encode('utf-8'))
+
+
+def emit_segment(job, start, end, text):
+    write_frame(FRAME_SEGMENT, struct.pack('>qdd', job, start, end) + text.encode('utf-8'))
+
+
+def audio_duration(path, pcm=None):
+    if pcm:
+        return os.path.getsize(pcm) / 4 / 16000.0
+    try:
+        with wave.open(path, 'rb') as audio:
+            return audio.getnframes() / float(audio.getframerate())
+    except (wave.Error, EOFError):
+        # Roughly 128 kbit/s compressed audio
+        return max(1.0, os.path.getsize(path) / 16000.0)
+
+
+def load(job, model, resident, timings):
+    """Simulates loading a model unless it is resident; resident is kept in least-recently-used order."""
+    if model in resident:
+        resident.remove(model)
+    else:
+        emit_event({"status": "loading", "job": job, "message": f"Loading Whisper model: {model}..."})
+        time.sleep(LOAD_SECONDS)
+        timings["model_load"] = LOAD_SECONDS
+        emit_event({"status": "ready", "job": job, "message": f"Model {model} loaded successfully."})
+    resident.append(model)
+
+
+def tick(job, stop):
+    """Sends the once-a-second "working" heartbeat the real worker sends while decoding."""
+    while not stop.wait(1.0):
+        emit_event({"status": "working", "job": job, "message": "Transcribing..."})
+
+
+def transcribe(request, resident):
+    job = request.get('job')
+    path = request['audio']
+    pcm = request.get('pcm')
+    if not os.path.exists(pcm or path):
+        raise FileNotFoundError(f"Audio file not found at {pcm or path}")
+    if FAIL_PATTERN and FAIL_PATTERN in path:
+        raise RuntimeError("stub failure requested")
+
+    model = request.get('model', 'base')
+    timings = {"decode": 0.0}
+    load(job, model, resident, timings)
+
+    start = float(request.get('start', 0.0))
+    end = float(request['end']) if 'end' in request else audio_duration(path, pcm)
+    if FAIL_FROM is not None and start >= FAIL_FROM:
+        time.sleep(SEGMENT_DELAY)
+        raise RuntimeError(f"stub failure requested at {start:.1f} seconds")
+    position = start
+    inference_started = time.perf_counter()
+    stop_ticking = threading.Event()
+    threading.Thread(target=tick, args=(job, stop_ticking), daemon=True).start()
+    try:
+        while position < end:
+            segment_end = min(end, position + SEGMENT_SECONDS)
+            time.sleep(SEGMENT_DELAY)
+            emit_segment(job, position, segment_end, f" Segment at {position:.1f} seconds.")
+            position = segment_end
+    finally:
+        stop_ticking.set()
+    timings["inference"] = time.perf_counter() - inference_started
+    emit_event({"status": "done", "job": job, "model": model, "resident": list(resident),
+                "duration": end - start, "timings": timings, "rss_bytes": 0,
+                "message": "Transcription complete"})
+
+
+def split(request):
+    duration = audio_duration(request['audio'], request.get('pcm'))
+    chunk_seconds = float(request.get('chunk_seconds', 300))
+    chunks = []
+    position = 0.0
+    while position < duration:
+        chunks.append([position, min(duration, position + chunk_seconds)])
+        position += chunk_seconds
+    emit_event({"status": "done", "job": request.get('job'), "chunks": chunks, "duration": duration,
+                "message": f"Split into {len(chunks)} chunks"})
+
+
+def exit_when_orphaned():
+    parent = os.getppid()
+    while True:
+        time.sleep(2.0)
+        if os.getppid() != parent:
+            os._exit(1)
+
+
+def main():
+    resident = []
+    if sys.platform != 'win32':
+        threading.Thread(target=exit_when_orphaned, daemon=True).start()
+    emit_event({"status": "idle", "message": "Worker ready", "protocol": PROTOCOL_VERSION})
+    for line in sys.stdin:
+        if not line.strip():
+            continue
+        request = json.loads(line)
+        command = request.get('cmd')
+        if command == 'shutdown':
+            break
+        try:
+            if command == 'transcribe':
+                transcribe(request, resident)
+            elif command == 'split':
+                split(request)
+            elif command == 'load':
+                timings = {}
+                load(request.get('job'), request.get('model', 'base'), resident, timings)
+                emit_event({"status": "done", "job": request.get('job'), "model": request.get('model', 'base'),
+                            "resident": list(resident), "timings": timings, "rss_bytes": 0,
+                            "message": "Model loaded"})
+            elif command == 'release':
+                for model in request.get('models') or []:
+                    if model in resident:
+                        resident.remove(model)
+                emit_event({"status": "done", "job": request.get('job'), "resident": list(resident),
+                            "rss_bytes": 0, "message": "Models released"})
+            else:
+                raise ValueError(f"unknown command: {command}")
+        except Exception as e:
+            emit_event({"status": "error", "job": request.get('job'), "message": f"Error: {e}"})
+
+
+if __name__ == "__main__":
+    main()